@@ -1,6 +1,8 @@
 package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.StringConstants.TAB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -17,6 +19,19 @@ final class AccuracyTestHelper {
   private AccuracyTestHelper() {}
 
   static final float ACCURACY_DELTA = 1e-6f;
+
+  // The maximum loss of the average accuracy of the languages under the iteration budget
+  static final float ITERATION_BUDGET_MAX_ACCURACY_LOSS = 0.005f;
+
+  // The maximum loss of the average accuracy of the languages with the exact Naive Bayes engine
+  static final float EXACT_NAIVE_BAYES_MAX_ACCURACY_LOSS = 0.015f;
+
+  // The maximum loss of the average accuracy of the languages with the adaptive number of trials
+  static final float ADAPTIVE_TRIALS_MAX_ACCURACY_LOSS = 0.0025f;
+
+  // The maximum loss of the average accuracy of the languages with the candidate shortlist
+  static final float CANDIDATE_SHORTLIST_MAX_ACCURACY_LOSS = 0.015f;
+
   static final String SMALL_LANG_SUBSET = "en,ja,de,es,fr,it,zh-cn";
 
   /**
@@ -41,6 +56,42 @@ final class AccuracyTestHelper {
     return languageToFullTexts;
   }
 
+  /**
+   * @param languageToAccuracy mapping from language code to accuracy
+   * @return the average accuracy of the languages
+   */
+  static float averageAccuracy(final Map<String, Float> languageToAccuracy) {
+    float accuracySum = 0.0f;
+    for (final float accuracy : languageToAccuracy.values()) {
+      accuracySum += accuracy;
+    }
+    return accuracySum / languageToAccuracy.size();
+  }
+
+  /**
+   * Asserts that the average accuracy of the languages has not dropped by more than the given loss.
+   * The accuracies are averaged, since the accuracy of a single language moves by a few substrings
+   * either way whenever the sampling of the trials changes.
+   *
+   * @param languageToExpectedAccuracy mapping from language code to expected accuracy
+   * @param languageToDetectedAccuracy mapping from language code to detected accuracy
+   * @param maxAccuracyLoss the maximum loss of the average accuracy
+   */
+  static void assertAverageAccuracy(
+      final Map<String, Float> languageToExpectedAccuracy,
+      final Map<String, Float> languageToDetectedAccuracy,
+      final float maxAccuracyLoss) {
+    assertEquals(languageToExpectedAccuracy.size(), languageToDetectedAccuracy.size());
+
+    final float expectedAccuracy = averageAccuracy(languageToExpectedAccuracy);
+    final float detectedAccuracy = averageAccuracy(languageToDetectedAccuracy);
+    final String failureMessage =
+        String.format(
+            "FAILED: average accuracy %s, expected %s", detectedAccuracy, expectedAccuracy);
+
+    assertTrue(failureMessage, detectedAccuracy >= expectedAccuracy - maxAccuracyLoss);
+  }
+
   /** Helper method to open a resource path and return it as a BufferedReader instance. */
   static BufferedReader getResourceReader(final String path) {
     return new BufferedReader(
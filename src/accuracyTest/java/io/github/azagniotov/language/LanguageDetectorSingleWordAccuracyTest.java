@@ -1,7 +1,12 @@
 package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.AccuracyTestHelper.ACCURACY_DELTA;
+import static io.github.azagniotov.language.AccuracyTestHelper.ADAPTIVE_TRIALS_MAX_ACCURACY_LOSS;
+import static io.github.azagniotov.language.AccuracyTestHelper.CANDIDATE_SHORTLIST_MAX_ACCURACY_LOSS;
+import static io.github.azagniotov.language.AccuracyTestHelper.EXACT_NAIVE_BAYES_MAX_ACCURACY_LOSS;
+import static io.github.azagniotov.language.AccuracyTestHelper.ITERATION_BUDGET_MAX_ACCURACY_LOSS;
 import static io.github.azagniotov.language.AccuracyTestHelper.SMALL_LANG_SUBSET;
+import static io.github.azagniotov.language.AccuracyTestHelper.assertAverageAccuracy;
 import static io.github.azagniotov.language.AccuracyTestHelper.getResourceReader;
 import static io.github.azagniotov.language.AccuracyTestHelper.readDataset;
 import static io.github.azagniotov.language.LanguageDetectionSettings.ALL_SUPPORTED_ISO_CODES_639_1;
@@ -124,6 +129,128 @@ public class LanguageDetectorSingleWordAccuracyTest {
             .withoutInputSanitize()
             .build();
 
+    final Map<String, Float> languageToDetectedAccuracy = detectAccuracies(settings);
+
+    // To disable a language from being evaluated, we need to set its
+    // probability in the CSV as NaN. Then, it will be filtered out.
+    assertEquals(languageToExpectedAccuracy.size(), languageToDetectedAccuracy.size());
+
+    // Generate accuracy report regardless of the upcoming assertions
+    writeAccuracyReport(languageToDetectedAccuracy);
+
+    for (Map.Entry<String, Float> detected : languageToDetectedAccuracy.entrySet()) {
+      final String targetLanguage = detected.getKey();
+      final float expectedAccuracy = languageToExpectedAccuracy.get(targetLanguage);
+      final String failureMessage = String.format("FAILED [%s]: ", targetLanguage);
+
+      assertEquals(failureMessage, expectedAccuracy, detected.getValue(), ACCURACY_DELTA);
+    }
+  }
+
+  /**
+   * Run the test according to the parameters passed to the constructor, with the length-aware
+   * iteration budget, see {@link LanguageDetectionSettings.Builder#withIterationBudget(int, int)}.
+   * The budget must not cost more than {@link
+   * AccuracyTestHelper#ITERATION_BUDGET_MAX_ACCURACY_LOSS} of the expected accuracy, which is
+   * averaged over the languages, see {@link AccuracyTestHelper#assertAverageAccuracy(Map, Map,
+   * float)}.
+   */
+  @Test
+  public void simulationWithIterationBudget() throws Exception {
+    final String languageCodes = configureProfileDependentLanguageCodes();
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(languageCodes)
+            .withMaxTextChars(20000)
+            .withCjkDetectionThreshold(0.0)
+            .withoutInputSanitize()
+            .withIterationBudget(20, 8)
+            .build();
+
+    assertAverageAccuracy(
+        languageToExpectedAccuracy, detectAccuracies(settings), ITERATION_BUDGET_MAX_ACCURACY_LOSS);
+  }
+
+  /**
+   * Run the test according to the parameters passed to the constructor, with the exact Naive
+   * Bayes engine, see {@link LanguageDetectionSettings.Builder#withExactNaiveBayes()}. The engine
+   * must not cost more than {@link AccuracyTestHelper#EXACT_NAIVE_BAYES_MAX_ACCURACY_LOSS} of the
+   * expected accuracy, which is averaged over the languages.
+   */
+  @Test
+  public void simulationWithExactNaiveBayes() throws Exception {
+    final String languageCodes = configureProfileDependentLanguageCodes();
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(languageCodes)
+            .withMaxTextChars(20000)
+            .withCjkDetectionThreshold(0.0)
+            .withoutInputSanitize()
+            .withExactNaiveBayes()
+            .build();
+
+    assertAverageAccuracy(
+        languageToExpectedAccuracy,
+        detectAccuracies(settings),
+        EXACT_NAIVE_BAYES_MAX_ACCURACY_LOSS);
+  }
+
+  /**
+   * Run the test according to the parameters passed to the constructor, with the adaptive number
+   * of trials, see {@link LanguageDetectionSettings.Builder#withAdaptiveTrials()}. Stopping the
+   * trials early must not cost more than {@link
+   * AccuracyTestHelper#ADAPTIVE_TRIALS_MAX_ACCURACY_LOSS} of the expected accuracy, which is
+   * averaged over the languages.
+   */
+  @Test
+  public void simulationWithAdaptiveTrials() throws Exception {
+    final String languageCodes = configureProfileDependentLanguageCodes();
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(languageCodes)
+            .withMaxTextChars(20000)
+            .withCjkDetectionThreshold(0.0)
+            .withoutInputSanitize()
+            .withAdaptiveTrials()
+            .build();
+
+    assertAverageAccuracy(
+        languageToExpectedAccuracy, detectAccuracies(settings), ADAPTIVE_TRIALS_MAX_ACCURACY_LOSS);
+  }
+
+  /**
+   * Run the test according to the parameters passed to the constructor, with the candidate
+   * shortlist, see {@link LanguageDetectionSettings.Builder#withCandidateShortlist(int, int,
+   * double)}. Leaving the languages off the shortlist must not cost more than {@link
+   * AccuracyTestHelper#CANDIDATE_SHORTLIST_MAX_ACCURACY_LOSS} of the expected accuracy, which is
+   * averaged over the languages.
+   */
+  @Test
+  public void simulationWithCandidateShortlist() throws Exception {
+    final String languageCodes = configureProfileDependentLanguageCodes();
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(languageCodes)
+            .withMaxTextChars(20000)
+            .withCjkDetectionThreshold(0.0)
+            .withoutInputSanitize()
+            .withCandidateShortlist(5, 64, 0.99)
+            .build();
+
+    assertAverageAccuracy(
+        languageToExpectedAccuracy,
+        detectAccuracies(settings),
+        CANDIDATE_SHORTLIST_MAX_ACCURACY_LOSS);
+  }
+
+  /**
+   * Classify the texts of the dataset with the given settings.
+   *
+   * @param settings the settings of the detection
+   * @return mapping from language code to detected accuracy
+   */
+  private Map<String, Float> detectAccuracies(final LanguageDetectionSettings settings)
+      throws Exception {
     final LanguageDetectionOrchestrator orchestrator =
         LanguageDetectionOrchestrator.fromSettings(settings);
 
@@ -151,20 +278,7 @@ public class LanguageDetectorSingleWordAccuracyTest {
       // System.out.printf("Detected accuracy: %s = %s%n", targetLanguage, accuracy);
     }
 
-    // To disable a language from being evaluated, we need to set its
-    // probability in the CSV as NaN. Then, it will be filtered out.
-    assertEquals(languageToExpectedAccuracy.size(), languageToDetectedAccuracy.size());
-
-    // Generate accuracy report regardless of the upcoming assertions
-    writeAccuracyReport(languageToDetectedAccuracy);
-
-    for (Map.Entry<String, Float> detected : languageToDetectedAccuracy.entrySet()) {
-      final String targetLanguage = detected.getKey();
-      final float expectedAccuracy = languageToExpectedAccuracy.get(targetLanguage);
-      final String failureMessage = String.format("FAILED [%s]: ", targetLanguage);
-
-      assertEquals(failureMessage, expectedAccuracy, detected.getValue(), ACCURACY_DELTA);
-    }
+    return languageToDetectedAccuracy;
   }
 
   private String configureProfileDependentLanguageCodes() {
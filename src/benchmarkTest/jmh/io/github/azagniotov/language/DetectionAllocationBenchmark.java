@@ -0,0 +1,59 @@
+package io.github.azagniotov.language;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the memory allocated by a detection, with the trials of the Naive Bayes detection
+ * running sequentially and in parallel. Run it with the GC profiler:
+ *
+ * <pre>
+ * ./gradlew runJmhBenchmarks -PjmhArgs="DetectionAllocationBenchmark -prof gc"
+ * </pre>
+ *
+ * <p>The {@code gc.alloc.rate.norm} of both is expected to be the same, i.e.: only the {@link
+ * Language} result, since the detection buffers, including the ones of the parallel trials, are
+ * re-used across the detections.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DetectionAllocationBenchmark {
+
+  private static final String INPUT =
+      "The quick brown fox jumps over the lazy dog, while the language detection keeps sampling"
+          + " the n-grams of this sentence until the probabilities of the languages converge.";
+
+  @Param({"sequential", "parallel"})
+  public String trials;
+
+  private LanguageDetectionOrchestrator orchestrator;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    final LanguageDetectionSettings.Builder builder =
+        LanguageDetectionSettings.fromIsoCodes639_1("en,ja,es,fr,de,it,zh-cn");
+    final LanguageDetectionSettings settings =
+        trials.equals("parallel") ? builder.withParallelTrials(1).build() : builder.build();
+    this.orchestrator = LanguageDetectionOrchestrator.fromSettings(settings);
+  }
+
+  @Benchmark
+  public Language detect() {
+    return this.orchestrator.detect(INPUT);
+  }
+}
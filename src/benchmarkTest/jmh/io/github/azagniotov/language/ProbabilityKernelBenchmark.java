@@ -0,0 +1,84 @@
+package io.github.azagniotov.language;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the scalar and the Vector API {@link ProbabilityKernel}s on an iteration of a Naive
+ * Bayes trial, i.e.: multiplying the probabilities of the languages by the ones of a sampled n-gram
+ * and normalizing them. The forked JVM resolves the {@code jdk.incubator.vector} module, so that
+ * the Vector API kernel is available on Java 17 and above:
+ *
+ * <pre>
+ * ./gradlew runJmhBenchmarks -PjmhArgs="ProbabilityKernelBenchmark"
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ProbabilityKernelBenchmark {
+
+  // A power of two, so that the sampled row is picked with a mask
+  private static final int ROWS = 1024;
+  private static final float WEIGHT = 0.00005f;
+
+  @Param({"scalar", "vector"})
+  public String kernel;
+
+  // E.g.: a handful of configured languages, and all the 79 languages of the library
+  @Param({"7", "79"})
+  public int languages;
+
+  private ProbabilityKernel probabilityKernel;
+  private float[] probabilities;
+  private float[][] rows;
+  private int rowIdx;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    if (kernel.equals("vector")) {
+      this.probabilityKernel = ProbabilityKernels.best();
+      if (this.probabilityKernel == ScalarProbabilityKernel.INSTANCE) {
+        throw new IllegalStateException("The Vector API kernel is not available on this JVM");
+      }
+    } else {
+      this.probabilityKernel = ScalarProbabilityKernel.INSTANCE;
+    }
+
+    // Most n-grams appear in a few languages only, the same as in the language profiles
+    final Random random = new Random(0L);
+    this.rows = new float[ROWS][languages];
+    for (final float[] row : this.rows) {
+      for (int probIdx = 0; probIdx < languages; probIdx++) {
+        row[probIdx] = random.nextInt(4) == 0 ? random.nextFloat() / 100 : 0.0f;
+      }
+    }
+    this.probabilities = new float[languages];
+    for (int probIdx = 0; probIdx < languages; probIdx++) {
+      this.probabilities[probIdx] = 1.0f / languages;
+    }
+  }
+
+  @Benchmark
+  public float multiplyAndNormalize() {
+    final float[] wordProbabilities = this.rows[this.rowIdx++ & (ROWS - 1)];
+    final float sum =
+        this.probabilityKernel.multiplyAndSum(this.probabilities, wordProbabilities, WEIGHT);
+    return this.probabilityKernel.normalizeAndReturnMax(this.probabilities, sum);
+  }
+}
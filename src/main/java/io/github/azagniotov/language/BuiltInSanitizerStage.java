@@ -0,0 +1,252 @@
+package io.github.azagniotov.language;
+
+/**
+ * The {@link SanitizerStage}s which come with the library. Each of them recognizes its text with a
+ * hand-written scanner instead of a regular expression, so that the fused sanitization pass does
+ * not allocate.
+ */
+public enum BuiltInSanitizerStage implements SanitizerStage {
+
+  /**
+   * URLs with an {@code http} or {@code https} scheme, together with their trailing punctuation and
+   * whitespace. This is the stage enabled by default.
+   */
+  URLS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      if (input.charAt(start) != 'h') {
+        return 0;
+      }
+      return InputSanitizer.urlLengthAt(input, start, end);
+    }
+  },
+
+  /** E-mail addresses, e.g.: {@code john.doe+news@example.co.uk}. */
+  EMAILS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      // Matching is attempted only where a local part starts, so that each char is scanned once
+      if (!isEmailLocalChar(input.charAt(start))
+          || (start > 0 && isEmailLocalChar(input.charAt(start - 1)))) {
+        return 0;
+      }
+      int idx = start + 1;
+      while (idx < end && isEmailLocalChar(input.charAt(idx))) {
+        idx++;
+      }
+      if (idx == end || input.charAt(idx) != '@') {
+        return 0;
+      }
+      final int domainLength = domainLengthAt(input, idx + 1, end);
+      return domainLength == 0 ? 0 : idx + 1 + domainLength - start;
+    }
+  },
+
+  /** Mentions of users, e.g.: {@code @john_doe}, which are not a part of an e-mail address. */
+  MENTIONS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      if (input.charAt(start) != '@' || (start > 0 && isTokenChar(input.charAt(start - 1)))) {
+        return 0;
+      }
+      int idx = start + 1;
+      while (idx < end && isAsciiWordChar(input.charAt(idx))) {
+        idx++;
+      }
+      return idx == start + 1 ? 0 : idx - start;
+    }
+  },
+
+  /** Hashtags in any script, e.g.: {@code #throwback} or {@code #東京}. */
+  HASHTAGS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      if (input.charAt(start) != '#' || (start > 0 && isTokenChar(input.charAt(start - 1)))) {
+        return 0;
+      }
+      int idx = start + 1;
+      while (idx < end) {
+        final int codePoint = InputSanitizer.codePointAt(input, idx, end);
+        if (!InputSanitizer.isWord(codePoint)) {
+          break;
+        }
+        idx += Character.charCount(codePoint);
+      }
+      return idx == start + 1 ? 0 : idx - start;
+    }
+  },
+
+  /**
+   * Markdown code: fenced code blocks (opened by three or more backticks or tildes, and closed by
+   * the same fence or by the end of the input) and inline code spans (enclosed in runs of the same
+   * number of backticks within a line).
+   */
+  CODE_BLOCKS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      final char fenceChar = input.charAt(start);
+      if (fenceChar != '`' && fenceChar != '~') {
+        return 0;
+      }
+      final int fenceLength = runLengthAt(input, start, end, fenceChar);
+      if (fenceLength >= MIN_FENCE_LENGTH) {
+        return codeBlockLengthAt(input, start, end, fenceChar, fenceLength);
+      } else if (fenceChar == '`') {
+        return codeSpanLengthAt(input, start, end, fenceLength);
+      }
+      return 0;
+    }
+  },
+
+  /**
+   * Stand-alone numbers, including the ones with the decimal, thousands, time and date separators,
+   * e.g.: {@code 3.14}, {@code 1,000,000}, {@code 12:30} or {@code 2024-01-31}. Digits which are a
+   * part of a word, e.g.: {@code 3rd} or {@code mp3}, are kept.
+   */
+  NUMBERS {
+    @Override
+    public int removableLengthAt(final CharSequence input, final int start, final int end) {
+      if (!Character.isDigit(input.charAt(start))
+          || (start > 0 && Character.isLetterOrDigit(input.charAt(start - 1)))) {
+        return 0;
+      }
+      int idx = start + 1;
+      while (idx < end) {
+        final char currentChar = input.charAt(idx);
+        if (Character.isDigit(currentChar)) {
+          idx++;
+        } else if (isNumberSeparator(currentChar)
+            && idx + 1 < end
+            && Character.isDigit(input.charAt(idx + 1))) {
+          idx += 2;
+        } else {
+          break;
+        }
+      }
+      if (idx < end && Character.isLetter(input.charAt(idx))) {
+        return 0;
+      }
+      return idx - start;
+    }
+  };
+
+  private static final int MIN_FENCE_LENGTH = 3;
+
+  private static boolean isAsciiWordChar(final char candidate) {
+    return (candidate >= 'a' && candidate <= 'z')
+        || (candidate >= 'A' && candidate <= 'Z')
+        || (candidate >= '0' && candidate <= '9')
+        || candidate == '_';
+  }
+
+  private static boolean isTokenChar(final char candidate) {
+    return isAsciiWordChar(candidate) || Character.isLetterOrDigit(candidate);
+  }
+
+  private static boolean isEmailLocalChar(final char candidate) {
+    return isAsciiWordChar(candidate)
+        || candidate == '.'
+        || candidate == '%'
+        || candidate == '+'
+        || candidate == '-';
+  }
+
+  private static boolean isDomainChar(final char candidate) {
+    return (candidate >= 'a' && candidate <= 'z')
+        || (candidate >= 'A' && candidate <= 'Z')
+        || (candidate >= '0' && candidate <= '9')
+        || candidate == '.'
+        || candidate == '-';
+  }
+
+  private static boolean isAsciiLetter(final char candidate) {
+    return (candidate >= 'a' && candidate <= 'z') || (candidate >= 'A' && candidate <= 'Z');
+  }
+
+  private static boolean isNumberSeparator(final char candidate) {
+    return candidate == '.'
+        || candidate == ','
+        || candidate == ':'
+        || candidate == '/'
+        || candidate == '-';
+  }
+
+  /**
+   * @return the length of the domain name at the given position, which has at least two labels and
+   *     ends with a top-level domain of at least two letters, or zero if there is no such domain
+   */
+  private static int domainLengthAt(final CharSequence input, final int start, final int end) {
+    int domainEnd = start;
+    while (domainEnd < end && isDomainChar(input.charAt(domainEnd))) {
+      domainEnd++;
+    }
+    // A domain name does not end with a separator, e.g.: the full stop of a sentence
+    while (domainEnd > start && !isAsciiLetter(input.charAt(domainEnd - 1))) {
+      domainEnd--;
+    }
+    int topLevelDomainStart = domainEnd;
+    while (topLevelDomainStart > start && isAsciiLetter(input.charAt(topLevelDomainStart - 1))) {
+      topLevelDomainStart--;
+    }
+    // The top-level domain is preceded by a label, which ends with a letter or a digit
+    final int topLevelDomainLength = domainEnd - topLevelDomainStart;
+    if (topLevelDomainLength < 2
+        || topLevelDomainStart - 2 < start
+        || input.charAt(topLevelDomainStart - 1) != '.'
+        || !Character.isLetterOrDigit(input.charAt(topLevelDomainStart - 2))) {
+      return 0;
+    }
+    return domainEnd - start;
+  }
+
+  private static int runLengthAt(
+      final CharSequence input, final int start, final int end, final char runChar) {
+    int idx = start;
+    while (idx < end && input.charAt(idx) == runChar) {
+      idx++;
+    }
+    return idx - start;
+  }
+
+  private static int codeBlockLengthAt(
+      final CharSequence input,
+      final int start,
+      final int end,
+      final char fenceChar,
+      final int fenceLength) {
+    int idx = start + fenceLength;
+    while (idx < end) {
+      if (input.charAt(idx) == fenceChar) {
+        final int runLength = runLengthAt(input, idx, end, fenceChar);
+        idx += runLength;
+        if (runLength >= fenceLength) {
+          return idx - start;
+        }
+      } else {
+        idx++;
+      }
+    }
+    // An unterminated code block runs until the end of the input
+    return end - start;
+  }
+
+  private static int codeSpanLengthAt(
+      final CharSequence input, final int start, final int end, final int fenceLength) {
+    int idx = start + fenceLength;
+    while (idx < end) {
+      final char currentChar = input.charAt(idx);
+      if (currentChar == '\n') {
+        return 0;
+      } else if (currentChar == '`') {
+        final int runLength = runLengthAt(input, idx, end, '`');
+        idx += runLength;
+        if (runLength == fenceLength) {
+          return idx - start;
+        }
+      } else {
+        idx++;
+      }
+    }
+    return 0;
+  }
+}
@@ -1,5 +1,7 @@
 package io.github.azagniotov.language;
 
+import java.util.Arrays;
+
 class CharacterCounts {
 
   enum CharType {
@@ -38,6 +40,18 @@ class CharacterCounts {
     charTypeCounts[key.ordinal()]++;
   }
 
+  void mark(final int charTypeOrdinal) {
+    charTypeCounts[charTypeOrdinal]++;
+  }
+
+  void mark(final CharType key, final int count) {
+    charTypeCounts[key.ordinal()] += count;
+  }
+
+  void clear() {
+    Arrays.fill(charTypeCounts, 0);
+  }
+
   static CharacterCounts create() {
     return new CharacterCounts();
   }
@@ -23,19 +23,109 @@ class CjkDetector {
           IDEOGRAPHIC_SYMBOLS_AND_PUNCTUATION,
           SUPPLEMENTAL_PUNCTUATION);
 
+  // How often (in chars) to check whether the rest of the input can still change the decision
+  static final int EARLY_DECISION_CHECK_INTERVAL = 64;
+
+  // Unicode BMP (Basic Multilingual Plane) lookup of the CharType (ordinal) of each char.
+  // Code points from the supplementary planes are all IRRELEVANT, as UnicodeCache does
+  // not resolve their script, i.e.: they are irrelevant for CJK detection.
+  private static final byte[] BMP_CHAR_TYPES = new byte[Character.MAX_VALUE + 1];
+  private static final byte IRRELEVANT_ORDINAL = (byte) CharType.IRRELEVANT.ordinal();
+  private static final byte NON_CJK_ORDINAL = (byte) CharType.NON_A_CJK_UNICODE_CODEPOINT.ordinal();
+
+  static {
+    for (int codePoint = 0; codePoint <= Character.MAX_VALUE; codePoint++) {
+      final CharType charType =
+          isIrrelevantChar(codePoint) ? CharType.IRRELEVANT : determineCharType(codePoint);
+      BMP_CHAR_TYPES[codePoint] = (byte) charType.ordinal();
+    }
+  }
+
+  /**
+   * Decides on the whole input. The input is not necessarily scanned until the end: the scan stops
+   * as soon as the remaining chars can no longer change the outcome, see {@link #decideEarly}.
+   *
+   * @param input input text
+   * @param threshold CJK chars ratio threshold
+   * @return the CJK decision
+   */
   static CjkDecision decide(final String input, final double threshold) {
+    if (threshold <= 0.0) {
+      // The threshold check can never pass
+      return CjkDecision.DECISION_NONE;
+    }
+
     final CharacterCounts characterCounts = CharacterCounts.create();
-    input
-        .codePoints()
-        .forEach(
-            codePoint -> {
-              if (isIrrelevantChar(codePoint)) {
-                characterCounts.mark(CharType.IRRELEVANT);
-              } else {
-                characterCounts.mark(determineCharType(codePoint));
-              }
-            });
+    final int inputLength = input.length();
+    int nextEarlyDecisionIdx = EARLY_DECISION_CHECK_INTERVAL;
+
+    int idx = 0;
+    while (idx < inputLength) {
+      final char currentChar = input.charAt(idx);
+      if (Character.isHighSurrogate(currentChar)
+          && idx + 1 < inputLength
+          && Character.isLowSurrogate(input.charAt(idx + 1))) {
+        characterCounts.mark(CharType.IRRELEVANT);
+        idx += 2;
+      } else {
+        characterCounts.mark(BMP_CHAR_TYPES[currentChar]);
+        idx++;
+      }
+
+      if (idx >= nextEarlyDecisionIdx) {
+        final CjkDecision earlyDecision =
+            decideEarly(characterCounts, idx, inputLength - idx, threshold);
+        if (earlyDecision != null) {
+          return earlyDecision;
+        }
+        nextEarlyDecisionIdx = idx + EARLY_DECISION_CHECK_INTERVAL;
+      }
+    }
+
+    return decide(characterCounts, inputLength, threshold);
+  }
 
+  /**
+   * Checks whether the decision is already known, regardless of what the not yet seen chars are.
+   *
+   * <p>Let {@code c} be the CJK chars count, {@code s} the length and {@code i} the irrelevant
+   * chars count seen so far, and {@code r} the number of chars that remain. Each of the remaining
+   * chars can add at most one to either of the counts, so the final ratio {@code c' / (s' - i')}
+   * lies between {@code c / (s - i + r)}, i.e.: when the rest is all non-CJK chars, and {@code (c +
+   * r) / (s - i + r)}, i.e.: when the rest is all CJK chars. When both bounds fall on the same side
+   * of the threshold, the threshold outcome is settled. Once any Hiragana or Katakana has been seen
+   * a passed threshold always means Japanese, whereas Chinese vs. Japanese Han counts can still
+   * change.
+   *
+   * @return the decision, or null if the remaining chars can still change it
+   */
+  static CjkDecision decideEarly(
+      final CharacterCounts characterCounts,
+      final int inputLength,
+      final int remainingChars,
+      final double threshold) {
+    final double minimumRatio = Math.min(threshold, 1.0);
+    final double maxFinalLength = inputLength - characterCounts.irrelevant() + remainingChars;
+    if (maxFinalLength <= 0) {
+      return null;
+    }
+
+    final double cjkCounts = characterCounts.allCjkCounts();
+    if ((cjkCounts + remainingChars) / maxFinalLength < minimumRatio) {
+      return CjkDecision.DECISION_NONE;
+    }
+
+    final boolean hasKana =
+        characterCounts.get(CharType.KATAKANA) != 0 || characterCounts.get(CharType.HIRAGANA) != 0;
+    if (hasKana && cjkCounts / maxFinalLength >= minimumRatio) {
+      return CjkDecision.DECISION_JAPANESE;
+    }
+
+    return null;
+  }
+
+  static CjkDecision decide(
+      final CharacterCounts characterCounts, final int inputLength, final double threshold) {
     if (characterCounts.get(CharType.KATAKANA) == 0
         && characterCounts.get(CharType.HIRAGANA) == 0) {
       if (characterCounts.get(CharType.JAPANESE_HAN) < characterCounts.get(CharType.CHINESE_HAN)) {
@@ -43,14 +133,20 @@ class CjkDetector {
         // Therefore, if we passed the CJK threshold, we return decision Chinese
         final boolean decision =
             checkThreshold(
-                input, characterCounts.allCjkCounts(), characterCounts.irrelevant(), threshold);
+                inputLength,
+                characterCounts.allCjkCounts(),
+                characterCounts.irrelevant(),
+                threshold);
         return decision ? CjkDecision.DECISION_CHINESE : CjkDecision.DECISION_NONE;
       } else {
         // We have a Japanese input.
         // Therefore, if we passed the CJK threshold, we return decision Japanese
         final boolean decision =
             checkThreshold(
-                input, characterCounts.allCjkCounts(), characterCounts.irrelevant(), threshold);
+                inputLength,
+                characterCounts.allCjkCounts(),
+                characterCounts.irrelevant(),
+                threshold);
         return decision ? CjkDecision.DECISION_JAPANESE : CjkDecision.DECISION_NONE;
       }
     } else {
@@ -58,11 +154,21 @@ class CjkDetector {
       // Therefore, if we passed the CJK threshold, we return decision Japanese
       final boolean decision =
           checkThreshold(
-              input, characterCounts.allCjkCounts(), characterCounts.irrelevant(), threshold);
+              inputLength, characterCounts.allCjkCounts(), characterCounts.irrelevant(), threshold);
       return decision ? CjkDecision.DECISION_JAPANESE : CjkDecision.DECISION_NONE;
     }
   }
 
+  static byte charTypeOf(final char bmpChar) {
+    return BMP_CHAR_TYPES[bmpChar];
+  }
+
+  /** @return true if the given char counts towards the CJK chars ratio */
+  static boolean isCjkChar(final char bmpChar) {
+    final byte charType = BMP_CHAR_TYPES[bmpChar];
+    return charType != IRRELEVANT_ORDINAL && charType != NON_CJK_ORDINAL;
+  }
+
   private static CharType determineCharType(final int codePoint) {
     if (!Character.isValidCodePoint(codePoint)) {
       return CharType.IRRELEVANT;
@@ -124,7 +230,7 @@ class CjkDetector {
   }
 
   private static boolean checkThreshold(
-      final String input,
+      final int inputLength,
       final double totalMatchedChars,
       final double irrelevantChars,
       final double threshold) {
@@ -133,7 +239,7 @@ class CjkDetector {
       return false;
     }
 
-    final double finalLength = ((double) input.length()) - irrelevantChars;
+    final double finalLength = ((double) inputLength) - irrelevantChars;
     // if (finalLength == 0) return false; // avoid division by zero
     final double matchedRatio = totalMatchedChars / finalLength;
 
@@ -0,0 +1,36 @@
+package io.github.azagniotov.language;
+
+/**
+ * The re-usable state of the detections made by a {@link LanguageDetectionOrchestrator} on a
+ * single thread: the {@link LanguageDetector} with its n-gram and probability buffers, the buffer
+ * of the normalized input, and the buffer of the text stripped of markup.
+ *
+ * <p>Since the detector and the buffers are created once per thread, instead of once per
+ * detection, a detection in the steady state allocates nothing besides its result.
+ *
+ * <p>Instances are not thread-safe, therefore each thread uses its own instance.
+ */
+final class DetectionContext {
+
+  private final LanguageDetector languageDetector;
+  private final InputNormalizer inputNormalizer;
+  private final MarkupStripper markupStripper;
+
+  DetectionContext(final LanguageDetector languageDetector) {
+    this.languageDetector = languageDetector;
+    this.inputNormalizer = new InputNormalizer();
+    this.markupStripper = new MarkupStripper();
+  }
+
+  LanguageDetector getLanguageDetector() {
+    return languageDetector;
+  }
+
+  InputNormalizer getInputNormalizer() {
+    return inputNormalizer;
+  }
+
+  MarkupStripper getMarkupStripper() {
+    return markupStripper;
+  }
+}
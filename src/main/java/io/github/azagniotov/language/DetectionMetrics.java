@@ -0,0 +1,167 @@
+package io.github.azagniotov.language;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cumulative timings of the stages of the language detection, which are collected by a {@link
+ * LanguageDetectionOrchestrator} when enabled through {@link
+ * LanguageDetectionSettings.Builder#withMetrics()}.
+ *
+ * <p>Since the sanitizer stages are fused into the single pass which normalizes the input, a clock
+ * read around each of their invocations would cost more than most of the stages themselves. The
+ * time of each sanitizer stage is therefore estimated from every 256th position of the input,
+ * where each stage is timed over repeated calls, and scaled up to all the positions. The repeated
+ * calls are excluded from the normalization time. The estimates are meant for comparing the stages
+ * when profiling, which is why the metrics are off by default.
+ *
+ * <p>Instances are thread-safe. All timings are in nanoseconds.
+ */
+public final class DetectionMetrics {
+
+  private final List<SanitizerStage> sanitizerStages;
+  private final LongAdder detections = new LongAdder();
+  private final LongAdder quickRejections = new LongAdder();
+  private final LongAdder markupStrippingNanos = new LongAdder();
+  private final LongAdder normalizationNanos = new LongAdder();
+  private final LongAdder skippedSupplementaryChars = new LongAdder();
+  private final LongAdder statisticalDetectionNanos = new LongAdder();
+  private final LongAdder[] sanitizerStageNanos;
+  private final LongAdder[] sanitizerStageRemovedChars;
+
+  DetectionMetrics(final List<SanitizerStage> sanitizerStages) {
+    this.sanitizerStages = sanitizerStages;
+    this.sanitizerStageNanos = new LongAdder[sanitizerStages.size()];
+    this.sanitizerStageRemovedChars = new LongAdder[sanitizerStages.size()];
+    for (int stageIdx = 0; stageIdx < sanitizerStages.size(); stageIdx++) {
+      this.sanitizerStageNanos[stageIdx] = new LongAdder();
+      this.sanitizerStageRemovedChars[stageIdx] = new LongAdder();
+    }
+  }
+
+  /** @return the number of detections, excluding the ones of a {@code null} input */
+  public long getDetections() {
+    return detections.sum();
+  }
+
+  /**
+   * @return the number of detections which were answered as undetermined upfront, since the input
+   *     had no letters
+   */
+  public long getQuickRejections() {
+    return quickRejections.sum();
+  }
+
+  public long getMarkupStrippingNanos() {
+    return markupStrippingNanos.sum();
+  }
+
+  /**
+   * @return the time of the pass which truncates, sanitizes and normalizes the input, including the
+   *     time of the sanitizer stages
+   */
+  public long getNormalizationNanos() {
+    return normalizationNanos.sum();
+  }
+
+  /**
+   * @return the number of chars of the non-word supplementary code points, e.g.: emoji, which the
+   *     normalization pass collapsed into blanks without the per-char normalization
+   */
+  public long getSkippedSupplementaryChars() {
+    return skippedSupplementaryChars.sum();
+  }
+
+  /** @return the time of the Naive Bayes detection, including the n-gram extraction */
+  public long getStatisticalDetectionNanos() {
+    return statisticalDetectionNanos.sum();
+  }
+
+  /** @return the configured sanitizer stages, in their order */
+  public List<SanitizerStage> getSanitizerStages() {
+    return sanitizerStages;
+  }
+
+  /**
+   * @param sanitizerStage one of the configured sanitizer stages
+   * @return the estimated time spent in the given sanitizer stage
+   * @throws IllegalArgumentException if the given sanitizer stage is not configured
+   */
+  public long getSanitizerStageNanos(final SanitizerStage sanitizerStage) {
+    return sanitizerStageNanos[indexOf(sanitizerStage)].sum();
+  }
+
+  /**
+   * @param sanitizerStage one of the configured sanitizer stages
+   * @return the number of input chars removed by the given sanitizer stage
+   * @throws IllegalArgumentException if the given sanitizer stage is not configured
+   */
+  public long getSanitizerStageRemovedChars(final SanitizerStage sanitizerStage) {
+    return sanitizerStageRemovedChars[indexOf(sanitizerStage)].sum();
+  }
+
+  /** Discards the metrics collected so far, e.g.: the ones of the warm-up detections. */
+  void reset() {
+    detections.reset();
+    quickRejections.reset();
+    markupStrippingNanos.reset();
+    normalizationNanos.reset();
+    skippedSupplementaryChars.reset();
+    statisticalDetectionNanos.reset();
+    for (int stageIdx = 0; stageIdx < sanitizerStageNanos.length; stageIdx++) {
+      sanitizerStageNanos[stageIdx].reset();
+      sanitizerStageRemovedChars[stageIdx].reset();
+    }
+  }
+
+  void recordDetection() {
+    detections.increment();
+  }
+
+  void recordQuickRejection() {
+    quickRejections.increment();
+  }
+
+  void recordMarkupStripping(final long nanos) {
+    markupStrippingNanos.add(nanos);
+  }
+
+  void recordNormalization(final long nanos, final InputNormalizer normalizedInput) {
+    normalizationNanos.add(nanos - normalizedInput.getSanitizerStageTimingOverheadNanos());
+    skippedSupplementaryChars.add(normalizedInput.getSkippedSupplementaryChars());
+    final long[] stageNanos = normalizedInput.getSanitizerStageNanos();
+    final int[] stageRemovedChars = normalizedInput.getSanitizerStageRemovedChars();
+    for (int stageIdx = 0; stageIdx < sanitizerStageNanos.length; stageIdx++) {
+      sanitizerStageNanos[stageIdx].add(stageNanos[stageIdx]);
+      sanitizerStageRemovedChars[stageIdx].add(stageRemovedChars[stageIdx]);
+    }
+  }
+
+  void recordStatisticalDetection(final long nanos) {
+    statisticalDetectionNanos.add(nanos);
+  }
+
+  private int indexOf(final SanitizerStage sanitizerStage) {
+    final int stageIdx = sanitizerStages.indexOf(sanitizerStage);
+    if (stageIdx == -1) {
+      throw new IllegalArgumentException("Sanitizer stage is not configured: " + sanitizerStage);
+    }
+    return stageIdx;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder result = new StringBuilder();
+    result.append("detections=").append(getDetections());
+    result.append(", quickRejections=").append(getQuickRejections());
+    result.append(", markupStrippingNanos=").append(getMarkupStrippingNanos());
+    result.append(", normalizationNanos=").append(getNormalizationNanos());
+    result.append(", skippedSupplementaryChars=").append(getSkippedSupplementaryChars());
+    for (int stageIdx = 0; stageIdx < sanitizerStages.size(); stageIdx++) {
+      result.append(", ").append(sanitizerStages.get(stageIdx)).append("Nanos=");
+      result.append(sanitizerStageNanos[stageIdx].sum());
+    }
+    result.append(", statisticalDetectionNanos=").append(getStatisticalDetectionNanos());
+    return result.toString();
+  }
+}
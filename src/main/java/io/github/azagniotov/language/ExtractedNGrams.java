@@ -0,0 +1,91 @@
+package io.github.azagniotov.language;
+
+/**
+ * A re-usable buffer of the row ids (see {@link NGramIndex}) of the n-grams extracted from an
+ * input, in their extraction order.
+ *
+ * <p>By default, the buffer keeps every extracted n-gram, growing as needed. When a reservoir
+ * capacity is set, the buffer keeps a uniform random sample of at most that many n-grams instead
+ * (Vitter's reservoir sampling, Algorithm R), so that its memory footprint is bounded regardless
+ * of the input length. Since {@link LanguageDetector} samples at most {@code iterationLimit + 1}
+ * n-grams per trial anyway, a large enough reservoir keeps the detection statistically equivalent.
+ * As long as the input produces no more n-grams than the reservoir capacity, the reservoir holds
+ * all of them in their extraction order, i.e.: the detection results are exactly the same.
+ *
+ * <p>The reservoir is driven by a {@link SplitMix64} generator with a fixed seed, which is reset
+ * for every input, so that the detection of the same input is always deterministic.
+ *
+ * <p>Instances are not thread-safe, since they hold the re-usable buffer.
+ */
+final class ExtractedNGrams implements ExtractedRowIds {
+
+  private static final long RESERVOIR_SEED = 0x2545F4914F6CDD1DL;
+
+  private int[] rowIds;
+  private int size;
+
+  // The capacity of the reservoir, or Integer.MAX_VALUE when it is unbounded
+  private int capacity;
+  private long offeredCount;
+  private long randomState;
+
+  ExtractedNGrams() {
+    this.rowIds = new int[0];
+  }
+
+  /**
+   * Clears the buffer before the extraction of the n-grams from a new input.
+   *
+   * @param maxExpectedCount the maximum number of n-grams the input may produce
+   * @param reservoirCapacity the maximum number of n-grams to keep, where a non-positive value
+   *     means that every n-gram is kept
+   */
+  void reset(final int maxExpectedCount, final int reservoirCapacity) {
+    this.capacity = reservoirCapacity > 0 ? reservoirCapacity : Integer.MAX_VALUE;
+    final int requiredLength = Math.min(maxExpectedCount, this.capacity);
+    if (this.rowIds.length < requiredLength) {
+      this.rowIds = new int[requiredLength];
+    }
+    this.size = 0;
+    this.offeredCount = 0;
+    this.randomState = RESERVOIR_SEED;
+  }
+
+  @Override
+  public void offer(final int rowId) {
+    final long offered = this.offeredCount++;
+    if (this.size < this.capacity) {
+      this.rowIds[this.size++] = rowId;
+    } else {
+      // Replaces a random element with the probability of capacity / (offered + 1)
+      final long replacementIdx = Long.remainderUnsigned(nextRandom(), offered + 1);
+      if (replacementIdx < this.capacity) {
+        this.rowIds[(int) replacementIdx] = rowId;
+      }
+    }
+  }
+
+  int[] getRowIds() {
+    return rowIds;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int rowIdAt(final int position) {
+    return rowIds[position];
+  }
+
+  /** @return the number of extracted n-grams, including the ones which were not kept */
+  long getOfferedCount() {
+    return offeredCount;
+  }
+
+  private long nextRandom() {
+    this.randomState += SplitMix64.GAMMA;
+    return SplitMix64.mix(this.randomState);
+  }
+}
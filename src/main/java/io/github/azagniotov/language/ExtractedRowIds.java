@@ -0,0 +1,24 @@
+package io.github.azagniotov.language;
+
+/**
+ * A re-usable buffer, which the n-gram extraction fills with the row ids (see {@link NGramIndex})
+ * of the n-grams extracted from an input, and which the Naive Bayes detection samples the n-grams
+ * from.
+ *
+ * @see ExtractedNGrams
+ * @see NGramHistogram
+ */
+interface ExtractedRowIds {
+
+  /** Adds the row id of the next extracted n-gram. */
+  void offer(int rowId);
+
+  /** @return the number of the kept n-gram occurrences, which can be sampled */
+  int size();
+
+  /**
+   * @param position the position of an n-gram occurrence, from zero to {@link #size()} exclusive
+   * @return the row id of the n-gram occurrence at the given position
+   */
+  int rowIdAt(int position);
+}
@@ -0,0 +1,504 @@
+package io.github.azagniotov.language;
+
+import static io.github.azagniotov.language.StringConstants.BLANK_CHAR;
+
+import io.github.azagniotov.language.CharacterCounts.CharType;
+import java.util.Arrays;
+
+/**
+ * Turns raw input text into the normalized character stream from which {@link NGram} extracts
+ * n-grams, in a single pass and without creating intermediate strings.
+ *
+ * <p>Historically, a detection went through a chain of string transformations, each one producing
+ * a new string of up to {@link LanguageDetectionSettings#getMaxTextChars()} chars:
+ *
+ * <ol>
+ *   <li>Truncation through {@code substring}
+ *   <li>URL removal through a regex, which {@link BuiltInSanitizerStage#URLS} now performs through
+ *       {@link InputSanitizer#urlLengthAt}, or more generally, the removal of whatever the
+ *       configured {@link SanitizerStage}s recognize
+ *   <li>Non-word char removal through {@link InputSanitizer#filterOutNonWords(String)}
+ *   <li>Vietnamese folding through {@link VietnameseUtils#normalizeVietnamese(String)}
+ *   <li>Per-char normalization through {@link NGram#normalize(char)}
+ * </ol>
+ *
+ * <p>This class fuses all of the above into one streaming pass which writes into a re-usable char
+ * buffer. The resulting stream is identical to the one the chain above would have fed into {@link
+ * NGram}, apart from runs of consecutive blanks being collapsed into one (including the leading
+ * ones), which {@link NGram} ignores anyway.
+ *
+ * <p>The same pass also collects what the orchestrator needs to know about the truncated and
+ * sanitized input before the statistical detection: whether it is blank, and the CJK character
+ * counts for the {@link CjkDetector} heuristic. Once the CJK decision is known to be Japanese
+ * regardless of the remaining chars, the pass stops, since the statistical detection will not run.
+ *
+ * <p>Instances are not thread-safe, since they hold the re-usable buffer.
+ */
+final class InputNormalizer {
+
+  private static final int INITIAL_CAPACITY = 256;
+
+  private static final SanitizerStage[] NO_SANITIZER_STAGES = new SanitizerStage[0];
+  private static final SanitizerStage[] URLS_SANITIZER_STAGES = {BuiltInSanitizerStage.URLS};
+
+  // When the metrics are enabled, the sanitizer stages are timed at every 256th position only, each
+  // one over repeated calls, so that the clock reads do not outweigh the stages they measure
+  private static final int STAGE_TIMING_INTERVAL_MASK = 255;
+  private static final int STAGE_TIMING_REPETITIONS = 64;
+
+  private char[] normalizedChars;
+  private int length;
+
+  // The last char written into the buffer, which starts off as the
+  // virtual leading blank, see the NGram#resetBuffer() for details
+  private char lastWrittenChar;
+
+  // A Vietnamese base char may still be combined with the mark that follows
+  // it, so each char is held back by one position before it gets written
+  private char pendingChar;
+  private boolean hasPendingChar;
+  private boolean foldVietnamese;
+
+  // The sanitizer stages, and their per-stage metrics when enabled
+  private SanitizerStage[] sanitizerStages;
+  private boolean collectSanitizerStageMetrics;
+  private long[] sanitizerStageNanos;
+  private int[] sanitizerStageRemovedChars;
+  private long sanitizerStageTimingOverheadNanos;
+  private int stageTimingCounter;
+
+  // The state of the CJK heuristic, when enabled
+  private final CharacterCounts characterCounts;
+  private double cjkDetectionThreshold;
+  private boolean countCjkChars;
+  private CjkDecision cjkDecision;
+
+  // The length of the truncated and sanitized input (as if it was a string), and its blankness
+  private int sanitizedLength;
+  private boolean blank;
+
+  // The number of chars of the non-word supplementary code points, e.g.: emoji, which were
+  // collapsed into blanks without going through the per-char normalization
+  private int skippedSupplementaryChars;
+
+  InputNormalizer() {
+    this.normalizedChars = new char[INITIAL_CAPACITY];
+    this.characterCounts = CharacterCounts.create();
+    this.sanitizerStages = NO_SANITIZER_STAGES;
+    this.sanitizerStageNanos = new long[0];
+    this.sanitizerStageRemovedChars = new int[0];
+  }
+
+  /**
+   * Enables the collection of the time spent in, and the number of chars removed by, each of the
+   * sanitizer stages, see {@link DetectionMetrics}. The time is estimated from a sample of the
+   * positions of the input, which carries on across the inputs, so that short inputs are sampled
+   * as well.
+   */
+  void setCollectSanitizerStageMetrics(final boolean collectSanitizerStageMetrics) {
+    this.collectSanitizerStageMetrics = collectSanitizerStageMetrics;
+  }
+
+  /**
+   * Normalizes the given input into the internal buffer, replacing its previous content.
+   *
+   * @param input the raw input text
+   * @param end exclusive end position within the input, i.e.: the truncation point
+   * @param stripUrls whether URLs should be removed, as {@link BuiltInSanitizerStage#URLS} does
+   * @param foldVietnamese whether Vietnamese letter + diacritical mark pairs should be folded, as
+   *     {@link VietnameseUtils#normalizeVietnamese(String)} would do
+   */
+  void normalize(
+      final CharSequence input,
+      final int end,
+      final boolean stripUrls,
+      final boolean foldVietnamese) {
+    normalize(input, end, stripUrls, foldVietnamese, 0.0);
+  }
+
+  /**
+   * Normalizes the given input into the internal buffer, replacing its previous content, while
+   * also counting the CJK chars for the {@link CjkDetector} heuristic.
+   *
+   * @param input the raw input text
+   * @param end exclusive end position within the input, i.e.: the truncation point
+   * @param stripUrls whether URLs should be removed, as {@link BuiltInSanitizerStage#URLS} does
+   * @param foldVietnamese whether Vietnamese letter + diacritical mark pairs should be folded, as
+   *     {@link VietnameseUtils#normalizeVietnamese(String)} would do
+   * @param cjkDetectionThreshold CJK chars ratio threshold, where a non-positive value disables
+   *     the CJK heuristic
+   */
+  void normalize(
+      final CharSequence input,
+      final int end,
+      final boolean stripUrls,
+      final boolean foldVietnamese,
+      final double cjkDetectionThreshold) {
+    normalize(
+        input,
+        end,
+        stripUrls ? URLS_SANITIZER_STAGES : NO_SANITIZER_STAGES,
+        foldVietnamese,
+        cjkDetectionThreshold);
+  }
+
+  /**
+   * Normalizes the given input into the internal buffer, replacing its previous content, while
+   * also counting the CJK chars for the {@link CjkDetector} heuristic.
+   *
+   * @param input the raw input text
+   * @param end exclusive end position within the input, i.e.: the truncation point
+   * @param sanitizerStages the sanitizer stages, in their order, where at each position of the
+   *     input, the text recognized by the first matching stage is removed
+   * @param foldVietnamese whether Vietnamese letter + diacritical mark pairs should be folded, as
+   *     {@link VietnameseUtils#normalizeVietnamese(String)} would do
+   * @param cjkDetectionThreshold CJK chars ratio threshold, where a non-positive value disables
+   *     the CJK heuristic
+   */
+  void normalize(
+      final CharSequence input,
+      final int end,
+      final SanitizerStage[] sanitizerStages,
+      final boolean foldVietnamese,
+      final double cjkDetectionThreshold) {
+    // Each input char produces at most one output char
+    if (this.normalizedChars.length < end) {
+      this.normalizedChars = new char[Math.max(end, this.normalizedChars.length * 2)];
+    }
+    this.length = 0;
+    this.lastWrittenChar = BLANK_CHAR;
+    this.hasPendingChar = false;
+    this.foldVietnamese = foldVietnamese;
+    this.sanitizedLength = 0;
+    this.blank = true;
+    this.skippedSupplementaryChars = 0;
+
+    this.sanitizerStages = sanitizerStages;
+    if (this.sanitizerStageNanos.length < sanitizerStages.length) {
+      this.sanitizerStageNanos = new long[sanitizerStages.length];
+      this.sanitizerStageRemovedChars = new int[sanitizerStages.length];
+    }
+    Arrays.fill(this.sanitizerStageNanos, 0L);
+    Arrays.fill(this.sanitizerStageRemovedChars, 0);
+    this.sanitizerStageTimingOverheadNanos = 0L;
+    final boolean sanitize = sanitizerStages.length > 0;
+
+    this.characterCounts.clear();
+    this.cjkDetectionThreshold = cjkDetectionThreshold;
+    this.countCjkChars = cjkDetectionThreshold > 0.0;
+    this.cjkDecision = this.countCjkChars ? null : CjkDecision.DECISION_NONE;
+    int nextEarlyDecisionLength = CjkDetector.EARLY_DECISION_CHECK_INTERVAL;
+
+    int idx = 0;
+    while (idx < end) {
+      final char currentChar = input.charAt(idx);
+      if (sanitize) {
+        final int removableLength = removableLengthAt(input, idx, end);
+        if (removableLength > 0) {
+          idx += removableLength;
+          continue;
+        }
+      }
+
+      // Same definition of a blank as String.trim() uses
+      if (currentChar > BLANK_CHAR) {
+        this.blank = false;
+      }
+
+      final int nonWordPairsEnd =
+          Character.isHighSurrogate(currentChar)
+              ? skipNonWordSurrogatePairs(input, idx, end, sanitize)
+              : idx;
+      if (nonWordPairsEnd > idx) {
+        // A run of emoji, symbols, etc. collapses into a single blank in one step
+        accept(BLANK_CHAR);
+        idx = nonWordPairsEnd;
+      } else if (Character.isHighSurrogate(currentChar)) {
+        // A supplementary word code point, a lone high surrogate, or a surrogate pair with a
+        // removed text in between, e.g.: a URL
+        final int lowCharIdx = sanitize ? skipRemovable(input, idx + 1, end) : idx + 1;
+        if (lowCharIdx < end && Character.isLowSurrogate(input.charAt(lowCharIdx))) {
+          final char lowChar = input.charAt(lowCharIdx);
+          if (InputSanitizer.isWord(Character.toCodePoint(currentChar, lowChar))) {
+            accept(currentChar);
+            accept(lowChar);
+          } else {
+            accept(BLANK_CHAR);
+            this.skippedSupplementaryChars += 2;
+          }
+          if (this.countCjkChars) {
+            this.characterCounts.mark(CharType.IRRELEVANT);
+          }
+          this.sanitizedLength += 2;
+          idx = lowCharIdx + 1;
+        } else {
+          accept(InputSanitizer.isWord(currentChar) ? currentChar : BLANK_CHAR);
+          if (this.countCjkChars) {
+            this.characterCounts.mark(CjkDetector.charTypeOf(currentChar));
+          }
+          this.sanitizedLength++;
+          idx++;
+        }
+      } else {
+        accept(InputSanitizer.isWord(currentChar) ? currentChar : BLANK_CHAR);
+        if (this.countCjkChars) {
+          this.characterCounts.mark(CjkDetector.charTypeOf(currentChar));
+        }
+        this.sanitizedLength++;
+        idx++;
+      }
+
+      if (this.countCjkChars && this.sanitizedLength >= nextEarlyDecisionLength) {
+        final CjkDecision earlyDecision =
+            CjkDetector.decideEarly(
+                this.characterCounts, this.sanitizedLength, end - idx, cjkDetectionThreshold);
+        if (earlyDecision == CjkDecision.DECISION_JAPANESE) {
+          // The statistical detection will not run, so the rest of the input is of no interest
+          this.cjkDecision = earlyDecision;
+          this.countCjkChars = false;
+          return;
+        } else if (earlyDecision == CjkDecision.DECISION_NONE) {
+          this.cjkDecision = earlyDecision;
+          this.countCjkChars = false;
+        }
+        nextEarlyDecisionLength = this.sanitizedLength + CjkDetector.EARLY_DECISION_CHECK_INTERVAL;
+      }
+    }
+
+    if (this.hasPendingChar) {
+      write(this.pendingChar);
+    }
+  }
+
+  /**
+   * Checks, without normalizing the input, whether any of its chars before the given end position
+   * can make it into the normalized stream as a non-blank, or count towards the CJK chars ratio of
+   * the {@link CjkDetector} heuristic. An input without such chars, i.e.: an input made of digits,
+   * punctuation, symbols, emoji or whitespace only, is always detected as undetermined.
+   *
+   * <p>The check relies on the same per-char lookups as the normalization does, and errs on the
+   * side of a detectable char: the high surrogate of a pair, which the sanitization may join
+   * across a removed text, counts as detectable.
+   *
+   * @param input the raw input text
+   * @param end exclusive end position within the input, i.e.: the truncation point
+   * @param countCjkChars whether the CJK heuristic is enabled
+   * @return false if the input is known to be undetermined, true otherwise
+   */
+  static boolean hasDetectableChars(
+      final CharSequence input, final int end, final boolean countCjkChars) {
+    for (int idx = 0; idx < end; idx++) {
+      final char currentChar = input.charAt(idx);
+      if (Character.isHighSurrogate(currentChar)) {
+        if (idx + 1 < end) {
+          final char lowChar = input.charAt(idx + 1);
+          if (!Character.isLowSurrogate(lowChar)
+              || InputSanitizer.isWord(Character.toCodePoint(currentChar, lowChar))) {
+            return true;
+          }
+          idx++;
+        }
+      } else if (InputSanitizer.isWord(currentChar) && NGram.normalize(currentChar) != BLANK_CHAR) {
+        return true;
+      } else if (countCjkChars && CjkDetector.isCjkChar(currentChar)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return true if the truncated and sanitized input consists of blank chars only, as per {@link
+   *     String#trim()}
+   */
+  boolean isBlank() {
+    return blank;
+  }
+
+  /** @return the decision of the CJK heuristic, see {@link CjkDetector} */
+  CjkDecision getCjkDecision() {
+    if (this.cjkDecision == null) {
+      this.cjkDecision =
+          CjkDetector.decide(
+              this.characterCounts, this.sanitizedLength, this.cjkDetectionThreshold);
+    }
+    return this.cjkDecision;
+  }
+
+  /**
+   * @return the number of chars of the non-word supplementary code points, e.g.: emoji, which were
+   *     collapsed into blanks during the last normalization
+   */
+  int getSkippedSupplementaryChars() {
+    return skippedSupplementaryChars;
+  }
+
+  /** Resets the number of the skipped chars, for an input which is rejected before normalizing. */
+  void clearSkippedSupplementaryChars() {
+    this.skippedSupplementaryChars = 0;
+  }
+
+  /**
+   * @return the estimated time spent in each sanitizer stage, when the collection of metrics is
+   *     enabled, see {@link #setCollectSanitizerStageMetrics(boolean)}
+   */
+  long[] getSanitizerStageNanos() {
+    return sanitizerStageNanos;
+  }
+
+  /**
+   * @return the time which the last normalization spent in the repeated calls of the sanitizer
+   *     stages made only to time them, i.e.: the time to discount from the time of the pass
+   */
+  long getSanitizerStageTimingOverheadNanos() {
+    return sanitizerStageTimingOverheadNanos;
+  }
+
+  /** @return the number of chars removed by each sanitizer stage */
+  int[] getSanitizerStageRemovedChars() {
+    return sanitizerStageRemovedChars;
+  }
+
+  char[] getNormalizedChars() {
+    return normalizedChars;
+  }
+
+  int getLength() {
+    return length;
+  }
+
+  /**
+   * Asks the sanitizer stages, in their order, whether they recognize the text at the given
+   * position.
+   *
+   * @return the length of the text recognized by the first matching stage, or zero
+   */
+  private int removableLengthAt(final CharSequence input, final int start, final int end) {
+    if (this.collectSanitizerStageMetrics
+        && (this.stageTimingCounter++ & STAGE_TIMING_INTERVAL_MASK) == 0) {
+      return timedRemovableLengthAt(input, start, end);
+    }
+    for (int stageIdx = 0; stageIdx < this.sanitizerStages.length; stageIdx++) {
+      final int removableLength =
+          this.sanitizerStages[stageIdx].removableLengthAt(input, start, end);
+      if (removableLength > 0) {
+        this.sanitizerStageRemovedChars[stageIdx] += removableLength;
+        return removableLength;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Same as {@link #removableLengthAt(CharSequence, int, int)}, while also timing each stage over
+   * {@link #STAGE_TIMING_REPETITIONS} calls at the given position. The time of a single call is
+   * scaled up to the positions which were not timed, since a pair of clock reads around every call
+   * would take longer than most of the stages themselves.
+   */
+  private int timedRemovableLengthAt(final CharSequence input, final int start, final int end) {
+    for (int stageIdx = 0; stageIdx < this.sanitizerStages.length; stageIdx++) {
+      final SanitizerStage sanitizerStage = this.sanitizerStages[stageIdx];
+      final long startNanos = System.nanoTime();
+      final int removableLength = sanitizerStage.removableLengthAt(input, start, end);
+      int repeatedLengths = 0;
+      for (int repetition = 1; repetition < STAGE_TIMING_REPETITIONS; repetition++) {
+        repeatedLengths += sanitizerStage.removableLengthAt(input, start, end);
+      }
+      final long elapsedNanos = System.nanoTime() - startNanos;
+
+      // Also keeps the repeated calls from being optimized away
+      if (repeatedLengths != removableLength * (STAGE_TIMING_REPETITIONS - 1)) {
+        throw new IllegalStateException(
+            "Sanitizer stage must not keep state between calls: " + sanitizerStage);
+      }
+      final long callNanos = elapsedNanos / STAGE_TIMING_REPETITIONS;
+      this.sanitizerStageNanos[stageIdx] += callNanos * (STAGE_TIMING_INTERVAL_MASK + 1);
+      this.sanitizerStageTimingOverheadNanos += elapsedNanos - callNanos;
+
+      if (removableLength > 0) {
+        this.sanitizerStageRemovedChars[stageIdx] += removableLength;
+        return removableLength;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Skips the run of non-word surrogate pairs, e.g.: emoji, which starts at the given position,
+   * together with the texts recognized by the sanitizer stages in between the pairs. Each pair is
+   * counted exactly as the per-char path would count it: as an irrelevant char of length two.
+   *
+   * @return the position of the first char after the run, or the given position if there is no
+   *     non-word surrogate pair at it
+   */
+  private int skipNonWordSurrogatePairs(
+      final CharSequence input, final int start, final int end, final boolean sanitize) {
+    int idx = start;
+    int pairsCount = 0;
+    while (idx + 1 < end) {
+      final char highChar = input.charAt(idx);
+      final char lowChar = input.charAt(idx + 1);
+      if (!Character.isHighSurrogate(highChar)
+          || !Character.isLowSurrogate(lowChar)
+          || InputSanitizer.isWord(Character.toCodePoint(highChar, lowChar))) {
+        break;
+      }
+      pairsCount++;
+      idx += 2;
+      if (sanitize) {
+        idx = skipRemovable(input, idx, end);
+      }
+    }
+
+    if (pairsCount > 0) {
+      if (this.countCjkChars) {
+        this.characterCounts.mark(CharType.IRRELEVANT, pairsCount);
+      }
+      this.sanitizedLength += 2 * pairsCount;
+      this.skippedSupplementaryChars += 2 * pairsCount;
+    }
+    return idx;
+  }
+
+  /**
+   * Skips the texts recognized by the sanitizer stages which start at the given position, one
+   * after another.
+   *
+   * @return the position of the first char after the skipped texts
+   */
+  private int skipRemovable(final CharSequence input, final int start, final int end) {
+    int idx = start;
+    while (idx < end) {
+      final int removableLength = removableLengthAt(input, idx, end);
+      if (removableLength == 0) {
+        break;
+      }
+      idx += removableLength;
+    }
+    return idx;
+  }
+
+  private void accept(final char currentChar) {
+    if (this.hasPendingChar) {
+      if (this.foldVietnamese) {
+        final char precomposed = VietnameseUtils.compose(this.pendingChar, currentChar);
+        if (precomposed != 0) {
+          this.pendingChar = precomposed;
+          return;
+        }
+      }
+      write(this.pendingChar);
+    }
+    this.pendingChar = currentChar;
+    this.hasPendingChar = true;
+  }
+
+  private void write(final char currentChar) {
+    final char normalizedChar = NGram.normalize(currentChar);
+    if (normalizedChar == BLANK_CHAR && this.lastWrittenChar == BLANK_CHAR) {
+      return;
+    }
+    this.normalizedChars[this.length++] = normalizedChar;
+    this.lastWrittenChar = normalizedChar;
+  }
+}
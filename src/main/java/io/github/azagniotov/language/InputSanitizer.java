@@ -1,5 +1,6 @@
 package io.github.azagniotov.language;
 
+import static io.github.azagniotov.language.StringConstants.BLANK_CHAR;
 import static io.github.azagniotov.language.StringConstants.BLANK_SPACE;
 
 import java.util.regex.Matcher;
@@ -10,8 +11,51 @@ final class InputSanitizer {
   private static final Pattern PATTERN_FILTER_ALL_BUT_ALPHANUMERIC =
       Pattern.compile("\\P{IsWord}", Pattern.UNICODE_CHARACTER_CLASS);
 
-  private static final String URLS = "(https?://[\\w.-]+(?:/[\\w\\d&%_./=-]*)?)([\\p{P}\\s]+)?";
-  private static final Pattern URLS_PATTERN = Pattern.compile(URLS);
+  private static final String HTTP_SCHEME = "http";
+  private static final String SCHEME_SEPARATOR = "://";
+
+  // Bit mask of the general categories which, together with the alphabetic code points
+  // and the join controls, make up the Unicode "word" property matched by \p{IsWord}
+  private static final int WORD_CATEGORIES_MASK =
+      (1 << Character.NON_SPACING_MARK)
+          | (1 << Character.ENCLOSING_MARK)
+          | (1 << Character.COMBINING_SPACING_MARK)
+          | (1 << Character.DECIMAL_DIGIT_NUMBER)
+          | (1 << Character.CONNECTOR_PUNCTUATION);
+
+  // Bit mask of the general categories matched by \p{P}
+  private static final int PUNCTUATION_CATEGORIES_MASK =
+      (1 << Character.CONNECTOR_PUNCTUATION)
+          | (1 << Character.DASH_PUNCTUATION)
+          | (1 << Character.START_PUNCTUATION)
+          | (1 << Character.END_PUNCTUATION)
+          | (1 << Character.INITIAL_QUOTE_PUNCTUATION)
+          | (1 << Character.FINAL_QUOTE_PUNCTUATION)
+          | (1 << Character.OTHER_PUNCTUATION);
+
+  // Unicode BMP (Basic Multilingual Plane) lookup of the Unicode "word" property
+  private static final boolean[] WORD_BMP_CHARS = new boolean[Character.MAX_VALUE + 1];
+
+  // Bit set lookup of the Unicode "word" property of the code points from the supplementary planes
+  // 1 to 3, i.e.: the SMP, where emoji and most of the historic scripts live, and the SIP and the
+  // TIP, where the CJK ideograph extensions live
+  private static final int SUPPLEMENTARY_LOOKUP_END = 0x40000;
+  private static final long[] WORD_SUPPLEMENTARY_BITS =
+      new long[(SUPPLEMENTARY_LOOKUP_END - Character.MIN_SUPPLEMENTARY_CODE_POINT) >>> 6];
+
+  static {
+    for (int codePoint = 0; codePoint <= Character.MAX_VALUE; codePoint++) {
+      WORD_BMP_CHARS[codePoint] = computeIsWord(codePoint);
+    }
+    for (int codePoint = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        codePoint < SUPPLEMENTARY_LOOKUP_END;
+        codePoint++) {
+      if (computeIsWord(codePoint)) {
+        final int offset = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        WORD_SUPPLEMENTARY_BITS[offset >>> 6] |= 1L << offset;
+      }
+    }
+  }
 
   private InputSanitizer() {}
 
@@ -36,11 +80,139 @@ final class InputSanitizer {
     return result.toString();
   }
 
-  static String sanitize(final String input) {
-    if (input.contains("https://") || input.contains("http://")) {
-      return URLS_PATTERN.matcher(input).replaceAll(StringConstants.EMPTY_STRING);
-    } else {
-      return input;
+  /**
+   * Returns the number of chars of the URL at the given position of the input, along with its
+   * trailing punctuation and whitespace, taking into account only the chars before the given end
+   * position. This is what {@link BuiltInSanitizerStage#URLS} removes.
+   *
+   * <p>The recognized text is what the URL pattern {@code
+   * (https?://[\w.-]+(?:/[\w\d&%_./=-]*)?)([\p{P}\s]+)?} would match. The pattern consists of
+   * greedy parts only, none of which can cause the overall match to fail, so the regex engine never
+   * backtracks into them. This method therefore consumes each part greedily, exactly once.
+   *
+   * @param input input text
+   * @param start the position to match at
+   * @param end the exclusive end position within the input
+   * @return length of the matched URL and its trailing punctuation and whitespace, or zero if there
+   *     is no URL at the given position
+   */
+  static int urlLengthAt(final CharSequence input, final int start, final int end) {
+    // https?://
+    int idx = start + HTTP_SCHEME.length();
+    if (idx > end || !regionMatches(input, start, HTTP_SCHEME)) {
+      return 0;
+    }
+    if (idx < end && input.charAt(idx) == 's') {
+      idx++;
+    }
+    if (idx + SCHEME_SEPARATOR.length() > end || !regionMatches(input, idx, SCHEME_SEPARATOR)) {
+      return 0;
+    }
+    idx += SCHEME_SEPARATOR.length();
+
+    // [\w.-]+
+    final int hostStart = idx;
+    while (idx < end && isUrlHostChar(input.charAt(idx))) {
+      idx++;
+    }
+    if (idx == hostStart) {
+      return 0;
+    }
+
+    // (?:/[\w\d&%_./=-]*)?
+    if (idx < end && input.charAt(idx) == '/') {
+      idx++;
+      while (idx < end && isUrlPathChar(input.charAt(idx))) {
+        idx++;
+      }
     }
+
+    // ([\p{P}\s]+)?
+    while (idx < end) {
+      final int codePoint = codePointAt(input, idx, end);
+      if (!isAsciiWhitespace(codePoint) && !isPunctuation(codePoint)) {
+        break;
+      }
+      idx += Character.charCount(codePoint);
+    }
+
+    return idx - start;
+  }
+
+  /**
+   * Checks the Unicode "word" property of a code point, i.e.: whether {@link #filterOutNonWords}
+   * keeps the code point.
+   */
+  static boolean isWord(final int codePoint) {
+    if (codePoint <= Character.MAX_VALUE) {
+      return WORD_BMP_CHARS[codePoint];
+    } else if (codePoint < SUPPLEMENTARY_LOOKUP_END) {
+      final int offset = codePoint - Character.MIN_SUPPLEMENTARY_CODE_POINT;
+      return (WORD_SUPPLEMENTARY_BITS[offset >>> 6] & (1L << offset)) != 0;
+    }
+    return computeIsWord(codePoint);
+  }
+
+  /**
+   * Returns the code point at the given index, without looking at the chars at or beyond the given
+   * end position. A high surrogate right before the end position is returned as is, just like it
+   * would be in a truncated string.
+   */
+  static int codePointAt(final CharSequence input, final int index, final int end) {
+    final char highChar = input.charAt(index);
+    if (Character.isHighSurrogate(highChar) && index + 1 < end) {
+      final char lowChar = input.charAt(index + 1);
+      if (Character.isLowSurrogate(lowChar)) {
+        return Character.toCodePoint(highChar, lowChar);
+      }
+    }
+    return highChar;
+  }
+
+  private static boolean computeIsWord(final int codePoint) {
+    return Character.isAlphabetic(codePoint)
+        || ((1 << Character.getType(codePoint)) & WORD_CATEGORIES_MASK) != 0
+        || codePoint == '\u200C' /* ZERO WIDTH NON-JOINER */
+        || codePoint == '\u200D' /* ZERO WIDTH JOINER */;
+  }
+
+  private static boolean regionMatches(
+      final CharSequence input, final int start, final String expected) {
+    for (int idx = 0; idx < expected.length(); idx++) {
+      if (input.charAt(start + idx) != expected.charAt(idx)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAsciiWordChar(final char candidate) {
+    return (candidate >= 'a' && candidate <= 'z')
+        || (candidate >= 'A' && candidate <= 'Z')
+        || (candidate >= '0' && candidate <= '9')
+        || candidate == '_';
+  }
+
+  private static boolean isUrlHostChar(final char candidate) {
+    return isAsciiWordChar(candidate) || candidate == '.' || candidate == '-';
+  }
+
+  private static boolean isUrlPathChar(final char candidate) {
+    return isAsciiWordChar(candidate)
+        || candidate == '&'
+        || candidate == '%'
+        || candidate == '.'
+        || candidate == '/'
+        || candidate == '='
+        || candidate == '-';
+  }
+
+  private static boolean isAsciiWhitespace(final int codePoint) {
+    // Without the UNICODE_CHARACTER_CLASS flag, \s is [ \t\n\x0B\f\r]
+    return codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r');
+  }
+
+  private static boolean isPunctuation(final int codePoint) {
+    return ((1 << Character.getType(codePoint)) & PUNCTUATION_CATEGORIES_MASK) != 0;
   }
 }
@@ -0,0 +1,68 @@
+package io.github.azagniotov.language;
+
+/**
+ * The length-aware budget of the trials of the stochastic Naive Bayes approximation, see {@link
+ * LanguageDetectionSettings.Builder#withIterationBudget(int, int)}.
+ *
+ * <p>By default, every input gets the iteration limit and the number of the trials of the {@link
+ * Model}, e.g.: a twelve-char query may sample up to as many n-grams per trial as a twenty
+ * thousand char article. However, a trial that does not converge keeps multiplying the same few
+ * n-grams of a short input, which sharpens its probabilities, but hardly changes their order.
+ * Here, both are derived from the number of the distinct n-grams of the input instead, i.e.: from
+ * its diversity, and they never exceed the ones of the {@link Model}.
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+final class IterationBudget {
+
+  // The lowest iteration limit, so that a trial of a very short input still converges
+  static final int MIN_ITERATION_LIMIT = 100;
+
+  // The lowest number of the trials, so that the alpha variation still averages out
+  static final int MIN_NUMBER_OF_TRIALS = 3;
+
+  private final int maxIterationLimit;
+  private final int maxNumberOfTrials;
+  private final int iterationsPerNGram;
+  private final int nGramsPerTrial;
+
+  /**
+   * @param model the model parameters, i.e.: the iteration limit and the number of the trials
+   * @param iterationsPerNGram the number of the iterations per distinct n-gram, where a
+   *     non-positive value means the iteration limit of the model
+   * @param nGramsPerTrial the number of the distinct n-grams per trial, where a non-positive value
+   *     means the number of the trials of the model
+   */
+  IterationBudget(final Model model, final int iterationsPerNGram, final int nGramsPerTrial) {
+    this.maxIterationLimit = model.getIterationLimit();
+    this.maxNumberOfTrials = model.getNumberOfTrials();
+    this.iterationsPerNGram = iterationsPerNGram;
+    this.nGramsPerTrial = nGramsPerTrial;
+  }
+
+  /**
+   * @param distinctNGrams the number of the distinct n-grams extracted from the input
+   * @return the iteration limit of each trial, from {@link #MIN_ITERATION_LIMIT} to the iteration
+   *     limit of the model
+   */
+  int iterationLimit(final int distinctNGrams) {
+    if (this.iterationsPerNGram <= 0) {
+      return this.maxIterationLimit;
+    }
+    final long iterationLimit = (long) distinctNGrams * this.iterationsPerNGram;
+    return (int) Math.min(this.maxIterationLimit, Math.max(MIN_ITERATION_LIMIT, iterationLimit));
+  }
+
+  /**
+   * @param distinctNGrams the number of the distinct n-grams extracted from the input
+   * @return the number of the trials, from {@link #MIN_NUMBER_OF_TRIALS} to the number of the
+   *     trials of the model
+   */
+  int numberOfTrials(final int distinctNGrams) {
+    if (this.nGramsPerTrial <= 0) {
+      return this.maxNumberOfTrials;
+    }
+    final int numberOfTrials = (distinctNGrams + this.nGramsPerTrial - 1) / this.nGramsPerTrial;
+    return Math.min(this.maxNumberOfTrials, Math.max(MIN_NUMBER_OF_TRIALS, numberOfTrials));
+  }
+}
@@ -2,11 +2,13 @@ package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.LanguageDetector.CHINESE_LANGUAGE_RESPONSE;
 import static io.github.azagniotov.language.LanguageDetector.JAPANESE_LANGUAGE_RESPONSE;
+import static io.github.azagniotov.language.LanguageDetector.MAX_DETECTED_CLASSES;
 import static io.github.azagniotov.language.LanguageDetector.PERFECT_PROBABILITY;
 import static io.github.azagniotov.language.LanguageDetector.UNDETERMINED_LANGUAGE_RESPONSE;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.Character.UnicodeScript;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -14,9 +16,9 @@ import java.util.List;
 /**
  * Orchestrates the language detection process using configured settings.
  *
- * <p>Combines a CJK heuristic check with statistical language detection (Naive Bayes) to determine
- * the language(s) of an input text. Handles input preprocessing (truncation, sanitization) and
- * applies confidence thresholds to results.
+ * <p>Combines a CJK heuristic check and an optional unique script check with statistical language
+ * detection (Naive Bayes) to determine the language(s) of an input text. Handles input
+ * preprocessing (truncation, sanitization) and applies confidence thresholds to results.
  *
  * <p>Use the static factory method {@link #fromSettings(LanguageDetectionSettings)} to obtain a
  * configured and initialized instance.
@@ -24,7 +26,20 @@ import java.util.List;
 public class LanguageDetectionOrchestrator {
 
   private final LanguageDetectionSettings settings;
+  private final SanitizerStage[] sanitizerStages;
+  private final DetectionMetrics metrics;
+  private final List<Language> topLanguageFallbackResults;
+
+  // The detector and the buffers are re-used by the detections on the same thread
+  private final ThreadLocal<DetectionContext> detectionContexts;
+
   private static final List<Language> EMPTY_RESULTS = Collections.emptyList();
+  private static final List<Language> UNDETERMINED_RESULTS =
+      Collections.singletonList(UNDETERMINED_LANGUAGE_RESPONSE);
+  private static final List<Language> JAPANESE_RESULTS =
+      Collections.singletonList(JAPANESE_LANGUAGE_RESPONSE);
+  private static final List<Language> CHINESE_RESULTS =
+      Collections.singletonList(CHINESE_LANGUAGE_RESPONSE);
 
   /**
    * Creates and fully initializes a LanguageDetectionOrchestrator instance.
@@ -80,9 +95,7 @@ public class LanguageDetectionOrchestrator {
             + "この世界人権宣言を常に念頭に置きながら、加盟国自身の人民の間にも、また、加盟国の管轄下にある地域の人民の間にも、"
             + "これらの権利と自由との尊重を指導と教育によって促進すること並びにそれらの普遍的措置によって確保することに努力するように、"
             + "全部の人民と全部の国とが達成すべき共通の基準として、この人権宣言を公布する。";
-    orchestrator.doCjkHeuristic(udhrJapanese);
-    orchestrator.doStatisticalDetection(udhrJapanese);
-    orchestrator.detect(udhrJapanese);
+    orchestrator.warmUp(udhrJapanese);
 
     final String udhrEnglish =
         "Universal Declaration of Human Rights Whereas recognition of the inherent dignity and "
@@ -107,13 +120,37 @@ public class LanguageDetectionOrchestrator {
             + "and by progressive measures, national and international, to secure their universal and effective "
             + "recognition and observance, both among the peoples of Member States themselves and among the peoples "
             + "of territories under their jurisdiction.";
-    orchestrator.doCjkHeuristic(udhrEnglish);
-    orchestrator.doStatisticalDetection(udhrEnglish);
-    orchestrator.detect(udhrEnglish);
+    orchestrator.warmUp(udhrEnglish);
+    orchestrator.metrics.reset();
 
     return orchestrator;
   }
 
+  private void warmUp(final String input) {
+    final DetectionContext detectionContext = this.detectionContexts.get();
+    final LanguageDetector languageDetector = detectionContext.getLanguageDetector();
+    final InputNormalizer normalizedInput = detectionContext.getInputNormalizer();
+
+    normalizedInput.normalize(
+        input,
+        input.length(),
+        this.sanitizerStages,
+        languageDetector.isVietnameseConfigured(),
+        this.settings.getCjkDetectionThreshold());
+    doCjkHeuristic(normalizedInput.getCjkDecision());
+
+    // Normalize again without the CJK heuristic, which may stop the pass early
+    normalizedInput.normalize(
+        input,
+        input.length(),
+        this.sanitizerStages,
+        languageDetector.isVietnameseConfigured(),
+        0.0);
+    doStatisticalDetection(languageDetector, normalizedInput, MAX_DETECTED_CLASSES);
+
+    detect(input);
+  }
+
   /**
    * Private constructor to initialize with settings. Use factory method {@link #fromSettings}.
    *
@@ -121,76 +158,253 @@ public class LanguageDetectionOrchestrator {
    */
   private LanguageDetectionOrchestrator(final LanguageDetectionSettings settings) {
     this.settings = settings;
+    this.sanitizerStages = settings.getSanitizerStages().toArray(new SanitizerStage[0]);
+    this.metrics = new DetectionMetrics(settings.getSanitizerStages());
+    this.topLanguageFallbackResults =
+        Collections.singletonList(
+            new Language(settings.getTopLanguageFallbackIsoCode639_1(), PERFECT_PROBABILITY));
+    this.detectionContexts =
+        ThreadLocal.withInitial(() -> new DetectionContext(languageDetector()));
+  }
+
+  /**
+   * @return the cumulative metrics of the detections made by this orchestrator, which stay at zero
+   *     unless enabled through {@link LanguageDetectionSettings.Builder#withMetrics()}
+   */
+  public DetectionMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Returns the number of chars of the non-word supplementary code points, e.g.: emoji, which the
+   * normalization pass of the last detection on the calling thread collapsed into blanks, see
+   * {@link DetectionMetrics#getSkippedSupplementaryChars()} for the total of all the detections.
+   * Unlike the metrics, the count is available without {@link
+   * LanguageDetectionSettings.Builder#withMetrics()}.
+   *
+   * @return the number of the skipped chars of the last detection (or script detection) on the
+   *     calling thread, which is zero when its input was rejected before the normalization, e.g.:
+   *     an input without any letters
+   */
+  public int getLastSkippedSupplementaryChars() {
+    return this.detectionContexts.get().getInputNormalizer().getSkippedSupplementaryChars();
   }
 
   /**
    * Detects the single most likely language of the input text.
    *
+   * <p>Only the top language is selected, therefore a detection allocates at most one {@link
+   * Language}.
+   *
    * @param input The text to analyze.
    * @return The most likely detected {@link Language}. Returns an undetermined language if input is
    *     empty/invalid or detection is inconclusive based on settings.
    * @see #detectAll(String)
    */
   public Language detect(final String input) {
-    // detectAll ensures the list is never empty (returns undetermined if needed)
-    return detectAll(input).get(0);
+    // detectTopLanguages ensures the list is never empty (returns undetermined if needed)
+    return detectTopLanguages(input, 1).get(0);
   }
 
   /**
    * Detects a list of possible languages for the input text, ordered by likelihood.
    *
-   * <p>Performs input validation, truncation, optional sanitization, then applies CJK heuristics
-   * followed by statistical detection if necessary. Results may be filtered or modified based on
-   * configured certainty thresholds.
+   * <p>Performs input validation, optional markup stripping, truncation, optional sanitization,
+   * then applies CJK heuristics followed by statistical detection if necessary. Results may be
+   * filtered or modified based on configured certainty thresholds.
    *
    * @param input The text to analyze.
+   * @return A list of up to ten detected {@link Language} objects, ordered by probability. Returns
+   *     a list containing only the undetermined language if input is empty/invalid or detection is
+   *     inconclusive based on settings.
+   */
+  public List<Language> detectAll(final String input) {
+    return detectTopLanguages(input, MAX_DETECTED_CLASSES);
+  }
+
+  /**
+   * Detects a list of up to the given number of possible languages for the input text, ordered by
+   * likelihood, see {@link #detectAll(String)}.
+   *
+   * <p>Only the top languages are selected, instead of sorting all the configured languages.
+   *
+   * @param input The text to analyze.
+   * @param maxLanguages The maximum number of the languages to return.
    * @return A list of detected {@link Language} objects, ordered by probability. Returns a list
    *     containing only the undetermined language if input is empty/invalid or detection is
    *     inconclusive based on settings.
+   * @throws IllegalArgumentException if the maximum number of the languages is not positive
    */
-  public List<Language> detectAll(final String input) {
-    if (input == null || input.trim().isEmpty()) {
-      return Collections.singletonList(UNDETERMINED_LANGUAGE_RESPONSE);
+  public List<Language> detectAll(final String input, final int maxLanguages) {
+    if (maxLanguages < 1) {
+      throw new IllegalArgumentException("Maximum number of languages must be positive");
+    }
+    return detectTopLanguages(input, maxLanguages);
+  }
+
+  /**
+   * Detects the dominant script of the input text, i.e.: the Unicode script of the most letters,
+   * which is cheap compared to the language detection, e.g.: to route the input upfront.
+   *
+   * <p>The input goes through the same markup stripping, truncation and sanitization as in {@link
+   * #detectAll(String)}, but neither the CJK heuristic nor the statistical detection run. The chars
+   * which are shared by many scripts, e.g.: digits and punctuation, are not counted.
+   *
+   * @param input The text to analyze.
+   * @return The dominant script, e.g.: {@link UnicodeScript#CYRILLIC}, or {@link
+   *     UnicodeScript#UNKNOWN} if the input is empty/invalid or has no letters.
+   */
+  public UnicodeScript detectScript(final String input) {
+    if (input == null || !hasDetectableChars(input)) {
+      clearSkippedSupplementaryChars();
+      return UnicodeScript.UNKNOWN;
+    }
+
+    final DetectionContext detectionContext = this.detectionContexts.get();
+    final CharSequence text;
+    if (this.settings.isStripMarkup()) {
+      final MarkupStripper markupStripper = detectionContext.getMarkupStripper();
+      markupStripper.strip(input, input.length(), this.settings.getMaxTextChars());
+      text = markupStripper;
     } else {
-      final int maxChars = Math.min(this.settings.getMaxTextChars(), input.length());
-      final String truncatedInput = input.substring(0, maxChars);
+      text = input;
+    }
+
+    final int maxChars = Math.min(this.settings.getMaxTextChars(), text.length());
+    final LanguageDetector languageDetector = detectionContext.getLanguageDetector();
+    final InputNormalizer normalizedInput = detectionContext.getInputNormalizer();
+    normalizedInput.setCollectSanitizerStageMetrics(false);
+    normalizedInput.normalize(
+        text, maxChars, this.sanitizerStages, languageDetector.isVietnameseConfigured(), 0.0);
+    return languageDetector.detectScript(normalizedInput);
+  }
+
+  private List<Language> detectTopLanguages(final String input, final int maxLanguages) {
+    if (input == null) {
+      clearSkippedSupplementaryChars();
+      return UNDETERMINED_RESULTS;
+    }
+
+    final boolean collectMetrics = this.settings.isCollectMetrics();
+    long startNanos = collectMetrics ? System.nanoTime() : 0L;
+    if (collectMetrics) {
+      this.metrics.recordDetection();
+    }
 
-      final String sanitizedInput = conditionallySanitizeInput(truncatedInput);
-      if (sanitizedInput.trim().isEmpty()) {
-        return Collections.singletonList(UNDETERMINED_LANGUAGE_RESPONSE);
+    // Inputs without any letters, e.g.: numbers, punctuation, emoji, are rejected before the
+    // markup stripping, the normalization and the statistical detection, without allocating.
+    if (!hasDetectableChars(input)) {
+      if (collectMetrics) {
+        this.metrics.recordQuickRejection();
       }
+      clearSkippedSupplementaryChars();
+      return UNDETERMINED_RESULTS;
+    }
 
-      final List<Language> cjkLanguages = doCjkHeuristic(sanitizedInput);
-      if (cjkLanguages.isEmpty()) {
-        return doStatisticalDetection(sanitizedInput);
-      } else {
-        return cjkLanguages;
+    final DetectionContext detectionContext = this.detectionContexts.get();
+
+    // Markup does not count towards the text, therefore it is stripped before the truncation
+    final CharSequence text;
+    if (this.settings.isStripMarkup()) {
+      final MarkupStripper markupStripper = detectionContext.getMarkupStripper();
+      markupStripper.strip(input, input.length(), this.settings.getMaxTextChars());
+      text = markupStripper;
+      if (collectMetrics) {
+        final long endNanos = System.nanoTime();
+        this.metrics.recordMarkupStripping(endNanos - startNanos);
+        startNanos = endNanos;
       }
+    } else {
+      text = input;
+    }
+
+    // Instead of creating truncated and sanitized copies of the input, a single pass over the
+    // chars before the truncation point disregards whatever the sanitizer stages recognize on
+    // the fly, and produces at once: the blankness, the CJK char counts and the normalized input.
+    final int maxChars = Math.min(this.settings.getMaxTextChars(), text.length());
+    final LanguageDetector languageDetector = detectionContext.getLanguageDetector();
+    final InputNormalizer normalizedInput = detectionContext.getInputNormalizer();
+    normalizedInput.setCollectSanitizerStageMetrics(collectMetrics);
+    normalizedInput.normalize(
+        text,
+        maxChars,
+        this.sanitizerStages,
+        languageDetector.isVietnameseConfigured(),
+        this.settings.getCjkDetectionThreshold());
+    if (collectMetrics) {
+      final long endNanos = System.nanoTime();
+      this.metrics.recordNormalization(endNanos - startNanos, normalizedInput);
+      startNanos = endNanos;
+    }
+    if (normalizedInput.isBlank()) {
+      return UNDETERMINED_RESULTS;
+    }
+
+    final List<Language> cjkLanguages = doCjkHeuristic(normalizedInput.getCjkDecision());
+    if (cjkLanguages.isEmpty()) {
+      // The languages which are the only users of their script, e.g.: Georgian or Greek, do not
+      // need the statistical detection either, see LanguageDetector.detectUniqueScript()
+      final List<Language> uniqueScriptLanguages =
+          languageDetector.detectUniqueScript(normalizedInput);
+      if (!uniqueScriptLanguages.isEmpty()) {
+        return uniqueScriptLanguages;
+      }
+      final List<Language> languages =
+          doStatisticalDetection(languageDetector, normalizedInput, maxLanguages);
+      if (collectMetrics) {
+        this.metrics.recordStatisticalDetection(System.nanoTime() - startNanos);
+      }
+      return languages;
+    } else {
+      return cjkLanguages;
     }
   }
 
+  /** Makes the count of the skipped chars of the last detection zero, see the quick rejection. */
+  private void clearSkippedSupplementaryChars() {
+    this.detectionContexts.get().getInputNormalizer().clearSkippedSupplementaryChars();
+  }
+
+  /**
+   * Checks whether the input has any chars which can make it into the n-grams or count towards the
+   * CJK heuristic, see {@link InputNormalizer#hasDetectableChars(CharSequence, int, boolean)}.
+   *
+   * @param input The text to analyze.
+   * @return false if the input is known to be detected as undetermined.
+   */
+  private boolean hasDetectableChars(final String input) {
+    final boolean countCjkChars = this.settings.getCjkDetectionThreshold() > 0.0;
+    if (this.settings.isStripMarkup()) {
+      // The truncation applies to the stripped text, so the whole input is checked. The character
+      // references are decoded, e.g.: &#233; into é, so an ampersand may stand for a letter.
+      return input.indexOf('&') >= 0
+          || InputNormalizer.hasDetectableChars(input, input.length(), countCjkChars);
+    }
+    final int maxChars = Math.min(this.settings.getMaxTextChars(), input.length());
+    return InputNormalizer.hasDetectableChars(input, maxChars, countCjkChars);
+  }
+
   /**
    * Performs a heuristic check for Chinese or Japanese language presence. Active only if {@code
    * cjkDetectionThreshold > 0} in settings.
    *
-   * @param sanitizedInput The preprocessed input text.
+   * @param decision The decision of the CJK heuristic, which is {@link
+   *     CjkDecision#DECISION_NONE} when the check is disabled.
    * @return A list containing the detected CJK language (respecting the 'classifyChineseAsJapanese'
    *     setting) if found above threshold, otherwise an empty list.
    */
-  private List<Language> doCjkHeuristic(final String sanitizedInput) {
+  private List<Language> doCjkHeuristic(final CjkDecision decision) {
     // Do a quick heuristic to check if this is a Chinese / Japanese input
     if (this.settings.getCjkDetectionThreshold() > 0) {
-      final CjkDecision decision =
-          CjkDetector.decide(sanitizedInput, this.settings.getCjkDetectionThreshold());
       if (decision == CjkDecision.DECISION_JAPANESE) {
-        return Collections.singletonList(JAPANESE_LANGUAGE_RESPONSE);
+        return JAPANESE_RESULTS;
       } else if (decision == CjkDecision.DECISION_CHINESE) {
         if (this.settings.isClassifyChineseAsJapanese()) {
-          return Collections.singletonList(JAPANESE_LANGUAGE_RESPONSE);
+          return JAPANESE_RESULTS;
         } else {
           // If it is a Chinese input, then enforce
           // the input to be a Japanese string
-          return Collections.singletonList(CHINESE_LANGUAGE_RESPONSE);
+          return CHINESE_RESULTS;
         }
       }
     }
@@ -203,23 +417,19 @@ public class LanguageDetectionOrchestrator {
    * Performs statistical language detection using the configured {@link LanguageDetector}. Applies
    * certainty thresholds from settings to filter or adjust results.
    *
-   * @param sanitizedInput The preprocessed input text.
+   * @param languageDetector The language detector.
+   * @param normalizedInput The truncated, sanitized and normalized input text.
+   * @param maxLanguages The maximum number of the languages to return.
    * @return A list of detected languages, potentially filtered or containing fallback/undetermined
    *     results based on confidence scores and settings.
-   * @throws UncheckedIOException if creating the language detector fails here (should ideally be
-   *     created once in {@code fromSettings}).
    */
-  private List<Language> doStatisticalDetection(final String sanitizedInput) {
+  private List<Language> doStatisticalDetection(
+      final LanguageDetector languageDetector,
+      final InputNormalizer normalizedInput,
+      final int maxLanguages) {
     // For non-Chinese/Japanese decisions we are going through
     // Naive Bayes below (the original LangDetect flow)
-    final LanguageDetector languageDetector;
-    try {
-      languageDetector = LanguageDetectorFactory.detector(this.settings);
-    } catch (IOException e) {
-      throw new UncheckedIOException(e);
-    }
-
-    final List<Language> languages = languageDetector.detectAll(sanitizedInput);
+    final List<Language> languages = languageDetector.detectAll(normalizedInput, maxLanguages);
     final Language topLanguage = languages.get(0);
     if (topLanguage.getIsoCode639_1().equals(UNDETERMINED_LANGUAGE_RESPONSE.getIsoCode639_1())) {
       // Return undetermined ISO code to the client,
@@ -230,10 +440,16 @@ public class LanguageDetectionOrchestrator {
 
     if (this.settings.isTopLanguageCertaintyThresholdSet()) {
       if (topLanguage.getProbability() < this.settings.getTopLanguageCertaintyThreshold()) {
-        return Collections.singletonList(
-            new Language(this.settings.getTopLanguageFallbackIsoCode639_1(), PERFECT_PROBABILITY));
+        return this.topLanguageFallbackResults;
       }
     } else if (this.settings.isMinimumCertaintyThresholdSet()) {
+      // The languages are ordered by probability, so all of them are above the threshold when the
+      // last one is, e.g.: the top language alone
+      final Language lastLanguage = languages.get(languages.size() - 1);
+      if (lastLanguage.getProbability() >= this.settings.getMinimumCertaintyThreshold()) {
+        return languages;
+      }
+
       final List<Language> aboveThreshold = new ArrayList<>();
       for (final Language language : languages) {
         if (language.getProbability() >= this.settings.getMinimumCertaintyThreshold()) {
@@ -245,7 +461,7 @@ public class LanguageDetectionOrchestrator {
         // Return undetermined ISO code to the client,
         // so that client can make a decision what to do,
         // e.g.: cross-index into all languages or search through all language fields
-        return Collections.singletonList(UNDETERMINED_LANGUAGE_RESPONSE);
+        return UNDETERMINED_RESULTS;
       } else {
         return aboveThreshold;
       }
@@ -255,16 +471,16 @@ public class LanguageDetectionOrchestrator {
   }
 
   /**
-   * Sanitizes the input string using {@link InputSanitizer} if enabled in settings.
-   *
-   * @param truncatedInput The input string (already truncated).
-   * @return The sanitized string, or the original string if sanitization is disabled.
+   * @return a new language detector for the configured settings, which is created once per thread,
+   *     see {@link DetectionContext}
+   * @throws UncheckedIOException if creating the language detector fails here (should ideally be
+   *     created once in {@code fromSettings}).
    */
-  private String conditionallySanitizeInput(final String truncatedInput) {
-    if (this.settings.isSanitizeInput()) {
-      return InputSanitizer.sanitize(truncatedInput);
-    } else {
-      return truncatedInput;
+  private LanguageDetector languageDetector() {
+    try {
+      return LanguageDetectorFactory.detector(this.settings);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
     }
   }
 }
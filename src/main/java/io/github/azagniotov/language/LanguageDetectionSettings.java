@@ -4,6 +4,7 @@ import static io.github.azagniotov.language.StringConstants.COMMA;
 import static java.util.stream.Collectors.toList;
 
 import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
 
@@ -23,6 +24,19 @@ public class LanguageDetectionSettings {
   private static final int FLAG_TOP_LANGUAGE_CERTAINTY = 2; // 0010
   private static final int FLAG_SANITIZE_INPUT = 4; // 0100
   private static final int FLAG_CLASSIFY_AS_JAPANESE = 8; // 1000
+  private static final int FLAG_STRIP_MARKUP = 16; // 10000
+  private static final int FLAG_COLLECT_METRICS = 32; // 100000
+  private static final int FLAG_EXACT_NAIVE_BAYES = 64; // 1000000
+  private static final int FLAG_ADAPTIVE_TRIALS = 128; // 10000000
+  private static final int FLAG_AGGREGATE_NGRAMS = 256; // 100000000
+  private static final int FLAG_FAST_SAMPLING = 512; // 1000000000
+  private static final int FLAG_SCRIPT_PRUNING = 1024; // 10000000000
+  private static final int FLAG_UNIQUE_SCRIPT_SHORTCUT = 2048; // 100000000000
+  private static final int FLAG_SPARSE_SCORING = 4096; // 1000000000000
+  private static final int FLAG_VECTOR_KERNEL = 8192; // 10000000000000
+
+  private static final List<SanitizerStage> DEFAULT_SANITIZER_STAGES =
+      List.of(BuiltInSanitizerStage.URLS);
 
   private final String profilesHome;
   private final int minNGramLength;
@@ -34,6 +48,20 @@ public class LanguageDetectionSettings {
   private final double topLanguageCertaintyThreshold;
   private final String topLanguageFallbackIsoCode639_1;
   private final double minimumCertaintyThreshold;
+  private final int nGramReservoirCapacity;
+  private final int parallelTrialsMinTextChars;
+  private final int scoringBlockSize;
+  private final int shortlistSize;
+  private final int shortlistSampleSize;
+  private final double shortlistMinCertainty;
+  private final int iterationsPerNGram;
+  private final int nGramsPerTrial;
+  private final int modelBaseFrequency;
+  private final int modelIterationLimit;
+  private final int modelNumberOfTrials;
+  private final double modelAlpha;
+  private final double modelConvergenceThreshold;
+  private final List<SanitizerStage> sanitizerStages;
 
   private final int bitFlags;
 
@@ -48,6 +76,20 @@ public class LanguageDetectionSettings {
     this.topLanguageCertaintyThreshold = builder.topLanguageCertaintyThreshold;
     this.topLanguageFallbackIsoCode639_1 = builder.topLanguageFallbackIsoCode639_1;
     this.minimumCertaintyThreshold = builder.minimumCertaintyThreshold;
+    this.nGramReservoirCapacity = builder.nGramReservoirCapacity;
+    this.parallelTrialsMinTextChars = builder.parallelTrialsMinTextChars;
+    this.scoringBlockSize = builder.scoringBlockSize;
+    this.shortlistSize = builder.shortlistSize;
+    this.shortlistSampleSize = builder.shortlistSampleSize;
+    this.shortlistMinCertainty = builder.shortlistMinCertainty;
+    this.iterationsPerNGram = builder.iterationsPerNGram;
+    this.nGramsPerTrial = builder.nGramsPerTrial;
+    this.modelBaseFrequency = builder.modelBaseFrequency;
+    this.modelIterationLimit = builder.modelIterationLimit;
+    this.modelNumberOfTrials = builder.modelNumberOfTrials;
+    this.modelAlpha = builder.modelAlpha;
+    this.modelConvergenceThreshold = builder.modelConvergenceThreshold;
+    this.sanitizerStages = builder.sanitizerStages;
 
     this.bitFlags = builder.bitFlags;
   }
@@ -76,6 +118,14 @@ public class LanguageDetectionSettings {
     return (bitFlags & FLAG_SANITIZE_INPUT) != 0;
   }
 
+  List<SanitizerStage> getSanitizerStages() {
+    return sanitizerStages;
+  }
+
+  boolean isStripMarkup() {
+    return (bitFlags & FLAG_STRIP_MARKUP) != 0;
+  }
+
   boolean isClassifyChineseAsJapanese() {
     return (bitFlags & FLAG_CLASSIFY_AS_JAPANESE) != 0;
   }
@@ -104,6 +154,94 @@ public class LanguageDetectionSettings {
     return (bitFlags & FLAG_MINIMUM_CERTAINTY) != 0;
   }
 
+  int getNGramReservoirCapacity() {
+    return nGramReservoirCapacity;
+  }
+
+  int getParallelTrialsMinTextChars() {
+    return parallelTrialsMinTextChars;
+  }
+
+  int getScoringBlockSize() {
+    return scoringBlockSize;
+  }
+
+  int getShortlistSize() {
+    return shortlistSize;
+  }
+
+  int getShortlistSampleSize() {
+    return shortlistSampleSize;
+  }
+
+  double getShortlistMinCertainty() {
+    return shortlistMinCertainty;
+  }
+
+  int getIterationsPerNGram() {
+    return iterationsPerNGram;
+  }
+
+  int getNGramsPerTrial() {
+    return nGramsPerTrial;
+  }
+
+  int getModelBaseFrequency() {
+    return modelBaseFrequency;
+  }
+
+  int getModelIterationLimit() {
+    return modelIterationLimit;
+  }
+
+  int getModelNumberOfTrials() {
+    return modelNumberOfTrials;
+  }
+
+  double getModelAlpha() {
+    return modelAlpha;
+  }
+
+  double getModelConvergenceThreshold() {
+    return modelConvergenceThreshold;
+  }
+
+  boolean isCollectMetrics() {
+    return (bitFlags & FLAG_COLLECT_METRICS) != 0;
+  }
+
+  boolean isExactNaiveBayes() {
+    return (bitFlags & FLAG_EXACT_NAIVE_BAYES) != 0;
+  }
+
+  boolean isAdaptiveTrials() {
+    return (bitFlags & FLAG_ADAPTIVE_TRIALS) != 0;
+  }
+
+  boolean isAggregateNGrams() {
+    return (bitFlags & FLAG_AGGREGATE_NGRAMS) != 0;
+  }
+
+  boolean isFastSampling() {
+    return (bitFlags & FLAG_FAST_SAMPLING) != 0;
+  }
+
+  boolean isScriptPruning() {
+    return (bitFlags & FLAG_SCRIPT_PRUNING) != 0;
+  }
+
+  boolean isUniqueScriptShortcut() {
+    return (bitFlags & FLAG_UNIQUE_SCRIPT_SHORTCUT) != 0;
+  }
+
+  boolean isSparseScoring() {
+    return (bitFlags & FLAG_SPARSE_SCORING) != 0;
+  }
+
+  boolean isVectorKernel() {
+    return (bitFlags & FLAG_VECTOR_KERNEL) != 0;
+  }
+
   public static Builder fromAllIsoCodes639_1() {
     final List<String> allIsoCodes639_1 = Arrays.asList(ALL_SUPPORTED_ISO_CODES_639_1.split(COMMA));
     return new Builder(allIsoCodes639_1);
@@ -133,6 +271,20 @@ public class LanguageDetectionSettings {
     private double topLanguageCertaintyThreshold;
     private double minimumCertaintyThreshold;
     private double cjkDetectionThreshold;
+    private int nGramReservoirCapacity;
+    private int parallelTrialsMinTextChars;
+    private int scoringBlockSize;
+    private int shortlistSize;
+    private int shortlistSampleSize;
+    private double shortlistMinCertainty;
+    private int iterationsPerNGram;
+    private int nGramsPerTrial;
+    private int modelBaseFrequency;
+    private int modelIterationLimit;
+    private int modelNumberOfTrials;
+    private double modelAlpha;
+    private double modelConvergenceThreshold;
+    private List<SanitizerStage> sanitizerStages;
 
     private int bitFlags;
 
@@ -146,6 +298,20 @@ public class LanguageDetectionSettings {
       this.topLanguageFallbackIsoCode639_1 = "en";
       this.topLanguageCertaintyThreshold = 0.65;
       this.minimumCertaintyThreshold = 0.1;
+      this.nGramReservoirCapacity = 0;
+      this.parallelTrialsMinTextChars = 0;
+      this.scoringBlockSize = 0;
+      this.shortlistSize = 0;
+      this.shortlistSampleSize = 0;
+      this.shortlistMinCertainty = 0.0;
+      this.iterationsPerNGram = 0;
+      this.nGramsPerTrial = 0;
+      this.modelBaseFrequency = 0;
+      this.modelIterationLimit = 0;
+      this.modelNumberOfTrials = 0;
+      this.modelAlpha = 0.0;
+      this.modelConvergenceThreshold = 0.0;
+      this.sanitizerStages = DEFAULT_SANITIZER_STAGES;
       this.bitFlags = FLAG_SANITIZE_INPUT | FLAG_MINIMUM_CERTAINTY;
     }
 
@@ -159,6 +325,20 @@ public class LanguageDetectionSettings {
       this.topLanguageCertaintyThreshold = that.topLanguageCertaintyThreshold;
       this.topLanguageFallbackIsoCode639_1 = that.topLanguageFallbackIsoCode639_1;
       this.minimumCertaintyThreshold = that.minimumCertaintyThreshold;
+      this.nGramReservoirCapacity = that.nGramReservoirCapacity;
+      this.parallelTrialsMinTextChars = that.parallelTrialsMinTextChars;
+      this.scoringBlockSize = that.scoringBlockSize;
+      this.shortlistSize = that.shortlistSize;
+      this.shortlistSampleSize = that.shortlistSampleSize;
+      this.shortlistMinCertainty = that.shortlistMinCertainty;
+      this.iterationsPerNGram = that.iterationsPerNGram;
+      this.nGramsPerTrial = that.nGramsPerTrial;
+      this.modelBaseFrequency = that.modelBaseFrequency;
+      this.modelIterationLimit = that.modelIterationLimit;
+      this.modelNumberOfTrials = that.modelNumberOfTrials;
+      this.modelAlpha = that.modelAlpha;
+      this.modelConvergenceThreshold = that.modelConvergenceThreshold;
+      this.sanitizerStages = that.sanitizerStages;
       this.bitFlags = that.bitFlags;
     }
 
@@ -168,10 +348,150 @@ public class LanguageDetectionSettings {
     }
 
     public Builder withoutInputSanitize() {
+      this.sanitizerStages = List.of();
       this.bitFlags = this.bitFlags & ~FLAG_SANITIZE_INPUT;
       return new Builder(this);
     }
 
+    /**
+     * Replaces the default sanitization (URL removal) with the given chain of sanitizer stages,
+     * which the library fuses into a single pass over the input. At each position of the input,
+     * the stages are asked in the given order, and the text recognized by the first matching stage
+     * is removed. Repeated stages are ignored, and no stages at all disable the sanitization.
+     *
+     * @param sanitizerStages the sanitizer stages, e.g.: the {@link BuiltInSanitizerStage}s
+     */
+    public Builder withSanitizerStages(final SanitizerStage... sanitizerStages) {
+      this.sanitizerStages = List.copyOf(new LinkedHashSet<>(Arrays.asList(sanitizerStages)));
+      if (this.sanitizerStages.isEmpty()) {
+        this.bitFlags = this.bitFlags & ~FLAG_SANITIZE_INPUT;
+      } else {
+        this.bitFlags = this.bitFlags | FLAG_SANITIZE_INPUT;
+      }
+      return new Builder(this);
+    }
+
+    /**
+     * Enables the collection of the {@link DetectionMetrics}, which are available through {@link
+     * LanguageDetectionOrchestrator#getMetrics()}.
+     */
+    public Builder withMetrics() {
+      this.bitFlags = this.bitFlags | FLAG_COLLECT_METRICS;
+      return new Builder(this);
+    }
+
+    /**
+     * Replaces the stochastic Naive Bayes approximation, which samples the extracted n-grams over
+     * several randomized trials, with the exact and deterministic Naive Bayes computation over all
+     * the extracted n-grams, see {@link LanguageDetector} for details.
+     */
+    public Builder withExactNaiveBayes() {
+      this.bitFlags = this.bitFlags | FLAG_EXACT_NAIVE_BAYES;
+      return new Builder(this);
+    }
+
+    /**
+     * Stops running the trials of the Naive Bayes detection once the trials run so far (at least
+     * three of them) converged on the same top language, instead of always running all of them.
+     * The trials which run in parallel are all forked at once, therefore this cannot be combined
+     * with {@link #withParallelTrials(int)}, see {@link #build()}.
+     */
+    public Builder withAdaptiveTrials() {
+      this.bitFlags = this.bitFlags | FLAG_ADAPTIVE_TRIALS;
+      return new Builder(this);
+    }
+
+    /**
+     * Aggregates the n-grams extracted from the input into a histogram of the distinct n-grams and
+     * their counts, which the Naive Bayes detection samples with the probability proportional to
+     * the counts, instead of keeping every occurrence of every n-gram. This bounds the memory of a
+     * detection by the number of the distinct n-grams, which is useful for long and repetitive
+     * inputs. The n-gram reservoir does not apply to the histogram, see {@link
+     * #withNGramReservoirCapacity(int)}.
+     */
+    public Builder withNGramAggregation() {
+      this.bitFlags = this.bitFlags | FLAG_AGGREGATE_NGRAMS;
+      return new Builder(this);
+    }
+
+    /**
+     * Samples the n-grams of the Naive Bayes trials with a counter-based hash of the trial and of
+     * the iteration, and smooths each trial with an alpha that is precomputed once per detector,
+     * instead of drawing both from a {@link java.util.Random} seeded for each input. This is
+     * cheaper per sampled n-gram, and the trials no longer depend on each other, therefore the
+     * results are the same with and without {@link #withParallelTrials(int)}. However, the
+     * results differ slightly from the default ones, which remain reproducible without this
+     * option.
+     */
+    public Builder withFastSampling() {
+      this.bitFlags = this.bitFlags | FLAG_FAST_SAMPLING;
+      return new Builder(this);
+    }
+
+    /**
+     * Restricts the Naive Bayes detection to the languages whose profiles use the scripts of the
+     * input, e.g.: a Cyrillic input is scored only against bg, kk, ky, mk, mn, ru, sr, tg and uk,
+     * instead of against all the configured languages. The scripts are counted in a cheap pass
+     * over the normalized input, and a script is taken into account when it makes up at least a
+     * quarter of the letters, so that a few foreign words do not prevent the pruning.
+     */
+    public Builder withScriptPruning() {
+      this.bitFlags = this.bitFlags | FLAG_SCRIPT_PRUNING;
+      return new Builder(this);
+    }
+
+    /**
+     * Skips the Naive Bayes detection when one script clearly dominates the input, i.e.: makes up
+     * at least nine tenths of its letters, and only one of the configured languages uses that
+     * script, e.g.: ka for Georgian, hy for Armenian, el for Greek or ko for Hangul. The language
+     * is then returned with the perfect probability, just like the CJK heuristic does for Chinese
+     * and Japanese. When a few languages share the dominant script, e.g.: he and yi for Hebrew, or
+     * hi, mr and ne for Devanagari, only those languages are scored, see {@link
+     * #withScriptPruning()}.
+     */
+    public Builder withUniqueScriptShortcut() {
+      this.bitFlags = this.bitFlags | FLAG_UNIQUE_SCRIPT_SHORTCUT;
+      return new Builder(this);
+    }
+
+    /**
+     * Updates only the languages whose probability of the sampled n-gram is non-zero, instead of
+     * all the configured languages. Each sampled n-gram multiplies the probability of every
+     * language by the smoothing weight plus the probability of the n-gram in that language. Since
+     * most n-grams appear in a few languages only, the weight is factored out as a scale which is
+     * common to all the languages, and which the normalization cancels. The results are the same
+     * as without this option, up to the float rounding.
+     */
+    public Builder withSparseScoring() {
+      this.bitFlags = this.bitFlags | FLAG_SPARSE_SCORING;
+      return new Builder(this);
+    }
+
+    /**
+     * Runs the dense loops of the Naive Bayes detection over the probabilities of all the
+     * configured languages on the incubating Vector API, on Java 17 and above, when the JVM has
+     * been started with {@code --add-modules jdk.incubator.vector}. Otherwise, this option has no
+     * effect. The Vector API kernel sums up the probabilities lane by lane, therefore the results
+     * may differ from the default ones in the last bits, whereas the default results are the same
+     * regardless of the Java version and of the JVM flags.
+     */
+    public Builder withVectorKernel() {
+      this.bitFlags = this.bitFlags | FLAG_VECTOR_KERNEL;
+      return new Builder(this);
+    }
+
+    /**
+     * Strips HTML / XML markup from the input before the detection, in a single streaming pass.
+     * Tags, comments and declarations are replaced with a blank, the content of the {@code
+     * <script>} and {@code <style>} elements is dropped, and the character references, e.g.: {@code
+     * &eacute;}, are decoded. Since the markup does not count towards the text, the {@link
+     * #withMaxTextChars(int)} limit applies to the stripped text, rather than to the input.
+     */
+    public Builder withMarkupStripping() {
+      this.bitFlags = this.bitFlags | FLAG_STRIP_MARKUP;
+      return new Builder(this);
+    }
+
     public Builder withCjkDetectionThreshold(final double cjkDetectionThreshold) {
       this.cjkDetectionThreshold = cjkDetectionThreshold;
       return new Builder(this);
@@ -198,7 +518,173 @@ public class LanguageDetectionSettings {
       return new Builder(this);
     }
 
+    /**
+     * Bounds the number of the n-grams kept per detection, regardless of the input length. The
+     * n-grams extracted from the input are reservoir-sampled, uniformly and deterministically, into
+     * a buffer of the given capacity. Since the Naive Bayes detection samples at most {@code
+     * iterationLimit + 1} n-grams per trial anyway, a capacity in the thousands keeps the detection
+     * statistically equivalent. The inputs which produce no more n-grams than the capacity are
+     * detected exactly as without the reservoir.
+     *
+     * @param nGramReservoirCapacity the maximum number of the n-grams to keep, where a non-positive
+     *     value means that every n-gram extracted from the input is kept
+     */
+    public Builder withNGramReservoirCapacity(final int nGramReservoirCapacity) {
+      this.nGramReservoirCapacity = Math.max(0, nGramReservoirCapacity);
+      return new Builder(this);
+    }
+
+    /**
+     * Runs the trials of the Naive Bayes detection in parallel on the common {@link
+     * java.util.concurrent.ForkJoinPool} for the inputs of at least the given number of chars
+     * (after the sanitization), so that the shorter inputs do not pay the overhead of the forking.
+     * Each trial is seeded by its index, so the results are reproducible, though they differ from
+     * the results of the sequential trials.
+     *
+     * @param parallelTrialsMinTextChars the minimum number of chars, where a non-positive value
+     *     means that the trials always run sequentially
+     */
+    public Builder withParallelTrials(final int parallelTrialsMinTextChars) {
+      this.parallelTrialsMinTextChars = Math.max(0, parallelTrialsMinTextChars);
+      return new Builder(this);
+    }
+
+    /**
+     * Scores the n-grams sampled by the Naive Bayes trials in blocks of the given number of
+     * n-grams, instead of normalizing the probabilities of the languages every fifth n-gram. Within
+     * a block, the probabilities are only multiplied, without summing them up. At the end of a
+     * block, the sum and the maximum are computed in a single pass to check the convergence. The
+     * probabilities are rescaled by a power of two, which is exact, only when the exponent of the
+     * most probable language approaches the float underflow, which is tracked along with the
+     * multiplications. The probabilities are normalized once, at the end of a trial. This does not
+     * apply to the sparse scoring, see {@link #withSparseScoring()}.
+     *
+     * <p>The block size is rounded up to a multiple of five, so that the convergence is only
+     * checked after the n-grams, after which the normalization would check it too, e.g.: a block
+     * size from one to five checks the convergence after the same n-grams as the normalization.
+     *
+     * @param scoringBlockSize the number of the n-grams between two convergence checks, rounded up
+     *     to a multiple of five, where a non-positive value means that the probabilities are
+     *     normalized every fifth n-gram
+     */
+    public Builder withBlockScoring(final int scoringBlockSize) {
+      this.scoringBlockSize = Math.max(0, scoringBlockSize);
+      return new Builder(this);
+    }
+
+    /**
+     * Detects the language in two stages: first, all the languages are scored cheaply, with the
+     * exact Naive Bayes log-likelihood of a sample of the unigrams and the bigrams of the input.
+     * Then, the full Naive Bayes detection scores only the top languages of the first stage, i.e.:
+     * the shortlist. The first stage is uncertain when the shortlist holds less than the given
+     * share of the probability of all the languages, in which case all the languages are scored.
+     *
+     * @param shortlistSize the number of the languages to score fully, where a non-positive value
+     *     means that all the languages are scored fully
+     * @param shortlistSampleSize the number of the n-gram occurrences, which are evenly spaced
+     *     over the input, to take the unigrams and the bigrams from in the first stage
+     * @param shortlistMinCertainty the minimum probability of the shortlist in the first stage to
+     *     score the shortlist only, from 0.0 to 1.0
+     */
+    public Builder withCandidateShortlist(
+        final int shortlistSize,
+        final int shortlistSampleSize,
+        final double shortlistMinCertainty) {
+      this.shortlistSize = Math.max(0, shortlistSize);
+      this.shortlistSampleSize = Math.max(1, shortlistSampleSize);
+      this.shortlistMinCertainty = Math.min(1.0, Math.max(0.0, shortlistMinCertainty));
+      return new Builder(this);
+    }
+
+    /**
+     * Derives the iteration limit of each trial, and the number of the trials, of the Naive Bayes
+     * detection from the number of the distinct n-grams of the input, instead of using the same
+     * ones of the model for every input. Neither of them ever exceeds the one of the model, and
+     * both have a lower bound, see {@link IterationBudget}.
+     *
+     * @param iterationsPerNGram the number of the iterations per distinct n-gram, where a
+     *     non-positive value means the iteration limit of the model
+     * @param nGramsPerTrial the number of the distinct n-grams per trial, where a non-positive
+     *     value means the number of the trials of the model
+     */
+    public Builder withIterationBudget(final int iterationsPerNGram, final int nGramsPerTrial) {
+      this.iterationsPerNGram = Math.max(0, iterationsPerNGram);
+      this.nGramsPerTrial = Math.max(0, nGramsPerTrial);
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the iteration limit, the number of the trials and the convergence threshold of the
+     * model with the ones of the given preset, for the detectors of these settings only, which
+     * replace the ones set before, e.g.: {@link ModelPreset#BALANCED} restores the ones of the
+     * model. The parameters can be overridden further with the model parameter APIs invoked
+     * afterwards.
+     *
+     * @param modelPreset the latency and accuracy trade-off, see {@link ModelPreset}
+     */
+    public Builder withModelPreset(final ModelPreset modelPreset) {
+      this.modelIterationLimit = modelPreset.getIterationLimit();
+      this.modelNumberOfTrials = modelPreset.getNumberOfTrials();
+      this.modelConvergenceThreshold = modelPreset.getConvergenceThreshold();
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the base frequency of the model, i.e.: the divisor of the alpha smoothing, for the
+     * detectors of these settings only, where a non-positive value keeps the one of the model.
+     */
+    public Builder withModelBaseFrequency(final int baseFrequency) {
+      this.modelBaseFrequency = Math.max(0, baseFrequency);
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the maximum number of the n-grams sampled by each trial of the model, for the
+     * detectors of these settings only, where a non-positive value keeps the one of the model.
+     */
+    public Builder withModelIterationLimit(final int iterationLimit) {
+      this.modelIterationLimit = Math.max(0, iterationLimit);
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the number of the trials of the model, for the detectors of these settings only,
+     * where a non-positive value keeps the one of the model.
+     */
+    public Builder withModelNumberOfTrials(final int numberOfTrials) {
+      this.modelNumberOfTrials = Math.max(0, numberOfTrials);
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the alpha smoothing of the model, for the detectors of these settings only, where a
+     * non-positive value keeps the one of the model. Each trial varies alpha by a Gaussian scaled
+     * by the alpha width of the model, but never below a tenth of alpha, so that an alpha close to
+     * (or below) the alpha width still gives positive smoothing weights.
+     */
+    public Builder withModelAlpha(final double alpha) {
+      this.modelAlpha = Math.max(0.0, alpha);
+      return new Builder(this);
+    }
+
+    /**
+     * Overrides the probability of the top language, at which a trial of the model stops, for the
+     * detectors of these settings only, where a non-positive value keeps the one of the model.
+     */
+    public Builder withModelConvergenceThreshold(final double convergenceThreshold) {
+      this.modelConvergenceThreshold = Math.min(1.0, Math.max(0.0, convergenceThreshold));
+      return new Builder(this);
+    }
+
+    /**
+     * @return the settings
+     * @throws IllegalStateException if the adaptive trials are combined with the parallel trials,
+     *     see {@link #withAdaptiveTrials()}
+     */
     public LanguageDetectionSettings build() {
+      if ((this.bitFlags & FLAG_ADAPTIVE_TRIALS) != 0 && this.parallelTrialsMinTextChars > 0) {
+        throw new IllegalStateException("Adaptive trials cannot be combined with parallel trials");
+      }
       return new LanguageDetectionSettings(this);
     }
   }
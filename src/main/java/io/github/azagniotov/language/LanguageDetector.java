@@ -1,13 +1,16 @@
 package io.github.azagniotov.language;
 
-import static io.github.azagniotov.language.InputSanitizer.filterOutNonWords;
+import static io.github.azagniotov.language.StringConstants.EMPTY_STRING;
 
+import java.lang.Character.UnicodeScript;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The {@link LanguageDetector} class identifies the language (ISO 639-1 code) of a given text. An
@@ -17,9 +20,9 @@ import java.util.Random;
  * #detectAll(String)}. The method {@link #detectAll(String)} provides a list of up to five
  * languages along with their respective probabilities.
  *
- * <p>The detector is equipped with certain parameters for the language detection model that, at
- * present, are fixed. These parameters reflect well-considered defaults that are optimized for the
- * majority of use cases.
+ * <p>The detector is equipped with certain parameters for the language detection model. These
+ * parameters reflect well-considered defaults that are optimized for the majority of use cases,
+ * and the settings of the detector may override some of them, see {@link ModelPreset}.
  *
  * @see LanguageDetectorFactory
  */
@@ -36,56 +39,248 @@ class LanguageDetector {
   private static final String ISO_639_1_CODE_VIETNAMESE = "vi";
 
   // return up to top 10 detected language when calling detectAll(String)
-  private static final int MAX_DETECTED_CLASSES = 10;
+  static final int MAX_DETECTED_CLASSES = 10;
+
+  private static final List<Language> UNDETERMINED_RESULTS =
+      Collections.singletonList(UNDETERMINED_LANGUAGE_RESPONSE);
 
   // An empirically derived value
   private static final int CONVERGENCE_CHECK_FREQUENCY = 5;
 
+  // The minimum share of the letters of a script in the input for the languages of the script to
+  // be scored, when the script pruning is enabled
+  private static final int MIN_INPUT_SCRIPT_SHARE_DIVISOR = 4;
+  private static final int MAX_CANDIDATE_LANGUAGES_DIVISOR = 2;
+
+  // The maximum share of the letters of the other scripts in the input for the dominant script to
+  // be clearly dominant, when the unique script shortcut is enabled
+  private static final int MAX_FOREIGN_SCRIPT_SHARE_DIVISOR = 10;
+
+  // The number of the n-grams of the first stage of the shortlisting between two logarithms of the
+  // likelihood factors, each of which is at most 1 + baseFreq / alpha, i.e.: about 2^15. It is
+  // lowered for a smaller alpha, so that the product of the factors stays below 2^512
+  private static final int SHORTLIST_LOG_FREQUENCY = 32;
+  private static final int MAX_LIKELIHOOD_FACTORS_EXPONENT = 512;
+
+  // The minimum number of agreeing trials to stop the remaining trials early, see detectBlock()
+  private static final int MIN_ADAPTIVE_TRIALS = 3;
+
   // All the loaded ISO 639-1 codes that have been configured by the user,
   // e.g.: en, ja, es. The codes are in exactly the same order as the data
-  // is in the float[] in languageCorporaProbabilities.
+  // is in the float[] rows of the nGramIndex.
   //
   // Example:
-  // If languageCorporaProbabilities has an entry for the n-gram "foo", then for
-  // each ISO code in the supportedIsoCodes639_1 here it has a probability value there.
+  // If the nGramIndex has a row for the n-gram "foo", then for each ISO code
+  // in the supportedIsoCodes639_1 here it has a probability value there.
   // Language codes that don't know the n-gram have the value 0d (zero probability).
   private final String[] supportedIsoCodes639_1;
 
-  // This contains a mapping of all words from the language profiles (the profiles
-  // which correspond to the configured ISO 639-1 code for detection), along with
-  // their associated probabilities. These probabilities are calculated as the ratio
-  // between the word's frequency and the frequency of its N-grams.
-  private final Map<String, float[]> languageCorporaProbabilities;
-
-  private final int minNGramLength;
-  private final int maxNGramLength;
+  // This contains the probabilities of all words from the language profiles (the profiles
+  // which correspond to the configured ISO 639-1 code for detection), keyed by dense row
+  // ids, which the n-gram extraction resolves n-grams to. These probabilities are calculated
+  // as the ratio between the word's frequency and the frequency of its N-grams.
+  private final NGramIndex nGramIndex;
 
   private final int baseFreq;
   private final int numberOfTrials;
   private final int iterationLimit;
   private final float alpha;
-  private final float alphaWidth;
+  private final Model model;
   private final float convergenceThreshold;
   private final boolean isVietnameseConfigured;
 
+  // Re-usable buffer of the normalized input, see InputNormalizer for details
+  private final InputNormalizer inputNormalizer;
+
+  // Re-usable buffer of the row ids of the n-grams extracted from the normalized input
+  private final ExtractedNGrams extractedNGrams;
+
+  // Re-usable histogram of the row ids of the extracted n-grams, see NGramHistogram for details
+  private final NGramHistogram nGramHistogram;
+
+  // Re-usable state of the n-gram extraction, the random number generator of the trials,
+  // and the probability buffers, so that a detection does not allocate besides its result
+  private final NGram nGram;
+  private final Random random;
+  private final float[] languageProbabilities;
+  private final float[] trialProbabilities;
+  private final double[] logLikelihoods;
+  private final double[] likelihoodFactors;
+  private final int[] topLanguageIndexes;
+
+  // The maximum number of extracted n-grams to keep, or zero to keep all of them
+  private final int nGramReservoirCapacity;
+
+  // Whether to use the exact Naive Bayes computation instead of the stochastic approximation
+  private final boolean exactNaiveBayes;
+
+  // Whether to sample the n-grams from their histogram instead of from all their occurrences
+  private final boolean aggregateNGrams;
+
+  // The minimum normalized input length to run the trials in parallel, or zero to never do so.
+  // The parallel trials are re-usable as well, one per trial index, or null when never needed.
+  private final int parallelTrialsMinTextChars;
+  private final ParallelTrial[] parallelTrials;
+
+  // Whether to stop running the trials once the trials run so far agree
+  private final boolean adaptiveTrials;
+
+  // Whether to sample with the precomputed schedule instead of with java.util.Random
+  private final boolean fastSampling;
+  private final SamplingSchedule samplingSchedule;
+
+  // Whether to update only the languages whose probability of the sampled n-gram is non-zero
+  private final boolean sparseScoring;
+
+  // The dense loops over the probabilities of all the languages, which are the scalar ones unless
+  // the Vector API kernel is enabled and available, see ProbabilityKernels
+  private final ProbabilityKernel probabilityKernel;
+
+  // The number of the sampled n-grams between two convergence checks of the block scoring, which
+  // is a multiple of CONVERGENCE_CHECK_FREQUENCY, or zero to normalize every
+  // CONVERGENCE_CHECK_FREQUENCY n-grams instead
+  private final int scoringBlockSize;
+
+  // The number of the top languages of the cheap first stage to score fully, or zero to score all
+  // the languages fully, see shortlistCandidateLanguages()
+  private final int shortlistSize;
+  private final int shortlistSampleSize;
+  private final double shortlistMinCertainty;
+  private final int shortlistLogFrequency;
+
+  // Whether to derive the iteration limit and the number of the trials from the distinct n-grams
+  // of the input, see IterationBudget. The bits of the distinct row ids are re-usable, and the
+  // iteration limit and the number of the trials of the current input are the ones of the model
+  // when the budget is disabled.
+  private final boolean lengthAwareBudget;
+  private final IterationBudget iterationBudget;
+  private final long[] distinctRowIdBits;
+  private int inputIterationLimit;
+  private int inputNumberOfTrials;
+
+  // Whether to score only the languages which use the scripts of the input, see ScriptLanguages.
+  // The candidate languages of the current input are in ascending order, and all the languages
+  // are candidates when the pruning is disabled or does not apply to the input.
+  private final boolean scriptPruning;
+  private final boolean uniqueScriptShortcut;
+  private final ScriptLanguages scriptLanguages;
+  private final ScriptCounts scriptCounts;
+  private final boolean[] candidateMarks;
+  private final int[] candidateLanguages;
+  private int candidateCount;
+
   LanguageDetector(
       final Model model,
       final List<String> supportedIsoCodes639_1,
       final Map<String, float[]> languageCorporaProbabilities,
       final int minNGramLength,
       final int maxNGramLength) {
+    this(
+        model,
+        supportedIsoCodes639_1,
+        languageCorporaProbabilities,
+        NGramIndex.of(languageCorporaProbabilities),
+        minNGramLength,
+        maxNGramLength,
+        LanguageDetectionSettings.DEFAULT_SETTINGS_ALL_LANGUAGES);
+  }
+
+  LanguageDetector(
+      final Model model,
+      final List<String> supportedIsoCodes639_1,
+      final Map<String, float[]> languageCorporaProbabilities,
+      final NGramIndex nGramIndex,
+      final int minNGramLength,
+      final int maxNGramLength,
+      final LanguageDetectionSettings settings) {
+    this(
+        model,
+        supportedIsoCodes639_1,
+        nGramIndex,
+        settings.isScriptPruning() || settings.isUniqueScriptShortcut()
+            ? ScriptLanguages.of(languageCorporaProbabilities, supportedIsoCodes639_1.size())
+            : null,
+        minNGramLength,
+        maxNGramLength,
+        settings);
+  }
+
+  LanguageDetector(
+      final Model model,
+      final List<String> supportedIsoCodes639_1,
+      final NGramIndex nGramIndex,
+      final ScriptLanguages scriptLanguages,
+      final int minNGramLength,
+      final int maxNGramLength,
+      final LanguageDetectionSettings settings) {
     this.supportedIsoCodes639_1 = supportedIsoCodes639_1.toArray(new String[] {});
     this.isVietnameseConfigured = supportedIsoCodes639_1.contains(ISO_639_1_CODE_VIETNAMESE);
-    this.languageCorporaProbabilities = languageCorporaProbabilities;
-    this.minNGramLength = minNGramLength;
-    this.maxNGramLength = maxNGramLength;
+    this.inputNormalizer = new InputNormalizer();
+    this.extractedNGrams = new ExtractedNGrams();
+    this.nGramHistogram = new NGramHistogram();
+    this.nGram = new NGram(EMPTY_STRING, minNGramLength, maxNGramLength);
+    this.random = new Random();
+    this.languageProbabilities = new float[this.supportedIsoCodes639_1.length];
+    this.trialProbabilities = new float[this.supportedIsoCodes639_1.length];
+    this.logLikelihoods = new double[this.supportedIsoCodes639_1.length];
+    this.likelihoodFactors = new double[this.supportedIsoCodes639_1.length];
+    this.topLanguageIndexes = new int[this.supportedIsoCodes639_1.length];
+    this.nGramReservoirCapacity = settings.getNGramReservoirCapacity();
+    this.exactNaiveBayes = settings.isExactNaiveBayes();
+    this.aggregateNGrams = settings.isAggregateNGrams();
+    this.parallelTrialsMinTextChars = settings.getParallelTrialsMinTextChars();
+    this.parallelTrials =
+        this.parallelTrialsMinTextChars > 0 ? new ParallelTrial[model.getNumberOfTrials()] : null;
+    for (int t = 0; this.parallelTrials != null && t < this.parallelTrials.length; ++t) {
+      this.parallelTrials[t] = new ParallelTrial(this.supportedIsoCodes639_1.length);
+    }
+    this.adaptiveTrials = settings.isAdaptiveTrials();
+    this.fastSampling = settings.isFastSampling();
+    this.samplingSchedule = new SamplingSchedule(model);
+    this.sparseScoring = settings.isSparseScoring();
+    this.probabilityKernel =
+        settings.isVectorKernel() ? ProbabilityKernels.best() : ScalarProbabilityKernel.INSTANCE;
+    // Rounded up, so that the convergence checks are a subset of the ones of the normalization
+    final long scoringBlocks =
+        (settings.getScoringBlockSize() + CONVERGENCE_CHECK_FREQUENCY - 1L)
+            / CONVERGENCE_CHECK_FREQUENCY;
+    this.scoringBlockSize =
+        (int) Math.min(Integer.MAX_VALUE, scoringBlocks * CONVERGENCE_CHECK_FREQUENCY);
+    this.shortlistSize = settings.getShortlistSize();
+    this.shortlistSampleSize = settings.getShortlistSampleSize();
+    this.shortlistMinCertainty = settings.getShortlistMinCertainty();
+    final int maxFactorExponent =
+        Math.getExponent(1.0 + model.getBaseFrequency() / (double) model.getAlpha()) + 1;
+    this.shortlistLogFrequency =
+        Math.max(
+            1,
+            Math.min(SHORTLIST_LOG_FREQUENCY, MAX_LIKELIHOOD_FACTORS_EXPONENT / maxFactorExponent));
+    this.lengthAwareBudget =
+        settings.getIterationsPerNGram() > 0 || settings.getNGramsPerTrial() > 0;
+    this.iterationBudget =
+        new IterationBudget(model, settings.getIterationsPerNGram(), settings.getNGramsPerTrial());
+    this.distinctRowIdBits =
+        this.lengthAwareBudget ? new long[(nGramIndex.size() + Long.SIZE - 1) / Long.SIZE] : null;
+    this.scriptPruning = settings.isScriptPruning();
+    this.uniqueScriptShortcut = settings.isUniqueScriptShortcut();
+    this.scriptLanguages = scriptLanguages;
+    this.scriptCounts = new ScriptCounts();
+    this.candidateMarks = new boolean[this.supportedIsoCodes639_1.length];
+    this.candidateLanguages = new int[this.supportedIsoCodes639_1.length];
+    this.candidateCount = this.supportedIsoCodes639_1.length;
+    this.nGramIndex = nGramIndex;
+    if (this.sparseScoring || this.shortlistSize > 0) {
+      this.nGramIndex.prepareSparseRows();
+    }
 
     this.baseFreq = model.getBaseFrequency();
     this.iterationLimit = model.getIterationLimit();
     this.numberOfTrials = model.getNumberOfTrials();
     this.alpha = model.getAlpha();
-    this.alphaWidth = model.getAlphaWidth();
+    this.model = model;
     this.convergenceThreshold = model.getConvergenceThreshold();
+    this.inputIterationLimit = this.iterationLimit;
+    this.inputNumberOfTrials = this.numberOfTrials;
   }
 
   /**
@@ -95,21 +290,333 @@ class LanguageDetector {
    *     probabilities descendently
    */
   List<Language> detectAll(final String text) {
-    // To filter based on "\\P{IsWord}" is the original filtering check by the original author
-    // Do not .trim() the input nor the result, otherwise accuracy unit tests will fail
-    final String sanitizedInput = filterOutNonWords(text);
+    this.inputNormalizer.normalize(text, text.length(), false, this.isVietnameseConfigured);
+    return detectAll(this.inputNormalizer);
+  }
+
+  /**
+   * Get language candidates which have high probabilities, from an input that has already been
+   * normalized.
+   *
+   * <p>The {@link InputNormalizer} does in a single streaming pass the same work as the original
+   * chain of: "\\P{IsWord}" filtering (the original filtering check by the original author),
+   * Vietnamese normalization and {@link NGram} char normalization. The input is not trimmed,
+   * otherwise accuracy unit tests would fail.
+   *
+   * @param normalizedInput the normalized input, see {@link #isVietnameseConfigured()}
+   * @return possible languages list (whose probabilities are over probabilityThreshold, ordered by
+   *     probabilities descendently
+   */
+  List<Language> detectAll(final InputNormalizer normalizedInput) {
+    return detectAll(normalizedInput, MAX_DETECTED_CLASSES);
+  }
+
+  /**
+   * Get up to the given number of language candidates which have the highest probabilities, from
+   * an input that has already been normalized, see {@link #detectAll(InputNormalizer)}.
+   *
+   * @param normalizedInput the normalized input, see {@link #isVietnameseConfigured()}
+   * @param maxLanguages the maximum number of the languages to return, must be positive
+   * @return possible languages list (whose probabilities are over probabilityThreshold, ordered by
+   *     probabilities descendently
+   */
+  List<Language> detectAll(final InputNormalizer normalizedInput, final int maxLanguages) {
+    final ExtractedRowIds extractedRowIds;
+    if (this.exactNaiveBayes || this.aggregateNGrams) {
+      this.nGramHistogram.reset();
+      extractedRowIds = this.nGramHistogram;
+    } else {
+      // Each normalized char produces at most one n-gram of each size
+      this.extractedNGrams.reset(
+          NGram.TRIGRAM_SIZE * normalizedInput.getLength(), this.nGramReservoirCapacity);
+      extractedRowIds = this.extractedNGrams;
+    }
+    this.nGram.collectAllRowIds(
+        normalizedInput.getNormalizedChars(),
+        normalizedInput.getLength(),
+        this.nGramIndex,
+        extractedRowIds);
+    if (extractedRowIds == this.nGramHistogram) {
+      // Before any sampling, so that the parallel trials only read the histogram
+      this.nGramHistogram.prepareSampling();
+    }
+    if (this.lengthAwareBudget) {
+      final int distinctNGrams = countDistinctNGrams(extractedRowIds);
+      this.inputIterationLimit = this.iterationBudget.iterationLimit(distinctNGrams);
+      this.inputNumberOfTrials = this.iterationBudget.numberOfTrials(distinctNGrams);
+    }
+    if (this.scriptPruning || this.uniqueScriptShortcut) {
+      selectCandidateLanguages(normalizedInput);
+    } else {
+      this.candidateCount = this.supportedIsoCodes639_1.length;
+    }
+    if (this.shortlistSize > 0) {
+      shortlistCandidateLanguages(extractedRowIds);
+    }
+
+    final float[] probabilities;
+    if (this.exactNaiveBayes) {
+      probabilities = detectBlockExact(this.nGramHistogram);
+    } else if (this.parallelTrialsMinTextChars > 0
+        && normalizedInput.getLength() >= this.parallelTrialsMinTextChars) {
+      probabilities = detectBlockInParallel(extractedRowIds);
+    } else {
+      probabilities = detectBlock(extractedRowIds);
+    }
+    if (maxLanguages == 1) {
+      return topLanguage(probabilities);
+    }
+    return topLanguages(probabilities, maxLanguages);
+  }
+
+  /**
+   * Detects the dominant script of an input that has already been normalized, i.e.: the letter
+   * script of the most chars, see {@link ScriptCounts#dominantScript()}.
+   *
+   * @param normalizedInput the normalized input, see {@link #isVietnameseConfigured()}
+   * @return the dominant script, or {@link UnicodeScript#UNKNOWN} if the input has no letters
+   */
+  UnicodeScript detectScript(final InputNormalizer normalizedInput) {
+    this.scriptCounts.count(normalizedInput.getNormalizedChars(), normalizedInput.getLength());
+    return this.scriptCounts.dominantScript();
+  }
+
+  /**
+   * Detects the language of an input that has already been normalized without the Naive Bayes
+   * detection, when one script clearly dominates the input and only one of the configured
+   * languages uses it, see {@link ScriptLanguages}. Active only if the unique script shortcut is
+   * enabled in settings.
+   *
+   * @param normalizedInput the normalized input, see {@link #isVietnameseConfigured()}
+   * @return A list containing the only language of the dominant script, otherwise an empty list.
+   */
+  List<Language> detectUniqueScript(final InputNormalizer normalizedInput) {
+    if (!this.uniqueScriptShortcut) {
+      return Collections.emptyList();
+    }
+    final ScriptCounts scriptCounts = this.scriptCounts;
+    scriptCounts.count(normalizedInput.getNormalizedChars(), normalizedInput.getLength());
+
+    final UnicodeScript dominantScript = scriptCounts.dominantScript();
+    if (dominantScript == UnicodeScript.UNKNOWN) {
+      return Collections.emptyList();
+    }
+    if (!isClearlyDominant(scriptCounts.countOf(dominantScript), scriptCounts.getTotal())) {
+      return Collections.emptyList();
+    }
 
-    final String normalizedText =
-        this.isVietnameseConfigured
-            ?
-            // Do not .trim() the input nor the result, otherwise accuracy unit tests will fail
-            VietnameseUtils.normalizeVietnamese(sanitizedInput)
-            : sanitizedInput;
+    final int[] languages = this.scriptLanguages.languagesOf(dominantScript);
+    if (languages.length != 1) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(
+        new Language(supportedIsoCodes639_1[languages[0]], PERFECT_PROBABILITY));
+  }
+
+  /**
+   * @param scriptCount the number of the letters of a script in the input
+   * @param total the number of the letters of all the scripts in the input
+   * @return true if the letters of the other scripts make up at most a tenth of the letters
+   */
+  private static boolean isClearlyDominant(final int scriptCount, final int total) {
+    return (total - scriptCount) * MAX_FOREIGN_SCRIPT_SHARE_DIVISOR <= total;
+  }
+
+  /**
+   * Selects the candidate languages of the input, which are the languages that use any script
+   * making up at least a quarter of the letters of the input, see {@link ScriptLanguages}. Without
+   * the script pruning, i.e.: for the unique script shortcut alone, only the languages of a
+   * clearly dominant script are selected. The remaining languages could hardly win, since nearly
+   * every n-gram of the input is then unseen in their profiles. All the languages remain
+   * candidates when the input has no letters, when none of the languages uses its scripts, or when
+   * more than half of the languages use them.
+   *
+   * @param normalizedInput the normalized input
+   */
+  private void selectCandidateLanguages(final InputNormalizer normalizedInput) {
+    final ScriptCounts scriptCounts = this.scriptCounts;
+    scriptCounts.count(normalizedInput.getNormalizedChars(), normalizedInput.getLength());
+
+    final boolean[] candidateMarks = this.candidateMarks;
+    Arrays.fill(candidateMarks, false);
+    for (int scriptIdx = 0; scriptIdx < scriptCounts.size(); scriptIdx++) {
+      final int scriptCount = scriptCounts.countAt(scriptIdx);
+      final boolean scored =
+          this.scriptPruning
+              ? scriptCount * MIN_INPUT_SCRIPT_SHARE_DIVISOR >= scriptCounts.getTotal()
+              : isClearlyDominant(scriptCount, scriptCounts.getTotal());
+      if (scored) {
+        final UnicodeScript script = scriptCounts.scriptAt(scriptIdx);
+        for (final int languageIdx : this.scriptLanguages.languagesOf(script)) {
+          candidateMarks[languageIdx] = true;
+        }
+      }
+    }
+
+    int candidateCount = 0;
+    for (int languageIdx = 0; languageIdx < candidateMarks.length; languageIdx++) {
+      if (candidateMarks[languageIdx]) {
+        this.candidateLanguages[candidateCount++] = languageIdx;
+      }
+    }
+    // Scoring a subset of the languages is done through their indexes, which only pays off when
+    // the subset is at most half of the languages, e.g.: not for the Latin script
+    final boolean pruned =
+        candidateCount > 0
+            && candidateCount * MAX_CANDIDATE_LANGUAGES_DIVISOR <= candidateMarks.length;
+    this.candidateCount = pruned ? candidateCount : candidateMarks.length;
+  }
+
+  /**
+   * Counts the distinct n-grams extracted from the input, for the {@link IterationBudget}. The
+   * histogram knows them already, otherwise the row ids are marked in a bit set, one bit per row
+   * of the {@link NGramIndex}, which is left cleared, so the cost is linear in the number of the
+   * extracted n-grams, rather than in the size of the index.
+   *
+   * @param extractedRowIds row ids of the n-grams extracted from the input
+   * @return the number of the distinct n-grams
+   */
+  private int countDistinctNGrams(final ExtractedRowIds extractedRowIds) {
+    if (extractedRowIds == this.nGramHistogram) {
+      return this.nGramHistogram.distinctSize();
+    }
+    final long[] distinctRowIdBits = this.distinctRowIdBits;
+    final int extractedCount = extractedRowIds.size();
+
+    int distinctNGrams = 0;
+    for (int position = 0; position < extractedCount; position++) {
+      final int rowId = extractedRowIds.rowIdAt(position);
+      final long bit = 1L << rowId;
+      final int wordIdx = rowId >>> 6;
+      if ((distinctRowIdBits[wordIdx] & bit) == 0L) {
+        distinctRowIdBits[wordIdx] |= bit;
+        distinctNGrams++;
+      }
+    }
+
+    // Only the words marked above are cleared for the next input, instead of the whole bit set
+    for (int position = 0; position < extractedCount; position++) {
+      distinctRowIdBits[extractedRowIds.rowIdAt(position) >>> 6] = 0L;
+    }
+    return distinctNGrams;
+  }
+
+  /**
+   * Narrows the candidate languages down to the top ones of a cheap first stage, i.e.: the
+   * shortlist, which the full Naive Bayes detection then scores.
+   *
+   * <p>The first stage computes the exact Naive Bayes log-likelihood of each candidate language
+   * over the unigrams and the bigrams of an evenly spaced sample of the extracted n-grams, with the
+   * fixed alpha. Like the sparse scoring, only the languages which know an n-gram are updated, see
+   * {@link #runSparseTrial(ExtractedRowIds, float, Random, long, float[])}. Instead of a logarithm
+   * per update, the factors are multiplied in double precision, which cannot overflow within {@link
+   * #SHORTLIST_LOG_FREQUENCY} updates (or fewer for a small alpha), and their logarithm is added
+   * once per as many updates. The candidates remain as they are when the shortlist holds less than
+   * the minimum share of the probability of all the candidates, i.e.: when the first stage is
+   * uncertain.
+   *
+   * @param extractedRowIds row ids of the n-grams extracted from the input
+   */
+  private void shortlistCandidateLanguages(final ExtractedRowIds extractedRowIds) {
+    final int[] candidateLanguages = this.candidateLanguages;
+    final int candidateCount = this.candidateCount;
+    final int extractedCount = extractedRowIds.size();
+    if (candidateCount <= this.shortlistSize || extractedCount == 0) {
+      return;
+    }
+    if (candidateCount == this.supportedIsoCodes639_1.length) {
+      for (int languageIdx = 0; languageIdx < candidateCount; languageIdx++) {
+        candidateLanguages[languageIdx] = languageIdx;
+      }
+    }
 
-    final float[] probabilities = detectBlock(normalizedText);
-    final List<Language> languages = sortProbability(probabilities);
+    final int[][] nonZeroLanguages = this.nGramIndex.getNonZeroLanguages();
+    final float[][] nonZeroProbabilities = this.nGramIndex.getNonZeroProbabilities();
+    final double inverseWeight = baseFreq / (double) alpha;
+    final double[] logLikelihoods = this.logLikelihoods;
+    final double[] likelihoodFactors = this.likelihoodFactors;
+    Arrays.fill(logLikelihoods, 0.0);
+    Arrays.fill(likelihoodFactors, 1.0);
 
-    return languages.subList(0, Math.min(languages.size(), MAX_DETECTED_CLASSES));
+    final int sampleSize = Math.min(extractedCount, this.shortlistSampleSize);
+    for (int sampleIdx = 0; sampleIdx < sampleSize; sampleIdx++) {
+      final int position = (int) ((long) sampleIdx * extractedCount / sampleSize);
+      final int rowId = extractedRowIds.rowIdAt(position);
+      if (this.nGramIndex.nGramLengthOf(rowId) > NGram.BIGRAM_SIZE) {
+        continue;
+      }
+      final int[] languages = nonZeroLanguages[rowId];
+      final float[] wordProbabilities = nonZeroProbabilities[rowId];
+      for (int nonZeroIdx = 0; nonZeroIdx < languages.length; ++nonZeroIdx) {
+        likelihoodFactors[languages[nonZeroIdx]] *=
+            1.0 + wordProbabilities[nonZeroIdx] * inverseWeight;
+      }
+      if (sampleIdx % shortlistLogFrequency == shortlistLogFrequency - 1) {
+        addLogLikelihoodFactors();
+      }
+    }
+    addLogLikelihoodFactors();
+
+    // The shortlist is kept in an insertion-sorted buffer, by descending log-likelihood
+    final int[] shortlist = this.topLanguageIndexes;
+    int shortlistCount = 0;
+    double maxLogLikelihood = Double.NEGATIVE_INFINITY;
+    for (int candidateIdx = 0; candidateIdx < candidateCount; candidateIdx++) {
+      final int languageIdx = candidateLanguages[candidateIdx];
+      final double logLikelihood = logLikelihoods[languageIdx];
+      maxLogLikelihood = Math.max(maxLogLikelihood, logLikelihood);
+      if (shortlistCount == this.shortlistSize
+          && logLikelihood <= logLikelihoods[shortlist[shortlistCount - 1]]) {
+        continue;
+      }
+      int insertIdx = Math.min(shortlistCount, this.shortlistSize - 1);
+      while (insertIdx > 0 && logLikelihood > logLikelihoods[shortlist[insertIdx - 1]]) {
+        shortlist[insertIdx] = shortlist[insertIdx - 1];
+        insertIdx--;
+      }
+      shortlist[insertIdx] = languageIdx;
+      shortlistCount = Math.min(shortlistCount + 1, this.shortlistSize);
+    }
+
+    // The softmax of the log-likelihoods, after subtracting the maximum to keep the exponents in
+    // range, gives the share of the probability of the candidates which the shortlist holds
+    double candidatesMass = 0.0;
+    for (int candidateIdx = 0; candidateIdx < candidateCount; candidateIdx++) {
+      final int languageIdx = candidateLanguages[candidateIdx];
+      candidatesMass += Math.exp(logLikelihoods[languageIdx] - maxLogLikelihood);
+    }
+    double shortlistMass = 0.0;
+    for (int shortlistIdx = 0; shortlistIdx < shortlistCount; shortlistIdx++) {
+      shortlistMass += Math.exp(logLikelihoods[shortlist[shortlistIdx]] - maxLogLikelihood);
+    }
+    if (shortlistMass < this.shortlistMinCertainty * candidatesMass) {
+      return;
+    }
+
+    System.arraycopy(shortlist, 0, candidateLanguages, 0, shortlistCount);
+    Arrays.sort(candidateLanguages, 0, shortlistCount);
+    this.candidateCount = shortlistCount;
+  }
+
+  /**
+   * Adds the logarithms of the accumulated likelihood factors of the languages to their
+   * log-likelihoods, and resets the factors, see {@link
+   * #shortlistCandidateLanguages(ExtractedRowIds)}.
+   */
+  private void addLogLikelihoodFactors() {
+    final double[] likelihoodFactors = this.likelihoodFactors;
+    for (int languageIdx = 0; languageIdx < likelihoodFactors.length; languageIdx++) {
+      this.logLikelihoods[languageIdx] += Math.log(likelihoodFactors[languageIdx]);
+      likelihoodFactors[languageIdx] = 1.0;
+    }
+  }
+
+  /**
+   * @return true if the Vietnamese language is supported, in which case the input must be
+   *     normalized with Vietnamese folding enabled
+   */
+  boolean isVietnameseConfigured() {
+    return isVietnameseConfigured;
   }
 
   /**
@@ -122,18 +629,28 @@ class LanguageDetector {
    * is a core function of Naive Bayes, which aims to determine the probability of a document
    * belonging to each class (language).
    *
-   * @param input input string
+   * <p>When the adaptive trials are enabled, the remaining trials are not run once at least {@link
+   * #MIN_ADAPTIVE_TRIALS} trials have been run, and all of them converged on the same top language.
+   * Such trials would hardly change the average, which is then rescaled to the number of the trials
+   * that were run.
+   *
+   * <p>When the fast sampling is enabled, the trials follow the precomputed {@link
+   * SamplingSchedule} instead of the sequence of a {@link Random} seeded with zero.
+   *
+   * @param extractedRowIds row ids of the n-grams extracted from the input, see {@link NGramIndex}
    * @return an array of probabilities.
    */
-  private float[] detectBlock(final String input) {
-    final List<String> extractedNGrams = extractNGrams(input);
-
-    final float[] languageProbabilities = new float[supportedIsoCodes639_1.length];
-    if (extractedNGrams.isEmpty()) {
+  private float[] detectBlock(final ExtractedRowIds extractedRowIds) {
+    final float[] languageProbabilities = this.languageProbabilities;
+    Arrays.fill(languageProbabilities, ZERO_PROBABILITY);
+    if (extractedRowIds.size() == 0) {
       return languageProbabilities;
     }
 
-    final Random random = new Random();
+    final float[][] rows = this.nGramIndex.getRows();
+
+    // Re-seeding also discards the Gaussian, which the previous detection may have cached
+    final Random random = this.random;
     random.setSeed(0L);
 
     // 1. The random selection of n-grams in the following code, and the multiple trials, indicates
@@ -142,65 +659,24 @@ class LanguageDetector {
     // 2. Due to numberOfTrials the algorithm runs multiple times with slightly different parameters
     //    (due to the random smoothing, see below), and the results are averaged. This helps improve
     //    the robustness of the predictions.
+    int agreedLanguageIdx = -1;
+    boolean trialsAgree = this.adaptiveTrials;
+    final int numberOfTrials = this.inputNumberOfTrials;
     for (int t = 0; t < numberOfTrials; ++t) {
-      final float[] probabilities = initProbabilies();
-
-      // 1. Smoothing is essential in Naive Bayes to prevent zero probabilities when encountering
-      //    unseen n-grams. This is a form of smoothing, likely a variant of Laplace smoothing or
-      //    Lidstone smoothing adapted for this specific application. The alpha and alphaWidth
-      //    parameters control the degree of smoothing.
-      // 2. Gaussian: the random gaussian addition to alpha, implies the alpha value is being
-      //    varied slightly between trials. This random variation of the alpha smoothing parameter
-      //    is a unique implementation detail and something which is not "normally" used by Naive
-      //    Bayers. By introducing random variation, the algorithm becomes less sensitive to the
-      //    specific value of alpha and alphaWidth, which provides more robust performance, even if
-      //    the hyperparameters are not perfectly tuned. Because the algorithm runs multiple trials
-      //    with different alpha values, it effectively creates an ensemble of models. Averaging the
-      //    results from these trials can improve the overall accuracy of the predictions.
-      //    Most standard Naive Bayes implementations use fixed smoothing constants (like in Laplace
-      //    or Lidstone smoothing) or more deterministic techniques (like Kneser-Ney). Random
-      //    variation adds complexity and computational overhead, which might not be necessary for
-      //    many applications. It is harder to analyze the results of a stochastic application,
-      //    than a deterministic one. In essence, the Gaussian variation is a more advanced and
-      //    potentially more powerful approach to smoothing. It allows the algorithm to adapt to
-      //    the data and find a more optimal smoothing parameter. However, it's not the "normal"
-      //    approach because it adds complexity and is not always necessary.
-      final float alphaSmoothing = (float) (this.alpha + random.nextGaussian() * alphaWidth);
-      // Smoothing is essential in Naive Bayes to prevent
-      // zero probabilities when encountering unseen n-grams.
-      final float weight = alphaSmoothing / baseFreq;
-
-      for (int iteration = 0; iteration <= iterationLimit; ++iteration) {
-        final int randomIdx = random.nextInt(extractedNGrams.size());
-        final String nGram = extractedNGrams.get(randomIdx);
-
-        // Retrieving the probabilities for a specific n-gram appears in each language.
-        final float[] wordProbabilities = languageCorporaProbabilities.get(nGram);
-        float probSum = 0.0f;
-        for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
-
-          // Multiplying the existing probability of a language by the probability of
-          // the n-gram appearing in that language. This aligns strongly with the
-          // multiplicative nature of Naive Bayes probability calculations.
-          probabilities[probIdx] *= weight + wordProbabilities[probIdx];
-          probSum += probabilities[probIdx];
-        }
-
-        // Probabilities are normalized and checked for convergence threshold
-        // on every 5th iteration with the help of CONVERGENCE_CHECK_FREQUENCY,
-        // which was probably an empirically derived value. Why 5th in particular?
-        // Probably to reduce the computational overhead of the loop, and potentially
-        // improving performance because checking for convergence can be computationally
-        // expensive, especially if the probabilities array is large. I guess this was
-        // the trade-off between the accuracy of the convergence check and the speed
-        // of the algorithm chosen by Nakatani Shuyo, the original author.
-        if (iteration % CONVERGENCE_CHECK_FREQUENCY == 0) {
-          // Normalization is often used in probability calculations to ensure that
-          // the probabilities sum to 1. This is a standard practice in Naive Bayes.
-          if (normalizeProbabilitiesAndReturnMax(probSum, probabilities) > convergenceThreshold) {
-            break;
-          }
-        }
+      final float[] probabilities;
+      if (this.fastSampling) {
+        probabilities =
+            runTrial(
+                rows,
+                extractedRowIds,
+                this.samplingSchedule.trialWeight(t),
+                null,
+                SamplingSchedule.trialSeed(t),
+                this.trialProbabilities);
+      } else {
+        probabilities =
+            runTrial(
+                rows, extractedRowIds, trialWeight(random), random, 0L, this.trialProbabilities);
       }
 
       // This loop averages the probability estimates obtained from multiple
@@ -214,31 +690,468 @@ class LanguageDetector {
       for (int j = 0; j < languageProbabilities.length; ++j) {
         languageProbabilities[j] += probabilities[j] / numberOfTrials;
       }
+
+      if (trialsAgree) {
+        // A trial agrees when it converged on the same top language as the previous ones
+        final int topLanguageIdx = indexOfMax(probabilities);
+        trialsAgree =
+            (t == 0 || topLanguageIdx == agreedLanguageIdx)
+                && probabilities[topLanguageIdx] > convergenceThreshold;
+        agreedLanguageIdx = topLanguageIdx;
+
+        final int trialsRun = t + 1;
+        if (trialsAgree && trialsRun >= MIN_ADAPTIVE_TRIALS && trialsRun < numberOfTrials) {
+          final float scale = (float) numberOfTrials / trialsRun;
+          for (int j = 0; j < languageProbabilities.length; ++j) {
+            languageProbabilities[j] *= scale;
+          }
+          break;
+        }
+      }
     }
     return languageProbabilities;
   }
 
+  private static int indexOfMax(final float[] probabilities) {
+    int maxIdx = 0;
+    for (int probIdx = 1; probIdx < probabilities.length; ++probIdx) {
+      if (probabilities[probIdx] > probabilities[maxIdx]) {
+        maxIdx = probIdx;
+      }
+    }
+    return maxIdx;
+  }
+
   /**
-   * Initialize an array of language probabilities.
+   * Draws the smoothing weight of a trial from the given random number generator.
+   *
+   * @param random the source of the alpha variation
+   * @return the smoothing weight, i.e.: the varied alpha over the base frequency
+   */
+  private float trialWeight(final Random random) {
+    // 1. Smoothing is essential in Naive Bayes to prevent zero probabilities when encountering
+    //    unseen n-grams. This is a form of smoothing, likely a variant of Laplace smoothing or
+    //    Lidstone smoothing adapted for this specific application. The alpha and alphaWidth
+    //    parameters control the degree of smoothing.
+    // 2. Gaussian: the random gaussian addition to alpha, implies the alpha value is being
+    //    varied slightly between trials. This random variation of the alpha smoothing parameter
+    //    is a unique implementation detail and something which is not "normally" used by Naive
+    //    Bayers. By introducing random variation, the algorithm becomes less sensitive to the
+    //    specific value of alpha and alphaWidth, which provides more robust performance, even if
+    //    the hyperparameters are not perfectly tuned. Because the algorithm runs multiple trials
+    //    with different alpha values, it effectively creates an ensemble of models. Averaging the
+    //    results from these trials can improve the overall accuracy of the predictions.
+    //    Most standard Naive Bayes implementations use fixed smoothing constants (like in Laplace
+    //    or Lidstone smoothing) or more deterministic techniques (like Kneser-Ney). Random
+    //    variation adds complexity and computational overhead, which might not be necessary for
+    //    many applications. It is harder to analyze the results of a stochastic application,
+    //    than a deterministic one. In essence, the Gaussian variation is a more advanced and
+    //    potentially more powerful approach to smoothing. It allows the algorithm to adapt to
+    //    the data and find a more optimal smoothing parameter. However, it's not the "normal"
+    //    approach because it adds complexity and is not always necessary.
+    // 3. The variation never takes alpha below a tenth of it, see Model#trialAlpha(double), as a
+    //    negative trial weight would give the unseen n-grams negative probabilities.
+    final float alphaSmoothing = model.trialAlpha(random.nextGaussian());
+    // Smoothing is essential in Naive Bayes to prevent
+    // zero probabilities when encountering unseen n-grams.
+    return alphaSmoothing / baseFreq;
+  }
+
+  /**
+   * Runs a single trial of the stochastic Naive Bayes approximation, see {@link
+   * #detectBlock(ExtractedRowIds)} for details.
+   *
+   * @param rows the per-language probabilities of the n-grams, by row id
+   * @param extractedRowIds row ids of the n-grams extracted from the input
+   * @param weight the smoothing weight of the trial, see {@link #trialWeight(Random)}
+   * @param random the source of the n-gram sampling, or {@code null} to sample with {@link
+   *     SamplingSchedule#sampleIndex(long, int, int)} instead
+   * @param trialSeed the seed of the trial in the {@link SamplingSchedule}, when random is null
+   * @param probabilities the buffer of the language probabilities of the trial
+   * @return the given buffer, holding the language probabilities of the trial
+   */
+  private float[] runTrial(
+      final float[][] rows,
+      final ExtractedRowIds extractedRowIds,
+      final float weight,
+      final Random random,
+      final long trialSeed,
+      final float[] probabilities) {
+    if (this.sparseScoring) {
+      return runSparseTrial(extractedRowIds, weight, random, trialSeed, probabilities);
+    } else if (this.scoringBlockSize > 0) {
+      return runBlockTrial(rows, extractedRowIds, weight, random, trialSeed, probabilities);
+    }
+    final int extractedCount = extractedRowIds.size();
+    final int[] candidateLanguages = this.candidateLanguages;
+    final int candidateCount = this.candidateCount;
+    final boolean allCandidates = candidateCount == probabilities.length;
+    initProbabilies(probabilities);
+
+    for (int iteration = 0; iteration <= inputIterationLimit; ++iteration) {
+      final int randomIdx =
+          random == null
+              ? SamplingSchedule.sampleIndex(trialSeed, iteration, extractedCount)
+              : random.nextInt(extractedCount);
+
+      // Retrieving the probabilities for a specific n-gram appears in each language.
+      final float[] wordProbabilities = rows[extractedRowIds.rowIdAt(randomIdx)];
+      float probSum = 0.0f;
+      if (allCandidates) {
+        // Multiplying the existing probability of a language by the probability of
+        // the n-gram appearing in that language. This aligns strongly with the
+        // multiplicative nature of Naive Bayes probability calculations.
+        probSum = this.probabilityKernel.multiplyAndSum(probabilities, wordProbabilities, weight);
+      } else {
+        // Only the candidate languages are scored, the others stay at zero probability
+        for (int candidateIdx = 0; candidateIdx < candidateCount; ++candidateIdx) {
+          final int probIdx = candidateLanguages[candidateIdx];
+          probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+          probSum += probabilities[probIdx];
+        }
+      }
+
+      // Probabilities are normalized and checked for convergence threshold
+      // on every 5th iteration with the help of CONVERGENCE_CHECK_FREQUENCY,
+      // which was probably an empirically derived value. Why 5th in particular?
+      // Probably to reduce the computational overhead of the loop, and potentially
+      // improving performance because checking for convergence can be computationally
+      // expensive, especially if the probabilities array is large. I guess this was
+      // the trade-off between the accuracy of the convergence check and the speed
+      // of the algorithm chosen by Nakatani Shuyo, the original author.
+      if (iteration % CONVERGENCE_CHECK_FREQUENCY == 0) {
+        // Normalization is often used in probability calculations to ensure that
+        // the probabilities sum to 1. This is a standard practice in Naive Bayes.
+        if (normalizeProbabilitiesAndReturnMax(probSum, probabilities) > convergenceThreshold) {
+          break;
+        }
+      }
+    }
+    return probabilities;
+  }
+
+  /**
+   * Runs a single trial of the stochastic Naive Bayes approximation, like {@link
+   * #runTrial(float[][], ExtractedRowIds, float, Random, long, float[])} does, but touches only the
+   * languages whose probability of the sampled n-gram is non-zero.
+   *
+   * <p>Multiplying the probability of each language by {@code weight + p}, where {@code p} is the
+   * probability of the n-gram in that language, is the same as multiplying all the probabilities
+   * by {@code weight}, and then the probability of each language by {@code 1 + p / weight}. The
+   * former is a scale which is common to all the languages, and which the normalization cancels,
+   * therefore it is skipped. The latter is one for the languages which do not know the n-gram,
+   * therefore only the other languages are updated. The sum of the probabilities is kept up to
+   * date along with the updates, for the normalization.
+   *
+   * <p>Skipping the scale makes the probabilities grow instead of shrink between normalizations.
+   * An update grows a probability by at most {@code 1 + 1 / weight}, which stays far below the
+   * float range over the iterations between two normalizations.
+   *
+   * @param extractedRowIds row ids of the n-grams extracted from the input
+   * @param weight the smoothing weight of the trial, see {@link #trialWeight(Random)}
+   * @param random the source of the n-gram sampling, or {@code null} to sample with {@link
+   *     SamplingSchedule#sampleIndex(long, int, int)} instead
+   * @param trialSeed the seed of the trial in the {@link SamplingSchedule}, when random is null
+   * @param probabilities the buffer of the language probabilities of the trial
+   * @return the given buffer, holding the language probabilities of the trial
+   */
+  private float[] runSparseTrial(
+      final ExtractedRowIds extractedRowIds,
+      final float weight,
+      final Random random,
+      final long trialSeed,
+      final float[] probabilities) {
+    final int extractedCount = extractedRowIds.size();
+    final int[][] nonZeroLanguages = this.nGramIndex.getNonZeroLanguages();
+    final float[][] nonZeroProbabilities = this.nGramIndex.getNonZeroProbabilities();
+    final float inverseWeight = PERFECT_PROBABILITY / weight;
+    initProbabilies(probabilities);
+
+    float probSum = ZERO_PROBABILITY;
+    for (final float probability : probabilities) {
+      probSum += probability;
+    }
+
+    for (int iteration = 0; iteration <= inputIterationLimit; ++iteration) {
+      final int randomIdx =
+          random == null
+              ? SamplingSchedule.sampleIndex(trialSeed, iteration, extractedCount)
+              : random.nextInt(extractedCount);
+
+      final int rowId = extractedRowIds.rowIdAt(randomIdx);
+      final int[] languages = nonZeroLanguages[rowId];
+      final float[] wordProbabilities = nonZeroProbabilities[rowId];
+      for (int nonZeroIdx = 0; nonZeroIdx < languages.length; ++nonZeroIdx) {
+        // The languages which are not candidates stay at zero probability
+        final int probIdx = languages[nonZeroIdx];
+        final float increase =
+            probabilities[probIdx] * wordProbabilities[nonZeroIdx] * inverseWeight;
+        probabilities[probIdx] += increase;
+        probSum += increase;
+      }
+
+      if (iteration % CONVERGENCE_CHECK_FREQUENCY == 0) {
+        if (normalizeProbabilitiesAndReturnMax(probSum, probabilities) > convergenceThreshold) {
+          break;
+        }
+        probSum = PERFECT_PROBABILITY;
+      }
+    }
+    return probabilities;
+  }
+
+  /**
+   * Runs a single trial of the stochastic Naive Bayes approximation, like {@link
+   * #runTrial(float[][], ExtractedRowIds, float, Random, long, float[])} does, but scores the
+   * sampled n-grams in blocks, instead of normalizing the probabilities every {@link
+   * #CONVERGENCE_CHECK_FREQUENCY} n-grams.
+   *
+   * <p>The normalization keeps the products of the probabilities from underflowing, which is a
+   * division pass and a maximum pass over all the languages. Instead, within a block, the
+   * probabilities are only multiplied, without the running sum. At the end of a block, a single
+   * pass computes the sum and the maximum for the convergence check. The block size is a multiple
+   * of {@link #CONVERGENCE_CHECK_FREQUENCY}, and the blocks end where the normalization would
+   * check the convergence, i.e.: with a block size of {@link #CONVERGENCE_CHECK_FREQUENCY}, a
+   * trial checks the convergence after the same n-grams as {@link #runTrial(float[][],
+   * ExtractedRowIds, float, Random, long, float[])} does.
    *
-   * @return initialized array of language probabilities
+   * <p>The lower bound of the exponent of the language which was the most probable at the last
+   * pass is accumulated along with the multiplications, from the exponents of its factors, which
+   * is exact, because the float rounding is monotonic. The probabilities are rescaled by a power
+   * of two, which is exact, only when the next multiplication by the smoothing weight could make
+   * the bound subnormal. Since the bound does not exceed the largest probability, the latter
+   * cannot become subnormal either, whatever the block size.
+   *
+   * @param rows the per-language probabilities of the n-grams, by row id
+   * @param extractedRowIds row ids of the n-grams extracted from the input
+   * @param weight the smoothing weight of the trial, see {@link #trialWeight(Random)}
+   * @param random the source of the n-gram sampling, or {@code null} to sample with {@link
+   *     SamplingSchedule#sampleIndex(long, int, int)} instead
+   * @param trialSeed the seed of the trial in the {@link SamplingSchedule}, when random is null
+   * @param probabilities the buffer of the language probabilities of the trial
+   * @return the given buffer, holding the language probabilities of the trial
    */
-  private float[] initProbabilies() {
-    final float[] probabilities = new float[supportedIsoCodes639_1.length];
-    Arrays.fill(probabilities, PERFECT_PROBABILITY / supportedIsoCodes639_1.length);
+  private float[] runBlockTrial(
+      final float[][] rows,
+      final ExtractedRowIds extractedRowIds,
+      final float weight,
+      final Random random,
+      final long trialSeed,
+      final float[] probabilities) {
+    final int extractedCount = extractedRowIds.size();
+    final int[] candidateLanguages = this.candidateLanguages;
+    final int candidateCount = this.candidateCount;
+    final boolean allCandidates = candidateCount == probabilities.length;
+    initProbabilies(probabilities);
+
+    // The probabilities are rescaled, when the next multiplication could go below this exponent
+    final int minExponent = Float.MIN_EXPONENT - Math.getExponent(weight);
+    int trackedIdx = allCandidates ? 0 : candidateLanguages[0];
+    int trackedExponent = Math.getExponent(probabilities[trackedIdx]);
+    int blockEnd = 0;
+    for (int iteration = 0; iteration <= inputIterationLimit; ++iteration) {
+      final int randomIdx =
+          random == null
+              ? SamplingSchedule.sampleIndex(trialSeed, iteration, extractedCount)
+              : random.nextInt(extractedCount);
 
+      final float[] wordProbabilities = rows[extractedRowIds.rowIdAt(randomIdx)];
+      if (allCandidates) {
+        this.probabilityKernel.multiply(probabilities, wordProbabilities, weight);
+      } else {
+        for (int candidateIdx = 0; candidateIdx < candidateCount; ++candidateIdx) {
+          final int probIdx = candidateLanguages[candidateIdx];
+          probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+        }
+      }
+      trackedExponent += Math.getExponent(weight + wordProbabilities[trackedIdx]);
+
+      final boolean isBlockEnd = iteration == blockEnd;
+      if (!isBlockEnd && trackedExponent >= minExponent) {
+        continue;
+      }
+
+      float probSum = ZERO_PROBABILITY;
+      float maxp = ZERO_PROBABILITY;
+      for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
+        final float probability = probabilities[probIdx];
+        probSum += probability;
+        if (probability > maxp) {
+          maxp = probability;
+          trackedIdx = probIdx;
+        }
+      }
+      if (isBlockEnd) {
+        if (maxp > convergenceThreshold * probSum) {
+          break;
+        }
+        blockEnd += this.scoringBlockSize;
+      }
+
+      // The probabilities grow by less than a binary order of magnitude per multiplication, which
+      // needs the rescaling as rarely as the probabilities of the n-grams are close to one
+      trackedExponent = Math.getExponent(maxp);
+      if (trackedExponent < minExponent || trackedExponent > 0) {
+        final float scale = Math.scalb(PERFECT_PROBABILITY, -trackedExponent);
+        for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
+          probabilities[probIdx] *= scale;
+        }
+        trackedExponent = 0;
+      }
+    }
+
+    float probSum = ZERO_PROBABILITY;
+    for (final float probability : probabilities) {
+      probSum += probability;
+    }
+    normalizeProbabilitiesAndReturnMax(probSum, probabilities);
     return probabilities;
   }
 
   /**
-   * Extract n-grams from target text
+   * The same stochastic Naive Bayes approximation as {@link #detectBlock(ExtractedRowIds)}, where
+   * the trials run in parallel on the common {@link ForkJoinPool}, which lowers the latency of long
+   * inputs at the expense of using several cores per detection.
+   *
+   * <p>In {@link #detectBlock(ExtractedRowIds)}, the trials draw from a single sequence of random
+   * numbers one after another. Here, each trial draws from its own sequence instead, which is
+   * seeded by the index of the trial. Moreover, the trials are averaged in their index order, so
+   * the results do not depend on the scheduling of the trials, and are reproducible. However, they
+   * are not identical to the results of {@link #detectBlock(ExtractedRowIds)}, unless the fast
+   * sampling is enabled, in which case the trials follow the same {@link SamplingSchedule} both
+   * sequentially and in parallel.
+   *
+   * @param extractedRowIds row ids of the n-grams extracted from the input, see {@link NGramIndex}
+   * @return an array of probabilities.
+   */
+  private float[] detectBlockInParallel(final ExtractedRowIds extractedRowIds) {
+    final float[] languageProbabilities = this.languageProbabilities;
+    Arrays.fill(languageProbabilities, ZERO_PROBABILITY);
+    if (extractedRowIds.size() == 0) {
+      return languageProbabilities;
+    }
+
+    final float[][] rows = this.nGramIndex.getRows();
+    final int numberOfTrials = this.inputNumberOfTrials;
+    for (int t = 0; t < numberOfTrials; ++t) {
+      final ParallelTrial trial = this.parallelTrials[t];
+      trial.prepare(rows, extractedRowIds, t);
+      ForkJoinPool.commonPool().execute(trial);
+    }
+
+    for (int t = 0; t < numberOfTrials; ++t) {
+      final float[] probabilities = this.parallelTrials[t].join();
+      for (int j = 0; j < languageProbabilities.length; ++j) {
+        languageProbabilities[j] += probabilities[j] / numberOfTrials;
+      }
+    }
+    return languageProbabilities;
+  }
+
+  /**
+   * Exact Naive Bayes classification algorithm implementation, which is the deterministic
+   * alternative to {@link #detectBlock(ExtractedRowIds)}.
+   *
+   * <p>Instead of multiplying the probabilities of randomly sampled n-grams over several trials,
+   * the method takes every extracted n-gram into account exactly once. The occurrences of each
+   * distinct n-gram are counted first, then the log-likelihood of each language is the sum of the
+   * count of each distinct n-gram times the log of its smoothed probability in that language.
+   * Working with logarithms avoids the underflow, which the stochastic approximation prevents by
+   * normalizing every few iterations. The smoothing is the same as in the stochastic
+   * approximation, with a fixed alpha, since there are no trials to vary it between.
+   *
+   * <p>Finally, the log-likelihoods are turned into a probability distribution with the softmax
+   * function, after subtracting the maximum log-likelihood to keep the exponents in range.
    *
-   * @return n-grams list
+   * @param nGramHistogram the histogram of the n-grams extracted from the input
+   * @return an array of probabilities.
    */
-  List<String> extractNGrams(final String input) {
-    final NGram ngram = new NGram(input, this.minNGramLength, this.maxNGramLength);
+  private float[] detectBlockExact(final NGramHistogram nGramHistogram) {
+    final float[] languageProbabilities = this.languageProbabilities;
+    Arrays.fill(languageProbabilities, ZERO_PROBABILITY);
+    if (nGramHistogram.size() == 0) {
+      return languageProbabilities;
+    }
+
+    final float[][] rows = this.nGramIndex.getRows();
+    final int[][] nonZeroLanguages = this.nGramIndex.getNonZeroLanguages();
+    final float[][] nonZeroProbabilities = this.nGramIndex.getNonZeroProbabilities();
+    final float weight = alpha / baseFreq;
+    final double[] logLikelihoods = this.logLikelihoods;
+    final int[] candidateLanguages = this.candidateLanguages;
+    final int candidateCount = this.candidateCount;
+    final boolean allCandidates = candidateCount == logLikelihoods.length;
+    if (allCandidates) {
+      Arrays.fill(logLikelihoods, 0.0);
+    } else {
+      // The languages which are not candidates end up with zero probability
+      Arrays.fill(logLikelihoods, Double.NEGATIVE_INFINITY);
+      for (int candidateIdx = 0; candidateIdx < candidateCount; ++candidateIdx) {
+        logLikelihoods[candidateLanguages[candidateIdx]] = 0.0;
+      }
+    }
 
-    return ngram.extractNGrams(languageCorporaProbabilities.keySet());
+    // The logarithms are computed once per distinct n-gram
+    final int[] distinctRowIds = nGramHistogram.getRowIds();
+    final int[] counts = nGramHistogram.getCounts();
+    for (int distinctIdx = 0; distinctIdx < nGramHistogram.distinctSize(); distinctIdx++) {
+      final int occurrences = counts[distinctIdx];
+      if (this.sparseScoring) {
+        // log(weight + p) is log(weight) + log(1 + p / weight), where the former is common to all
+        // the languages, which the softmax cancels, and the latter is zero when p is zero
+        final int rowId = distinctRowIds[distinctIdx];
+        final int[] languages = nonZeroLanguages[rowId];
+        final float[] wordProbabilities = nonZeroProbabilities[rowId];
+        for (int nonZeroIdx = 0; nonZeroIdx < languages.length; ++nonZeroIdx) {
+          logLikelihoods[languages[nonZeroIdx]] +=
+              occurrences * Math.log1p(wordProbabilities[nonZeroIdx] / weight);
+        }
+        continue;
+      }
+      final float[] wordProbabilities = rows[distinctRowIds[distinctIdx]];
+      if (allCandidates) {
+        for (int probIdx = 0; probIdx < logLikelihoods.length; ++probIdx) {
+          logLikelihoods[probIdx] += occurrences * Math.log(weight + wordProbabilities[probIdx]);
+        }
+      } else {
+        for (int candidateIdx = 0; candidateIdx < candidateCount; ++candidateIdx) {
+          final int probIdx = candidateLanguages[candidateIdx];
+          logLikelihoods[probIdx] += occurrences * Math.log(weight + wordProbabilities[probIdx]);
+        }
+      }
+    }
+
+    double maxLogLikelihood = Double.NEGATIVE_INFINITY;
+    for (final double logLikelihood : logLikelihoods) {
+      maxLogLikelihood = Math.max(maxLogLikelihood, logLikelihood);
+    }
+    double probSum = 0.0;
+    for (int probIdx = 0; probIdx < logLikelihoods.length; ++probIdx) {
+      logLikelihoods[probIdx] = Math.exp(logLikelihoods[probIdx] - maxLogLikelihood);
+      probSum += logLikelihoods[probIdx];
+    }
+    for (int probIdx = 0; probIdx < languageProbabilities.length; ++probIdx) {
+      languageProbabilities[probIdx] = (float) (logLikelihoods[probIdx] / probSum);
+    }
+    return languageProbabilities;
+  }
+
+  /**
+   * Initialize an array of language probabilities.
+   *
+   * @param probabilities the array of language probabilities to initialize
+   */
+  private void initProbabilies(final float[] probabilities) {
+    if (this.candidateCount == probabilities.length) {
+      Arrays.fill(probabilities, PERFECT_PROBABILITY / supportedIsoCodes639_1.length);
+    } else {
+      // Only the candidate languages start off with a non-zero probability
+      Arrays.fill(probabilities, ZERO_PROBABILITY);
+      for (int candidateIdx = 0; candidateIdx < this.candidateCount; ++candidateIdx) {
+        probabilities[this.candidateLanguages[candidateIdx]] =
+            PERFECT_PROBABILITY / this.candidateCount;
+      }
+    }
   }
 
   /**
@@ -251,7 +1164,7 @@ class LanguageDetector {
    * <p>2. Returns the maximum value found within the normalized probability array.
    *
    * <p>This function is essential for ensuring that the probabilities returned by the {@link
-   * #detectBlock(String)} represent a valid probability distribution across all supported
+   * #detectBlock(ExtractedRowIds)} represent a valid probability distribution across all supported
    * languages.
    *
    * @return the maximum value found within the normalized probability array. This maximum value is
@@ -262,40 +1175,149 @@ class LanguageDetector {
       return ZERO_PROBABILITY;
     }
 
-    float maxp = ZERO_PROBABILITY;
-    for (int i = 0; i < prob.length; i++) {
-      prob[i] = prob[i] / sump;
-      maxp = Math.max(maxp, prob[i]);
-    }
-    return maxp;
+    return this.probabilityKernel.normalizeAndReturnMax(prob, sump);
   }
 
-  private List<Language> sortProbability(final float[] probabilities) {
-
-    final List<Language> languages = new ArrayList<>();
-    // Using final array as a holder of a counter
-    final float[] probabilitiesSum = new float[1];
+  /**
+   * Selects the languages with the highest probabilities, ordered by probabilities descendently.
+   * The languages with equal probabilities keep the order of the supported ISO codes, i.e.: the
+   * result is the same as the head of the stably sorted list of all the languages, but neither the
+   * full list nor the sort is needed: the top languages are kept in an insertion-sorted buffer of
+   * their indexes, which only a language better than the worst kept one enters.
+   *
+   * @param probabilities the probabilities of the supported languages
+   * @param maxLanguages the maximum number of the languages to return
+   * @return the top languages with a non-zero probability, or the undetermined language if none
+   */
+  private List<Language> topLanguages(final float[] probabilities, final int maxLanguages) {
+    final int[] topIndexes = this.topLanguageIndexes;
+    final int topCapacity = Math.min(maxLanguages, topIndexes.length);
+    float probabilitiesSum = 0f;
+    int topCount = 0;
 
     for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
       final float currentLanguageProbability = probabilities[probIdx];
-      probabilitiesSum[0] += currentLanguageProbability;
-      if (currentLanguageProbability > ZERO_PROBABILITY) {
-        final String code = supportedIsoCodes639_1[probIdx];
-        languages.add(new Language(code, currentLanguageProbability));
+      probabilitiesSum += currentLanguageProbability;
+      if (currentLanguageProbability <= ZERO_PROBABILITY
+          || (topCount == topCapacity
+              && currentLanguageProbability <= probabilities[topIndexes[topCount - 1]])) {
+        continue;
+      }
+
+      // When the buffer is full, the worst kept language is overwritten
+      int position = Math.min(topCount, topCapacity - 1);
+      while (position > 0 && currentLanguageProbability > probabilities[topIndexes[position - 1]]) {
+        topIndexes[position] = topIndexes[position - 1];
+        position--;
+      }
+      topIndexes[position] = probIdx;
+      if (topCount < topCapacity) {
+        topCount++;
       }
     }
-    Collections.sort(languages);
 
-    if (probabilitiesSum[0] == 0 || languages.isEmpty()) {
+    if (probabilitiesSum == 0 || topCount == 0) {
       // In certain scenarios, the sum of probabilities could be so low
       // that it fails to reach a defined threshold. In such cases, the
       // probability sum might still be greater than zero, but remain
       // below the threshold. To handle both situations effectively, it
       // is essential to ensure that we return the ISO 639-3 code "und"
       // to signify an unknown or undetermined language in these cases.
-      languages.add(new Language(ISO_CODE_639_3_UND, ZERO_PROBABILITY));
+      final List<Language> languages = new ArrayList<>(1);
+      languages.add(UNDETERMINED_LANGUAGE_RESPONSE);
+      return languages;
     }
 
+    final List<Language> languages = new ArrayList<>(topCount);
+    for (int topIdx = 0; topIdx < topCount; ++topIdx) {
+      final int languageIdx = topIndexes[topIdx];
+      languages.add(new Language(supportedIsoCodes639_1[languageIdx], probabilities[languageIdx]));
+    }
     return languages;
   }
+
+  /**
+   * The same as {@link #topLanguages(float[], int)} with a single language, which is selected by a
+   * single scan, without the buffer of the indexes. Only the language and its singleton list are
+   * allocated.
+   *
+   * @param probabilities the probabilities of the supported languages
+   * @return the top language with a non-zero probability, or the undetermined language if none
+   */
+  private List<Language> topLanguage(final float[] probabilities) {
+    float probabilitiesSum = 0f;
+    int topLanguageIdx = -1;
+    for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
+      final float currentLanguageProbability = probabilities[probIdx];
+      probabilitiesSum += currentLanguageProbability;
+      if (currentLanguageProbability > ZERO_PROBABILITY
+          && (topLanguageIdx == -1 || currentLanguageProbability > probabilities[topLanguageIdx])) {
+        topLanguageIdx = probIdx;
+      }
+    }
+
+    if (probabilitiesSum == 0 || topLanguageIdx == -1) {
+      return UNDETERMINED_RESULTS;
+    }
+    return Collections.singletonList(
+        new Language(supportedIsoCodes639_1[topLanguageIdx], probabilities[topLanguageIdx]));
+  }
+
+  /**
+   * A trial of {@link #detectBlockInParallel(ExtractedRowIds)}, which is re-used across the inputs
+   * together with its random number generator and its probabilities, so that a detection with the
+   * parallel trials does not allocate besides its result either. Each trial is joined before the
+   * next input of the detector prepares it again.
+   */
+  private final class ParallelTrial extends ForkJoinTask<float[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Random random;
+    private final float[] probabilities;
+    private float[][] rows;
+    private ExtractedRowIds extractedRowIds;
+    private float weight;
+    private long trialSeed;
+
+    private ParallelTrial(final int numberOfLanguages) {
+      this.random = new Random();
+      this.probabilities = new float[numberOfLanguages];
+    }
+
+    private void prepare(
+        final float[][] rows, final ExtractedRowIds extractedRowIds, final int trialIdx) {
+      reinitialize();
+      this.rows = rows;
+      this.extractedRowIds = extractedRowIds;
+      this.trialSeed = SamplingSchedule.trialSeed(trialIdx);
+      if (fastSampling) {
+        this.weight = samplingSchedule.trialWeight(trialIdx);
+      } else {
+        // The same sequence as a new Random(trialSeed) would produce
+        this.random.setSeed(this.trialSeed);
+        this.weight = trialWeight(this.random);
+      }
+    }
+
+    @Override
+    public float[] getRawResult() {
+      return this.probabilities;
+    }
+
+    @Override
+    protected void setRawResult(final float[] probabilities) {}
+
+    @Override
+    protected boolean exec() {
+      runTrial(
+          this.rows,
+          this.extractedRowIds,
+          this.weight,
+          fastSampling ? null : this.random,
+          this.trialSeed,
+          this.probabilities);
+      return true;
+    }
+  }
 }
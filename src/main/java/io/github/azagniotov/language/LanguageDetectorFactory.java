@@ -50,6 +50,13 @@ class LanguageDetectorFactory {
   // between the word's frequency and the frequency of its N-grams.
   private final Map<String, float[]> languageCorporaProbabilities;
 
+  // Row ids of the n-grams in languageCorporaProbabilities, built once all profiles are added
+  private NGramIndex nGramIndex;
+
+  // The languages which use each script, or null until the first detector which prunes the
+  // candidate languages by script needs them, see getScriptLanguages()
+  private volatile ScriptLanguages scriptLanguages;
+
   private final int minNGramLength;
   private final int maxNGramLength;
 
@@ -75,6 +82,8 @@ class LanguageDetectorFactory {
         new LanguageDetectorFactory(languageDetectionSettings);
     languageDetectorFactory.model = languageDetectorFactory.loadModelParameters();
     languageDetectorFactory.addProfiles();
+    languageDetectorFactory.nGramIndex =
+        NGramIndex.of(languageDetectorFactory.languageCorporaProbabilities);
 
     return languageDetectorFactory;
   }
@@ -91,6 +100,30 @@ class LanguageDetectorFactory {
     return languageCorporaProbabilities;
   }
 
+  NGramIndex getNGramIndex() {
+    return nGramIndex;
+  }
+
+  /**
+   * @return the languages which use each script, which are built on the first call, since only the
+   *     script pruning and the unique script shortcut need them
+   */
+  ScriptLanguages getScriptLanguages() {
+    ScriptLanguages result = this.scriptLanguages;
+    if (result == null) {
+      synchronized (this) {
+        result = this.scriptLanguages;
+        if (result == null) {
+          result =
+              ScriptLanguages.of(
+                  this.languageCorporaProbabilities, this.supportedIsoCodes639_1.size());
+          this.scriptLanguages = result;
+        }
+      }
+    }
+    return result;
+  }
+
   int getMinNGramLength() {
     return minNGramLength;
   }
@@ -221,7 +254,8 @@ class LanguageDetectorFactory {
    *
    * <p>Initializes the singleton factory instance on the first call by loading and processing
    * language profiles and model parameters based on the provided settings. Subsequent calls reuse
-   * the cached factory data to configure new detector instances.
+   * the cached factory data to configure new detector instances. The model parameters of the
+   * cached factory are overridden by the ones of the given settings, see {@link ModelPreset}.
    *
    * <p><b>Threading Note:</b> The lazy initialization of the factory instance is not inherently
    * thread-safe for the very first concurrent calls. It relies on external synchronization or
@@ -242,10 +276,15 @@ class LanguageDetectorFactory {
       instance = LanguageDetectorFactory.fromSettings(languageDetectionSettings);
     }
     return new LanguageDetector(
-        instance.getModel(),
+        instance.getModel().withOverrides(languageDetectionSettings),
         instance.getSupportedIsoCodes639_1(),
-        instance.getLanguageCorporaProbabilities(),
+        instance.getNGramIndex(),
+        languageDetectionSettings.isScriptPruning()
+                || languageDetectionSettings.isUniqueScriptShortcut()
+            ? instance.getScriptLanguages()
+            : null,
         instance.getMinNGramLength(),
-        instance.getMaxNGramLength());
+        instance.getMaxNGramLength(),
+        languageDetectionSettings);
   }
 }
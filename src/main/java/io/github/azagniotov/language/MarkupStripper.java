@@ -0,0 +1,433 @@
+package io.github.azagniotov.language;
+
+import static io.github.azagniotov.language.StringConstants.BLANK_CHAR;
+
+/**
+ * Strips HTML / XML markup from the input text in a single streaming pass, without building a DOM
+ * and without regular expressions, so that tag names, attributes and entities do not reach {@link
+ * NGram} as noise. Specifically:
+ *
+ * <ul>
+ *   <li>Tags, e.g.: {@code <div class="x">} or {@code </p>}, are replaced with a blank, including
+ *       any {@code >} within quoted attribute values. Blanks are not repeated, and there is no
+ *       leading blank.
+ *   <li>Comments, {@code <!DOCTYPE ...>} declarations and {@code <?...?>} processing instructions
+ *       are replaced with a blank too.
+ *   <li>The content of {@code <script>} and {@code <style>} elements is dropped altogether.
+ *   <li>Numeric character references, e.g.: {@code &#233;} or {@code &#xE9;}, and the common
+ *       named entities, e.g.: {@code &amp;} or {@code &eacute;}, are decoded. Anything else that
+ *       starts with an {@code &} is kept as-is.
+ *   <li>A {@code <} which does not start a tag, e.g.: {@code a < b}, is kept as-is. So is a tag
+ *       which is never closed, e.g.: {@code if x<y then}, rather than swallowing the rest of the
+ *       input.
+ * </ul>
+ *
+ * <p>Markdown and wiki markup consist mostly of punctuation, which is filtered out downstream by
+ * the non-word char filter of {@link InputNormalizer}, therefore it needs no special treatment.
+ *
+ * <p>Since the markup does not count towards the text, stripping runs over the whole input and
+ * stops once the requested number of text chars have been produced, i.e.: the truncation applies
+ * to the stripped text.
+ *
+ * <p>The stripped text is written into a re-usable buffer, which is exposed as a {@link
+ * CharSequence}. Instances are not thread-safe.
+ */
+final class MarkupStripper implements CharSequence {
+
+  private static final int INITIAL_CAPACITY = 256;
+  private static final int MAX_ENTITY_NAME_LENGTH = 8;
+  private static final int MAX_NUMERIC_REFERENCE_DIGITS = 8;
+
+  private static final String SCRIPT_TAG_NAME = "script";
+  private static final String STYLE_TAG_NAME = "style";
+
+  // Named entities sorted by name (in String#compareTo order) for a binary search,
+  // together with the code points they stand for at the same positions.
+  private static final String[] ENTITY_NAMES;
+  private static final int[] ENTITY_CODE_POINTS;
+
+  static {
+    // The ISO 8859-1 entities, which stand for the code points U+00A0..U+00FF in this order
+    final String[] latin1EntityNames = {
+      "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect", "uml", "copy", "ordf",
+      "laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3", "acute", "micro",
+      "para", "middot", "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest",
+      "Agrave", "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave",
+      "Eacute", "Ecirc", "Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde", "Ograve",
+      "Oacute", "Ocirc", "Otilde", "Ouml", "times", "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml",
+      "Yacute", "THORN", "szlig", "agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig",
+      "ccedil", "egrave", "eacute", "ecirc", "euml", "igrave", "iacute", "icirc", "iuml", "eth",
+      "ntilde", "ograve", "oacute", "ocirc", "otilde", "ouml", "divide", "oslash", "ugrave",
+      "uacute", "ucirc", "uuml", "yacute", "thorn", "yuml"
+    };
+    final String[] otherEntityNames = {
+      "amp", "lt", "gt", "quot", "apos", "OElig", "oelig", "Scaron", "scaron", "Yuml", "ndash",
+      "mdash", "lsquo", "rsquo", "sbquo", "ldquo", "rdquo", "bdquo", "bull", "hellip", "euro",
+      "trade"
+    };
+    final int[] otherEntityCodePoints = {
+      '&', '<', '>', '"', '\'', 0x152, 0x153, 0x160, 0x161, 0x178, 0x2013, 0x2014, 0x2018, 0x2019,
+      0x201A, 0x201C, 0x201D, 0x201E, 0x2022, 0x2026, 0x20AC, 0x2122
+    };
+
+    final int total = latin1EntityNames.length + otherEntityNames.length;
+    final String[] names = new String[total];
+    final int[] codePoints = new int[total];
+    for (int idx = 0; idx < latin1EntityNames.length; idx++) {
+      names[idx] = latin1EntityNames[idx];
+      codePoints[idx] = 0xA0 + idx;
+    }
+    for (int idx = 0; idx < otherEntityNames.length; idx++) {
+      names[latin1EntityNames.length + idx] = otherEntityNames[idx];
+      codePoints[latin1EntityNames.length + idx] = otherEntityCodePoints[idx];
+    }
+
+    // Insertion sort of both arrays by name, it runs only once for ~120 entries
+    for (int idx = 1; idx < total; idx++) {
+      final String name = names[idx];
+      final int codePoint = codePoints[idx];
+      int position = idx - 1;
+      while (position >= 0 && names[position].compareTo(name) > 0) {
+        names[position + 1] = names[position];
+        codePoints[position + 1] = codePoints[position];
+        position--;
+      }
+      names[position + 1] = name;
+      codePoints[position + 1] = codePoint;
+    }
+    ENTITY_NAMES = names;
+    ENTITY_CODE_POINTS = codePoints;
+  }
+
+  private char[] strippedChars;
+  private int length;
+
+  MarkupStripper() {
+    this.strippedChars = new char[INITIAL_CAPACITY];
+  }
+
+  /** Strips the markup from the whole input, see the class documentation for details. */
+  static String stripMarkup(final String input) {
+    final MarkupStripper markupStripper = new MarkupStripper();
+    markupStripper.strip(input, input.length(), Integer.MAX_VALUE);
+    return markupStripper.toString();
+  }
+
+  /**
+   * Strips the markup from the given input into the internal buffer, replacing its previous
+   * content.
+   *
+   * @param input the raw input text
+   * @param end exclusive end position within the input
+   * @param maxChars the maximum number of chars of stripped text to produce
+   */
+  void strip(final CharSequence input, final int end, final int maxChars) {
+    this.length = 0;
+
+    // The position of the next '>', so that a '<' in plain text, which has no '>' after it,
+    // does not scan the rest of the input for one every time
+    int nextTagCloseIdx = -1;
+    int idx = 0;
+    while (idx < end && this.length < maxChars) {
+      final char currentChar = input.charAt(idx);
+      if (currentChar == '<') {
+        if (nextTagCloseIdx < idx) {
+          nextTagCloseIdx = indexOf(input, idx, end, ">");
+          if (nextTagCloseIdx == -1) {
+            nextTagCloseIdx = end;
+          }
+        }
+        // Without a '>' further on, only an unterminated comment can start here
+        final int markupLength =
+            nextTagCloseIdx < end || regionMatches(input, idx + 1, end, "!--")
+                ? markupLengthAt(input, idx, end)
+                : 0;
+        if (markupLength > 0) {
+          // Separates the words around the markup, unless they already are
+          if (this.length > 0 && this.strippedChars[this.length - 1] != BLANK_CHAR) {
+            append(BLANK_CHAR);
+          }
+          idx += markupLength;
+          continue;
+        }
+      } else if (currentChar == '&') {
+        final int referenceLength = characterReferenceLengthAt(input, idx, end);
+        if (referenceLength > 0) {
+          final int codePoint = decodeCharacterReference(input, idx, referenceLength);
+          if (Character.isBmpCodePoint(codePoint)) {
+            append((char) codePoint);
+          } else {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+          }
+          idx += referenceLength;
+          continue;
+        }
+      }
+      append(currentChar);
+      idx++;
+    }
+  }
+
+  @Override
+  public int length() {
+    return length;
+  }
+
+  @Override
+  public char charAt(final int index) {
+    return strippedChars[index];
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end) {
+    return new String(strippedChars, start, end - start);
+  }
+
+  @Override
+  public String toString() {
+    return new String(strippedChars, 0, length);
+  }
+
+  private void append(final char currentChar) {
+    if (this.length == this.strippedChars.length) {
+      final char[] grown = new char[this.strippedChars.length * 2];
+      System.arraycopy(this.strippedChars, 0, grown, 0, this.length);
+      this.strippedChars = grown;
+    }
+    this.strippedChars[this.length++] = currentChar;
+  }
+
+  /**
+   * @return the length of the markup (including the content of a script / style element) which
+   *     starts at the given '&lt;', or zero if the '&lt;' does not start any markup
+   */
+  static int markupLengthAt(final CharSequence input, final int start, final int end) {
+    if (start + 1 >= end) {
+      return 0;
+    }
+
+    final char next = input.charAt(start + 1);
+    if (next == '!') {
+      if (regionMatches(input, start + 2, end, "--")) {
+        final int commentEnd = indexOf(input, start + 4, end, "-->");
+        return (commentEnd == -1 ? end : commentEnd + 3) - start;
+      }
+      return tagLengthAt(input, start, end);
+    } else if (next == '?') {
+      return tagLengthAt(input, start, end);
+    } else if (next == '/') {
+      if (start + 2 < end && isAsciiLetter(input.charAt(start + 2))) {
+        return tagLengthAt(input, start, end);
+      }
+      return 0;
+    } else if (isAsciiLetter(next)) {
+      final int tagLength = tagLengthAt(input, start, end);
+      if (tagLength == 0) {
+        return 0;
+      }
+      final String rawTextTagName = rawTextTagNameAt(input, start + 1, end);
+      if (rawTextTagName == null || input.charAt(start + tagLength - 2) == '/') {
+        return tagLength;
+      }
+
+      // Skips the content of a script / style element, up to and including its end tag
+      int searchFrom = start + tagLength;
+      while (true) {
+        final int endTagStart = indexOf(input, searchFrom, end, "</");
+        if (endTagStart == -1) {
+          return end - start;
+        }
+        if (regionMatchesIgnoreCase(input, endTagStart + 2, end, rawTextTagName)) {
+          final int endTagLength = tagLengthAt(input, endTagStart, end);
+          return (endTagLength == 0 ? end : endTagStart + endTagLength) - start;
+        }
+        searchFrom = endTagStart + 2;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return the length of the tag which starts at the given '&lt;', up to and including the closing
+   *     '&gt;' outside of quoted attribute values, or zero when the tag is not closed, e.g.: {@code
+   *     if x<y then}, since then the '&lt;' is far more likely to be a part of the text
+   */
+  private static int tagLengthAt(final CharSequence input, final int start, final int end) {
+    char quote = 0;
+    for (int idx = start + 1; idx < end; idx++) {
+      final char currentChar = input.charAt(idx);
+      if (quote != 0) {
+        if (currentChar == quote) {
+          quote = 0;
+        }
+      } else if (currentChar == '"' || currentChar == '\'') {
+        quote = currentChar;
+      } else if (currentChar == '>') {
+        return idx + 1 - start;
+      }
+    }
+    return 0;
+  }
+
+  private static String rawTextTagNameAt(final CharSequence input, final int start, final int end) {
+    if (isTagName(input, start, end, SCRIPT_TAG_NAME)) {
+      return SCRIPT_TAG_NAME;
+    } else if (isTagName(input, start, end, STYLE_TAG_NAME)) {
+      return STYLE_TAG_NAME;
+    }
+    return null;
+  }
+
+  private static boolean isTagName(
+      final CharSequence input, final int start, final int end, final String tagName) {
+    if (!regionMatchesIgnoreCase(input, start, end, tagName)) {
+      return false;
+    }
+    final int nameEnd = start + tagName.length();
+    if (nameEnd == end) {
+      return true;
+    }
+    final char next = input.charAt(nameEnd);
+    return next == '>' || next == '/' || Character.isWhitespace(next);
+  }
+
+  /**
+   * @return the length of the character reference (e.g.: &amp;amp; or &amp;#233;) which starts at
+   *     the given '&amp;', or zero if there is no valid one
+   */
+  static int characterReferenceLengthAt(final CharSequence input, final int start, final int end) {
+    int idx = start + 1;
+    if (idx < end && input.charAt(idx) == '#') {
+      idx++;
+      final boolean hex = idx < end && (input.charAt(idx) == 'x' || input.charAt(idx) == 'X');
+      if (hex) {
+        idx++;
+      }
+      final int digitsStart = idx;
+      int codePoint = 0;
+      while (idx < end && idx - digitsStart < MAX_NUMERIC_REFERENCE_DIGITS) {
+        final int digit = Character.digit(input.charAt(idx), hex ? 16 : 10);
+        if (digit < 0 || input.charAt(idx) > 'z') {
+          break;
+        }
+        codePoint = codePoint * (hex ? 16 : 10) + digit;
+        idx++;
+      }
+      if (idx == digitsStart || idx >= end || input.charAt(idx) != ';') {
+        return 0;
+      }
+      // Eight hex digits may overflow into a negative value
+      if (codePoint <= 0
+          || codePoint > Character.MAX_CODE_POINT
+          || Character.getType(codePoint) == Character.SURROGATE) {
+        return 0;
+      }
+      return idx + 1 - start;
+    }
+
+    final int nameStart = idx;
+    while (idx < end
+        && idx - nameStart < MAX_ENTITY_NAME_LENGTH
+        && isAsciiLetterOrDigit(input.charAt(idx))) {
+      idx++;
+    }
+    if (idx == nameStart || idx >= end || input.charAt(idx) != ';') {
+      return 0;
+    }
+    return entityIndexOf(input, nameStart, idx) < 0 ? 0 : idx + 1 - start;
+  }
+
+  private static int decodeCharacterReference(
+      final CharSequence input, final int start, final int referenceLength) {
+    final int nameEnd = start + referenceLength - 1;
+    if (input.charAt(start + 1) == '#') {
+      final boolean hex = input.charAt(start + 2) == 'x' || input.charAt(start + 2) == 'X';
+      int codePoint = 0;
+      for (int idx = start + (hex ? 3 : 2); idx < nameEnd; idx++) {
+        codePoint = codePoint * (hex ? 16 : 10) + Character.digit(input.charAt(idx), hex ? 16 : 10);
+      }
+      return codePoint;
+    }
+    return ENTITY_CODE_POINTS[entityIndexOf(input, start + 1, nameEnd)];
+  }
+
+  private static int entityIndexOf(final CharSequence input, final int start, final int end) {
+    int low = 0;
+    int high = ENTITY_NAMES.length - 1;
+    while (low <= high) {
+      final int middle = (low + high) >>> 1;
+      final int comparison = compare(ENTITY_NAMES[middle], input, start, end);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  // Same ordering as String#compareTo, without creating a String out of the input region
+  private static int compare(
+      final String name, final CharSequence input, final int start, final int end) {
+    final int regionLength = end - start;
+    final int commonLength = Math.min(name.length(), regionLength);
+    for (int idx = 0; idx < commonLength; idx++) {
+      final int difference = name.charAt(idx) - input.charAt(start + idx);
+      if (difference != 0) {
+        return difference;
+      }
+    }
+    return name.length() - regionLength;
+  }
+
+  private static int indexOf(
+      final CharSequence input, final int start, final int end, final String target) {
+    for (int idx = start; idx + target.length() <= end; idx++) {
+      if (regionMatches(input, idx, end, target)) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  private static boolean regionMatches(
+      final CharSequence input, final int start, final int end, final String target) {
+    if (start + target.length() > end) {
+      return false;
+    }
+    for (int idx = 0; idx < target.length(); idx++) {
+      if (input.charAt(start + idx) != target.charAt(idx)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // The target is expected to be in lower case
+  private static boolean regionMatchesIgnoreCase(
+      final CharSequence input, final int start, final int end, final String target) {
+    if (start + target.length() > end) {
+      return false;
+    }
+    for (int idx = 0; idx < target.length(); idx++) {
+      final char currentChar = input.charAt(start + idx);
+      final char lowerCaseChar =
+          currentChar >= 'A' && currentChar <= 'Z' ? (char) (currentChar + 32) : currentChar;
+      if (lowerCaseChar != target.charAt(idx)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isAsciiLetter(final char currentChar) {
+    return (currentChar >= 'a' && currentChar <= 'z') || (currentChar >= 'A' && currentChar <= 'Z');
+  }
+
+  private static boolean isAsciiLetterOrDigit(final char currentChar) {
+    return isAsciiLetter(currentChar) || (currentChar >= '0' && currentChar <= '9');
+  }
+}
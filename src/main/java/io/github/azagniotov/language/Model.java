@@ -13,6 +13,10 @@ class Model {
 
   private static final Gson GSON = new GsonBuilder().create();
 
+  // The Gaussian variation of alpha never takes the smoothing of a trial below this fraction of
+  // alpha, which keeps the trial weights positive when alpha is close to (or below) alphaWidth
+  private static final double MIN_TRIAL_ALPHA_FRACTION = 0.1;
+
   private final int baseFrequency;
   private final int iterationLimit;
   private final int numberOfTrials;
@@ -59,6 +63,38 @@ class Model {
     return convergenceThreshold;
   }
 
+  /**
+   * @param gaussian a standard normal deviate, which varies the alpha smoothing of a trial
+   * @return alpha varied by the given deviate times alphaWidth, but at least a tenth of alpha
+   */
+  float trialAlpha(final double gaussian) {
+    return (float) Math.max(alpha + gaussian * alphaWidth, alpha * MIN_TRIAL_ALPHA_FRACTION);
+  }
+
+  /**
+   * @param settings the settings, which may override some of the parameters, see {@link
+   *     ModelPreset}
+   * @return this model, or a copy of it with the parameters overridden by the given settings
+   */
+  Model withOverrides(final LanguageDetectionSettings settings) {
+    if (settings.getModelBaseFrequency() == 0
+        && settings.getModelIterationLimit() == 0
+        && settings.getModelNumberOfTrials() == 0
+        && settings.getModelAlpha() == 0.0
+        && settings.getModelConvergenceThreshold() == 0.0) {
+      return this;
+    }
+    return new Model(
+        settings.getModelBaseFrequency() > 0 ? settings.getModelBaseFrequency() : baseFrequency,
+        settings.getModelIterationLimit() > 0 ? settings.getModelIterationLimit() : iterationLimit,
+        settings.getModelNumberOfTrials() > 0 ? settings.getModelNumberOfTrials() : numberOfTrials,
+        settings.getModelAlpha() > 0.0 ? (float) settings.getModelAlpha() : alpha,
+        alphaWidth,
+        settings.getModelConvergenceThreshold() > 0.0
+            ? (float) settings.getModelConvergenceThreshold()
+            : convergenceThreshold);
+  }
+
   static Model fromJsonOrEnv(final InputStream inputStream) throws IOException {
     try (final InputStreamReader inputStreamReader = new InputStreamReader(inputStream)) {
 
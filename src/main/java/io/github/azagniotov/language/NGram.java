@@ -69,9 +69,9 @@ class NGram {
           IDEOGRAPHIC_SYMBOLS_AND_PUNCTUATION,
           SUPPLEMENTAL_PUNCTUATION);
 
-  private static final int UNIGRAM_SIZE = 1;
-  private static final int BIGRAM_SIZE = 2;
-  private static final int TRIGRAM_SIZE = 3;
+  static final int UNIGRAM_SIZE = 1;
+  static final int BIGRAM_SIZE = 2;
+  static final int TRIGRAM_SIZE = 3;
 
   // Groups of visually similar or related CJK characters
   // mapped to a single representative for normalization
@@ -388,34 +388,102 @@ class NGram {
     final List<String> extractedNWords = new ArrayList<>(projectedTotalNGrams);
 
     for (int idx = 0; idx < input.length(); ++idx) {
-      char currentChar = input.charAt(idx);
-      addChar(currentChar);
-
-      // Check capital word state: skip if last two characters were upper case
-      // This check was moved here from the .get(..) method which makes it more
-      // explicit and avoids returning an empty String, which incurrs a check
-      // by the below word.isEmpty()
-      if (this.capitalWord) {
+      addChar(input.charAt(idx));
+      collectNGrams(allowlist, extractedNWords);
+    }
+
+    return extractedNWords;
+  }
+
+  /**
+   * Extracts the n-grams from chars which have already been normalized by {@link InputNormalizer},
+   * i.e.: the same way as {@link #extractNGrams(Set)} does for a raw input, minus the per-char
+   * normalization, but resolves each n-gram straight to its row id in the given index without
+   * creating a {@link String}. Only the n-grams from {@code minNGramLength} to {@code
+   * maxNGramLength} chars are extracted. N-grams which are not in the index are skipped, and the
+   * order of the extracted n-grams is preserved. The state of this instance is reset first, so that
+   * it can be re-used across inputs.
+   *
+   * @param normalizedChars buffer holding the normalized chars
+   * @param length the number of normalized chars in the buffer
+   * @param index the index of the n-grams known to the language profiles
+   * @param extractedNGrams the destination of the row ids, which has been reset for this input
+   */
+  void collectAllRowIds(
+      final char[] normalizedChars,
+      final int length,
+      final NGramIndex index,
+      final ExtractedRowIds extractedNGrams) {
+    this.lastChar = BLANK_CHAR;
+    this.capitalWord = false;
+    resetBuffer();
+
+    for (int idx = 0; idx < length; ++idx) {
+      addNormalizedChar(normalizedChars[idx]);
+      collectRowIds(index, extractedNGrams);
+    }
+  }
+
+  private void collectRowIds(final NGramIndex index, final ExtractedRowIds extractedNGrams) {
+    // Same capital word rule as in collectNGrams(..)
+    if (this.capitalWord) {
+      return;
+    }
+
+    if (this.minNGramLength <= UNIGRAM_SIZE && this.lastChar != BLANK_CHAR) {
+      offerRowId(index.rowIdOf(NGramIndex.pack(this.lastChar)), extractedNGrams);
+    }
+
+    final int len = this.circularBufferTotalElements;
+    if (this.minNGramLength <= BIGRAM_SIZE
+        && this.maxNGramLength >= BIGRAM_SIZE
+        && len >= BIGRAM_SIZE) {
+      final int startOffset = previousOffset(BIGRAM_SIZE);
+      final long packedNGram =
+          NGramIndex.pack(
+              circularBuffer[startOffset], circularBuffer[(startOffset + 1) % circularBufferSize]);
+      offerRowId(index.rowIdOf(packedNGram), extractedNGrams);
+    }
+    if (this.maxNGramLength >= TRIGRAM_SIZE && len >= TRIGRAM_SIZE) {
+      final int startOffset = previousOffset(TRIGRAM_SIZE);
+      final long packedNGram =
+          NGramIndex.pack(
+              circularBuffer[startOffset],
+              circularBuffer[(startOffset + 1) % circularBufferSize],
+              circularBuffer[(startOffset + 2) % circularBufferSize]);
+      offerRowId(index.rowIdOf(packedNGram), extractedNGrams);
+    }
+  }
+
+  private static void offerRowId(final int rowId, final ExtractedRowIds extractedNGrams) {
+    if (rowId != NGramIndex.ABSENT) {
+      extractedNGrams.offer(rowId);
+    }
+  }
+
+  private void collectNGrams(final Set<String> allowlist, final List<String> extractedNWords) {
+    // Check capital word state: skip if last two characters were upper case
+    // This check was moved here from the .get(..) method which makes it more
+    // explicit and avoids returning an empty String, which incurrs a check
+    // by the below word.isEmpty()
+    if (this.capitalWord) {
+      return;
+    }
+
+    for (int n = this.minNGramLength; n <= this.maxNGramLength; ++n) {
+      final String word = get(n);
+      if (word.isEmpty()) {
         continue;
       }
 
-      for (int n = this.minNGramLength; n <= this.maxNGramLength; ++n) {
-        final String word = get(n);
-        if (word.isEmpty()) {
-          continue;
-        }
-
-        // TODO: Investigate using a data structure like a Trie for the allowlist.
-        //  This would allow checking for n-gram validity directly character by
-        //  character from the circularBuffer without creating the intermediate
-        //  String unless a potential match is found in the Trie.
-        if (allowlist.contains(word) || allowlist.isEmpty()) {
-          extractedNWords.add(word);
-        }
+      // TODO: Investigate using a data structure like a Trie for the allowlist.
+      //  This would allow checking for n-gram validity directly character by
+      //  character from the circularBuffer without creating the intermediate
+      //  String unless a potential match is found in the Trie.
+      if (allowlist.contains(word) || allowlist.isEmpty()) {
+        extractedNWords.add(word);
       }
     }
-
-    return extractedNWords;
   }
 
   /**
@@ -506,9 +574,11 @@ class NGram {
    * @param currentChar The character to be processed and added to the circular buffer. This
    *     character is normalized before processing.
    */
-  void addChar(char currentChar) {
-    currentChar = normalize(currentChar);
+  void addChar(final char currentChar) {
+    addNormalizedChar(normalize(currentChar));
+  }
 
+  private void addNormalizedChar(final char currentChar) {
     final boolean lastCharWasBlank = (this.lastChar == BLANK_CHAR);
     final boolean currentCharIsBlank = (currentChar == BLANK_CHAR);
     final boolean appendCurrentChar = !(lastCharWasBlank && currentCharIsBlank);
@@ -0,0 +1,177 @@
+package io.github.azagniotov.language;
+
+import java.util.Arrays;
+
+/**
+ * A re-usable histogram of the row ids (see {@link NGramIndex}) of the n-grams extracted from an
+ * input, i.e.: each distinct n-gram together with the number of its occurrences, in the order of
+ * their first occurrence.
+ *
+ * <p>Unlike {@link ExtractedNGrams}, which keeps every occurrence, the memory footprint of the
+ * histogram is bounded by the number of the distinct n-grams, which is much smaller than the
+ * number of the occurrences for long and repetitive inputs, e.g.: product catalogs, templated
+ * e-mails and logs. The exact Naive Bayes computation sums the counts directly, while the
+ * stochastic one samples the occurrences through {@link #rowIdAt(int)}, with the probability of a
+ * distinct n-gram proportional to its count, once {@link #prepareSampling()} has been called.
+ *
+ * <p>The counters are kept in an open addressing (linear probing) hash table of the row ids. The
+ * table is not cleared between the inputs: a slot is occupied only if it is stamped with the
+ * generation of the current input, so that a short input does not pay for clearing the table
+ * after a long one.
+ *
+ * <p>Instances are not thread-safe, since they hold the re-usable buffers. However, once {@link
+ * #prepareSampling()} has returned, {@link #rowIdAt(int)} only reads them, so the parallel trials
+ * can sample the same histogram.
+ */
+final class NGramHistogram implements ExtractedRowIds {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int GOLDEN_RATIO_32 = 0x9E3779B9;
+
+  // The hash table, where each slot holds an index into the distinct row ids
+  private int[] slotIndexes;
+  private int[] slotGenerations;
+  private int shift;
+  private int mask;
+  private int generation;
+
+  // The distinct row ids, their counts, and the cumulative counts for the sampling
+  private int[] rowIds;
+  private int[] counts;
+  private int[] cumulativeCounts;
+  private int distinctSize;
+  private int totalCount;
+
+  NGramHistogram() {
+    this.rowIds = new int[INITIAL_CAPACITY / 2];
+    this.counts = new int[INITIAL_CAPACITY / 2];
+    this.cumulativeCounts = new int[INITIAL_CAPACITY / 2];
+    allocateTable(INITIAL_CAPACITY);
+  }
+
+  /** Clears the histogram before the extraction of the n-grams from a new input. */
+  void reset() {
+    this.distinctSize = 0;
+    this.totalCount = 0;
+    if (++this.generation == 0) {
+      // The generation wrapped around, therefore the stale stamps must be cleared once
+      Arrays.fill(this.slotGenerations, 0);
+      this.generation = 1;
+    }
+  }
+
+  @Override
+  public void offer(final int rowId) {
+    int slot = slotOf(rowId);
+    while (this.slotGenerations[slot] == this.generation) {
+      final int distinctIdx = this.slotIndexes[slot];
+      if (this.rowIds[distinctIdx] == rowId) {
+        this.counts[distinctIdx]++;
+        this.totalCount++;
+        return;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+
+    if (this.distinctSize == this.rowIds.length) {
+      grow();
+      slot = slotOf(rowId);
+      while (this.slotGenerations[slot] == this.generation) {
+        slot = (slot + 1) & this.mask;
+      }
+    }
+    this.slotGenerations[slot] = this.generation;
+    this.slotIndexes[slot] = this.distinctSize;
+    this.rowIds[this.distinctSize] = rowId;
+    this.counts[this.distinctSize] = 1;
+    this.distinctSize++;
+    this.totalCount++;
+  }
+
+  /** @return the total number of the n-gram occurrences */
+  @Override
+  public int size() {
+    return totalCount;
+  }
+
+  /**
+   * Computes the cumulative counts, which {@link #rowIdAt(int)} samples the occurrences with. It
+   * must be called after the last n-gram of an input has been offered, and before the sampling,
+   * on the thread which extracted the n-grams.
+   */
+  void prepareSampling() {
+    int cumulativeCount = 0;
+    for (int distinctIdx = 0; distinctIdx < this.distinctSize; distinctIdx++) {
+      cumulativeCount += this.counts[distinctIdx];
+      this.cumulativeCounts[distinctIdx] = cumulativeCount;
+    }
+  }
+
+  /**
+   * The occurrences are ordered by their distinct n-gram, in the order of the first occurrence of
+   * each distinct n-gram. Therefore, a uniformly random position picks a distinct n-gram with the
+   * probability proportional to its count. Requires {@link #prepareSampling()} to have been called
+   * after the last offered n-gram.
+   */
+  @Override
+  public int rowIdAt(final int position) {
+    // Finds the first distinct n-gram, whose cumulative count exceeds the position
+    int low = 0;
+    int high = this.distinctSize - 1;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (this.cumulativeCounts[middle] > position) {
+        high = middle;
+      } else {
+        low = middle + 1;
+      }
+    }
+    return this.rowIds[low];
+  }
+
+  /** @return the number of the distinct n-grams */
+  int distinctSize() {
+    return distinctSize;
+  }
+
+  /** @return the distinct row ids, in the order of their first occurrence */
+  int[] getRowIds() {
+    return rowIds;
+  }
+
+  /** @return the counts of the distinct row ids, in the same order as {@link #getRowIds()} */
+  int[] getCounts() {
+    return counts;
+  }
+
+  private void grow() {
+    final int distinctCapacity = this.rowIds.length * 2;
+    this.rowIds = Arrays.copyOf(this.rowIds, distinctCapacity);
+    this.counts = Arrays.copyOf(this.counts, distinctCapacity);
+    this.cumulativeCounts = new int[distinctCapacity];
+
+    // Keeps the load factor at or below 0.5
+    allocateTable(distinctCapacity * 2);
+    this.generation = 1;
+    for (int distinctIdx = 0; distinctIdx < this.distinctSize; distinctIdx++) {
+      int slot = slotOf(this.rowIds[distinctIdx]);
+      while (this.slotGenerations[slot] == this.generation) {
+        slot = (slot + 1) & this.mask;
+      }
+      this.slotGenerations[slot] = this.generation;
+      this.slotIndexes[slot] = distinctIdx;
+    }
+  }
+
+  private void allocateTable(final int capacity) {
+    this.slotIndexes = new int[capacity];
+    this.slotGenerations = new int[capacity];
+    this.shift = Integer.numberOfLeadingZeros(capacity - 1);
+    this.mask = capacity - 1;
+  }
+
+  private int slotOf(final int rowId) {
+    // Fibonacci hashing, which spreads the consecutive row ids over the whole table
+    return (rowId * GOLDEN_RATIO_32) >>> this.shift;
+  }
+}
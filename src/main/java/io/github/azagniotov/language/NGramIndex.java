@@ -0,0 +1,262 @@
+package io.github.azagniotov.language;
+
+import java.util.Map;
+
+/**
+ * Maps the n-grams of the language profiles to dense integer row ids, so that the n-grams
+ * extracted from an input can be resolved to their per-language probabilities with a single lookup
+ * and without creating {@link String} instances.
+ *
+ * <p>An n-gram of up to {@link NGram#TRIGRAM_SIZE} chars is packed into a {@code long} key: its
+ * length in the upper 16 bits, followed by its chars, 16 bits each. Since the length of a packed
+ * n-gram is never zero, a zero key marks an empty slot of the open addressing (linear probing)
+ * hash table. Profile n-grams longer than {@link NGram#TRIGRAM_SIZE} chars are never produced by
+ * the n-gram extraction, therefore they are not indexed.
+ *
+ * <p>Besides the dense per-language probabilities of each n-gram, the index can provide their
+ * sparse form: the indexes of the languages whose probability of the n-gram is non-zero, along with
+ * those probabilities. Most n-grams appear in a few languages only, see {@link
+ * LanguageDetectionSettings.Builder#withSparseScoring()}. Since only the sparse scoring and the
+ * candidate shortlist read the sparse form and the n-gram lengths, they are built on their first
+ * use, see {@link #prepareSparseRows()}.
+ *
+ * <p>Instances are immutable once built, apart from the sparse rows built on their first use, and
+ * can be shared across threads.
+ */
+final class NGramIndex {
+
+  static final int ABSENT = -1;
+
+  // Keeps the load factor at or below 0.5
+  private static final int MIN_EMPTY_SLOTS_RATIO = 2;
+  private static final long GOLDEN_RATIO_64 = 0x9E3779B97F4A7C15L;
+
+  private final long[] keys;
+  private final int[] rowIds;
+  private final int shift;
+  private final int mask;
+
+  // The per-language probabilities of each indexed n-gram, by row id
+  private final float[][] rows;
+
+  // The sparse form of the rows and the n-gram lengths, or null until their first use
+  private volatile SparseRows sparseRows;
+
+  private NGramIndex(final int capacity, final int size) {
+    this.keys = new long[capacity];
+    this.rowIds = new int[capacity];
+    this.shift = Long.numberOfLeadingZeros(capacity - 1);
+    this.mask = capacity - 1;
+    this.rows = new float[size][];
+  }
+
+  /**
+   * Builds an index of the given n-gram probabilities.
+   *
+   * @param languageCorporaProbabilities n-grams mapped to their per-language probabilities
+   * @return the index, where row ids are assigned in the iteration order of the given map
+   */
+  static NGramIndex of(final Map<String, float[]> languageCorporaProbabilities) {
+    int size = 0;
+    for (final String nGram : languageCorporaProbabilities.keySet()) {
+      if (isIndexable(nGram)) {
+        size++;
+      }
+    }
+
+    int capacity = 2;
+    while (capacity < size * MIN_EMPTY_SLOTS_RATIO) {
+      capacity <<= 1;
+    }
+
+    final NGramIndex index = new NGramIndex(capacity, size);
+    int rowId = 0;
+    for (final Map.Entry<String, float[]> entry : languageCorporaProbabilities.entrySet()) {
+      final String nGram = entry.getKey();
+      if (isIndexable(nGram)) {
+        index.put(pack(nGram), rowId);
+        index.rows[rowId] = entry.getValue();
+        rowId++;
+      }
+    }
+    return index;
+  }
+
+  static long pack(final char first) {
+    return (1L << 48) | ((long) first << 32);
+  }
+
+  static long pack(final char first, final char second) {
+    return (2L << 48) | ((long) first << 32) | ((long) second << 16);
+  }
+
+  static long pack(final char first, final char second, final char third) {
+    return (3L << 48) | ((long) first << 32) | ((long) second << 16) | third;
+  }
+
+  /**
+   * @param packedNGram an n-gram packed by one of the {@code pack} methods
+   * @return the row id of the n-gram, or {@link #ABSENT} if none of the profiles has it
+   */
+  int rowIdOf(final long packedNGram) {
+    int slot = slotOf(packedNGram);
+    while (true) {
+      final long key = this.keys[slot];
+      if (key == packedNGram) {
+        return this.rowIds[slot];
+      } else if (key == 0L) {
+        return ABSENT;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+  }
+
+  /**
+   * @param nGram an n-gram
+   * @return the row id of the n-gram, or {@link #ABSENT} if none of the profiles has it
+   */
+  int rowIdOf(final String nGram) {
+    if (!isIndexable(nGram)) {
+      return ABSENT;
+    }
+    return rowIdOf(pack(nGram));
+  }
+
+  /**
+   * @return the per-language probabilities of each indexed n-gram, by row id. Callers must not
+   *     modify the returned arrays.
+   */
+  float[][] getRows() {
+    return rows;
+  }
+
+  /**
+   * @return the indexes of the languages with a non-zero probability of each indexed n-gram, in
+   *     ascending order, by row id. Callers must not modify the returned arrays.
+   */
+  int[][] getNonZeroLanguages() {
+    return sparseRows().nonZeroLanguages;
+  }
+
+  /**
+   * @return the non-zero probabilities of each indexed n-gram, in the order of {@link
+   *     #getNonZeroLanguages()}, by row id. Callers must not modify the returned arrays.
+   */
+  float[][] getNonZeroProbabilities() {
+    return sparseRows().nonZeroProbabilities;
+  }
+
+  /**
+   * @param rowId the row id of an indexed n-gram
+   * @return the length of the n-gram, from {@link NGram#UNIGRAM_SIZE} to {@link
+   *     NGram#TRIGRAM_SIZE}
+   */
+  int nGramLengthOf(final int rowId) {
+    return sparseRows().nGramLengths[rowId];
+  }
+
+  int size() {
+    return rows.length;
+  }
+
+  /**
+   * Builds the sparse form of the rows and the n-gram lengths, unless they have been built already.
+   * The detectors which read them call it upfront, so that their first detection does not pay for
+   * building them.
+   */
+  void prepareSparseRows() {
+    sparseRows();
+  }
+
+  private SparseRows sparseRows() {
+    SparseRows result = this.sparseRows;
+    if (result == null) {
+      synchronized (this) {
+        result = this.sparseRows;
+        if (result == null) {
+          result = new SparseRows(this.keys, this.rowIds, this.rows);
+          this.sparseRows = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private void put(final long packedNGram, final int rowId) {
+    int slot = slotOf(packedNGram);
+    while (this.keys[slot] != 0L) {
+      slot = (slot + 1) & this.mask;
+    }
+    this.keys[slot] = packedNGram;
+    this.rowIds[slot] = rowId;
+  }
+
+  private int slotOf(final long packedNGram) {
+    // Fibonacci hashing, which spreads the mostly small char values over the whole table
+    return (int) ((packedNGram * GOLDEN_RATIO_64) >>> this.shift);
+  }
+
+  private static boolean isIndexable(final String nGram) {
+    return !nGram.isEmpty() && nGram.length() <= NGram.TRIGRAM_SIZE;
+  }
+
+  /** The sparse form of the rows of an index, and the lengths of its n-grams, by row id. */
+  private static final class SparseRows {
+
+    // The indexes of the languages with a non-zero probability of each indexed n-gram, in
+    // ascending order, and those probabilities
+    private final int[][] nonZeroLanguages;
+    private final float[][] nonZeroProbabilities;
+
+    // The length of each indexed n-gram
+    private final byte[] nGramLengths;
+
+    private SparseRows(final long[] keys, final int[] rowIds, final float[][] rows) {
+      this.nonZeroLanguages = new int[rows.length][];
+      this.nonZeroProbabilities = new float[rows.length][];
+      this.nGramLengths = new byte[rows.length];
+      for (int rowId = 0; rowId < rows.length; rowId++) {
+        putNonZeros(rowId, rows[rowId]);
+      }
+      for (int slot = 0; slot < keys.length; slot++) {
+        if (keys[slot] != 0L) {
+          // The length is in the upper 16 bits of a packed n-gram
+          this.nGramLengths[rowIds[slot]] = (byte) (keys[slot] >>> 48);
+        }
+      }
+    }
+
+    private void putNonZeros(final int rowId, final float[] probabilities) {
+      int nonZeroCount = 0;
+      for (final float probability : probabilities) {
+        if (probability != 0f) {
+          nonZeroCount++;
+        }
+      }
+
+      final int[] languages = new int[nonZeroCount];
+      final float[] nonZeros = new float[nonZeroCount];
+      int nonZeroIdx = 0;
+      for (int languageIdx = 0; languageIdx < probabilities.length; languageIdx++) {
+        if (probabilities[languageIdx] != 0f) {
+          languages[nonZeroIdx] = languageIdx;
+          nonZeros[nonZeroIdx] = probabilities[languageIdx];
+          nonZeroIdx++;
+        }
+      }
+      this.nonZeroLanguages[rowId] = languages;
+      this.nonZeroProbabilities[rowId] = nonZeros;
+    }
+  }
+
+  private static long pack(final String nGram) {
+    switch (nGram.length()) {
+      case NGram.UNIGRAM_SIZE:
+        return pack(nGram.charAt(0));
+      case NGram.BIGRAM_SIZE:
+        return pack(nGram.charAt(0), nGram.charAt(1));
+      default:
+        return pack(nGram.charAt(0), nGram.charAt(1), nGram.charAt(2));
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package io.github.azagniotov.language;
+
+/**
+ * The tight float loops of the stochastic Naive Bayes approximation over the probabilities of all
+ * the configured languages, see {@link LanguageDetector}.
+ *
+ * <p>The library ships a scalar implementation, see {@link ScalarProbabilityKernel}, and on Java
+ * 17 and above, an implementation with the incubating Vector API, which is used only when enabled
+ * through {@link LanguageDetectionSettings.Builder#withVectorKernel()} and when the {@code
+ * jdk.incubator.vector} module is available, see {@link ProbabilityKernels}.
+ *
+ * <p>Implementations must be stateless, and can be shared across threads.
+ */
+interface ProbabilityKernel {
+
+  /**
+   * Multiplies the probability of each language by the smoothing weight plus the probability of
+   * an n-gram in that language.
+   *
+   * @param probabilities the probabilities of the languages, which are updated
+   * @param wordProbabilities the probabilities of the n-gram in each language
+   * @param weight the smoothing weight
+   * @return the sum of the updated probabilities
+   */
+  float multiplyAndSum(float[] probabilities, float[] wordProbabilities, float weight);
+
+  /**
+   * Multiplies the probability of each language by the smoothing weight plus the probability of
+   * an n-gram in that language, like {@link #multiplyAndSum(float[], float[], float)} does, but
+   * without summing up the updated probabilities.
+   *
+   * @param probabilities the probabilities of the languages, which are updated
+   * @param wordProbabilities the probabilities of the n-gram in each language
+   * @param weight the smoothing weight
+   */
+  void multiply(float[] probabilities, float[] wordProbabilities, float weight);
+
+  /**
+   * Divides the probability of each language by the given sum.
+   *
+   * @param probabilities the probabilities of the languages, which are updated
+   * @param sum the sum of the probabilities, which must not be zero
+   * @return the maximum of the normalized probabilities
+   */
+  float normalizeAndReturnMax(float[] probabilities, float sum);
+}
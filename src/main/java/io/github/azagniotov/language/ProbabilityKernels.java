@@ -0,0 +1,22 @@
+package io.github.azagniotov.language;
+
+/**
+ * Picks the {@link ProbabilityKernel} of the running Java version.
+ *
+ * <p>This is the baseline for Java 11, which always picks the {@link ScalarProbabilityKernel}. The
+ * multi-release JAR of the library replaces this class on Java 17 and above with a version which
+ * picks the Vector API kernel, when the {@code jdk.incubator.vector} module is available. Either
+ * way, the detectors use it only when {@link LanguageDetectionSettings.Builder#withVectorKernel()}
+ * is enabled, and the {@link ScalarProbabilityKernel} otherwise.
+ */
+final class ProbabilityKernels {
+
+  private static final ProbabilityKernel BEST = ScalarProbabilityKernel.INSTANCE;
+
+  private ProbabilityKernels() {}
+
+  /** @return the fastest kernel which is available at runtime */
+  static ProbabilityKernel best() {
+    return BEST;
+  }
+}
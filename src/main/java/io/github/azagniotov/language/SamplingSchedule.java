@@ -0,0 +1,66 @@
+package io.github.azagniotov.language;
+
+import java.util.Random;
+
+/**
+ * The precomputed sampling schedule of the trials of the stochastic Naive Bayes approximation, see
+ * {@link LanguageDetectionSettings.Builder#withFastSampling()}.
+ *
+ * <p>By default, each detection seeds a {@link Random} with zero, and then draws from it the
+ * Gaussian alpha variation of each trial, interleaved with the indexes of the sampled n-grams.
+ * Since the seed is always the same, so are the alpha variations, which are therefore computed
+ * here once per detector. The index of the n-gram sampled at an iteration of a trial is a hash of
+ * the seed of the trial and of the iteration instead: a counter-based generator has no state to
+ * update, hence no atomic operations, and the trials do not depend on each other.
+ *
+ * <p>Instances are immutable and thread-safe.
+ */
+final class SamplingSchedule {
+
+  private final float[] trialWeights;
+
+  /**
+   * @param model the model parameters, i.e.: the number of the trials and the alpha smoothing
+   */
+  SamplingSchedule(final Model model) {
+    this.trialWeights = new float[model.getNumberOfTrials()];
+
+    final Random random = new Random(0L);
+    for (int trial = 0; trial < this.trialWeights.length; trial++) {
+      // The same smoothing weight as in LanguageDetector, computed once instead of per detection
+      final float alphaSmoothing = model.trialAlpha(random.nextGaussian());
+      this.trialWeights[trial] = alphaSmoothing / model.getBaseFrequency();
+    }
+  }
+
+  /**
+   * @param trial the index of a trial
+   * @return the smoothing weight of the given trial, i.e.: the varied alpha over the base frequency
+   */
+  float trialWeight(final int trial) {
+    return trialWeights[trial];
+  }
+
+  /**
+   * @param trial the index of a trial
+   * @return the seed of the given trial, scrambled by the {@link SplitMix64} finalizer, so that the
+   *     seeds of the consecutive trials are not correlated
+   */
+  static long trialSeed(final int trial) {
+    return SplitMix64.mix((trial + 1) * SplitMix64.GAMMA);
+  }
+
+  /**
+   * @param trialSeed the seed of a trial, see {@link #trialSeed(int)}
+   * @param iteration the iteration of the trial
+   * @param bound the number of the n-gram occurrences to sample from, must be positive
+   * @return the uniformly distributed index of the n-gram sampled at the given iteration, from zero
+   *     to the given bound exclusive
+   */
+  static int sampleIndex(final long trialSeed, final int iteration, final int bound) {
+    final long hash = SplitMix64.mix(trialSeed + (iteration + 1) * SplitMix64.GAMMA);
+
+    // Maps the upper 32 bits onto the bound with a multiplication instead of a division
+    return (int) (((hash >>> 32) * bound) >>> 32);
+  }
+}
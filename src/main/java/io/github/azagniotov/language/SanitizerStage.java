@@ -0,0 +1,27 @@
+package io.github.azagniotov.language;
+
+/**
+ * A stage of the input sanitization, which recognizes a piece of text that is irrelevant to the
+ * language detection (e.g.: a URL, an e-mail address) at a given position of the input.
+ *
+ * <p>The configured stages are not applied one after another, each producing a new string.
+ * Instead, the library fuses them into the single streaming pass which normalizes the input: at
+ * each position of the input, the stages are asked in their configured order, and the text
+ * recognized by the first matching stage is skipped. Therefore, a stage must not allocate, must not
+ * keep state between calls, and must not look at the chars at or beyond the given end position.
+ *
+ * <p>See {@link BuiltInSanitizerStage} for the stages which come with the library.
+ *
+ * @see LanguageDetectionSettings.Builder#withSanitizerStages(SanitizerStage...)
+ */
+public interface SanitizerStage {
+
+  /**
+   * @param input the input text
+   * @param start the position to match at, which is always less than the end position
+   * @param end the exclusive end position within the input, i.e.: the truncation point
+   * @return the number of chars to skip, starting at the given position, or zero if the stage does
+   *     not recognize anything at the given position
+   */
+  int removableLengthAt(CharSequence input, int start, int end);
+}
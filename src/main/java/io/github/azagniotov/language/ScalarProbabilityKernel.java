@@ -0,0 +1,42 @@
+package io.github.azagniotov.language;
+
+/** The scalar {@link ProbabilityKernel}, which is available on every Java version. */
+final class ScalarProbabilityKernel implements ProbabilityKernel {
+
+  static final ScalarProbabilityKernel INSTANCE = new ScalarProbabilityKernel();
+
+  private ScalarProbabilityKernel() {}
+
+  @Override
+  public float multiplyAndSum(
+      final float[] probabilities, final float[] wordProbabilities, final float weight) {
+    float probSum = 0.0f;
+    for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
+
+      // Multiplying the existing probability of a language by the probability of
+      // the n-gram appearing in that language. This aligns strongly with the
+      // multiplicative nature of Naive Bayes probability calculations.
+      probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+      probSum += probabilities[probIdx];
+    }
+    return probSum;
+  }
+
+  @Override
+  public void multiply(
+      final float[] probabilities, final float[] wordProbabilities, final float weight) {
+    for (int probIdx = 0; probIdx < probabilities.length; ++probIdx) {
+      probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+    }
+  }
+
+  @Override
+  public float normalizeAndReturnMax(final float[] probabilities, final float sum) {
+    float maxp = 0f;
+    for (int i = 0; i < probabilities.length; i++) {
+      probabilities[i] = probabilities[i] / sum;
+      maxp = Math.max(maxp, probabilities[i]);
+    }
+    return maxp;
+  }
+}
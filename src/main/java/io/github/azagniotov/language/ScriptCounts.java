@@ -0,0 +1,108 @@
+package io.github.azagniotov.language;
+
+import java.lang.Character.UnicodeScript;
+
+/**
+ * A re-usable counter of the chars of each Unicode script in a normalized input, see {@link
+ * InputNormalizer}. Only the chars of the letter scripts are counted, see {@link
+ * ScriptLanguages#isLetterScript(UnicodeScript)}.
+ *
+ * <p>The counting is a single pass of table lookups over the normalized chars, which is cheap
+ * compared to the n-gram extraction. The counts are cleared through the list of the scripts that
+ * were counted, so that clearing does not depend on the number of the Unicode scripts.
+ *
+ * <p>Instances are not thread-safe, since they hold the re-usable buffers.
+ */
+final class ScriptCounts {
+
+  private static final UnicodeScript[] SCRIPTS = UnicodeScript.values();
+
+  private final int[] counts;
+  private final int[] countedScripts;
+  private int countedScriptsSize;
+  private int total;
+
+  ScriptCounts() {
+    this.counts = new int[SCRIPTS.length];
+    this.countedScripts = new int[SCRIPTS.length];
+  }
+
+  /**
+   * Counts the chars of each script, replacing the previous counts.
+   *
+   * @param chars the normalized chars
+   * @param length the number of the normalized chars
+   */
+  void count(final char[] chars, final int length) {
+    for (int idx = 0; idx < this.countedScriptsSize; idx++) {
+      this.counts[this.countedScripts[idx]] = 0;
+    }
+    this.countedScriptsSize = 0;
+    this.total = 0;
+
+    for (int charIdx = 0; charIdx < length; charIdx++) {
+      final UnicodeScript script = UnicodeCache.scriptOf(chars[charIdx]);
+      if (!ScriptLanguages.isLetterScript(script)) {
+        continue;
+      }
+      final int ordinal = script.ordinal();
+      if (this.counts[ordinal]++ == 0) {
+        this.countedScripts[this.countedScriptsSize++] = ordinal;
+      }
+      this.total++;
+    }
+  }
+
+  /** @return the number of the counted chars of all the letter scripts */
+  int getTotal() {
+    return total;
+  }
+
+  /** @return the number of the distinct letter scripts that were counted */
+  int size() {
+    return countedScriptsSize;
+  }
+
+  /**
+   * @param idx the index of a counted script, from zero to {@link #size()} exclusive, in the order
+   *     of the first occurrence of each script
+   * @return the counted script at the given index
+   */
+  UnicodeScript scriptAt(final int idx) {
+    return SCRIPTS[this.countedScripts[idx]];
+  }
+
+  /**
+   * @param idx the index of a counted script, see {@link #scriptAt(int)}
+   * @return the number of the chars of the counted script at the given index
+   */
+  int countAt(final int idx) {
+    return this.counts[this.countedScripts[idx]];
+  }
+
+  /**
+   * @param script a Unicode script
+   * @return the number of the chars of the given script, which is zero for the scripts that were
+   *     not counted
+   */
+  int countOf(final UnicodeScript script) {
+    return this.counts[script.ordinal()];
+  }
+
+  /**
+   * @return the script with the most chars, where the script which occurred first wins a tie, or
+   *     {@link UnicodeScript#UNKNOWN} if no letter script was counted
+   */
+  UnicodeScript dominantScript() {
+    if (this.countedScriptsSize == 0) {
+      return UnicodeScript.UNKNOWN;
+    }
+    int dominantIdx = 0;
+    for (int idx = 1; idx < this.countedScriptsSize; idx++) {
+      if (countAt(idx) > countAt(dominantIdx)) {
+        dominantIdx = idx;
+      }
+    }
+    return scriptAt(dominantIdx);
+  }
+}
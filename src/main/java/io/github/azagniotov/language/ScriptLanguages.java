@@ -0,0 +1,95 @@
+package io.github.azagniotov.language;
+
+import java.lang.Character.UnicodeScript;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps each Unicode script to the languages whose profiles actually use it, e.g.: the Cyrillic
+ * script to bg, kk, ky, mk, mn, ru, sr, tg and uk, or the Arabic script to ar, fa and ur.
+ *
+ * <p>A language uses a script when the unigrams of that script make up at least {@link
+ * #MIN_SCRIPT_SHARE} of the unigram probabilities of its profile. The threshold leaves out the
+ * loanwords and the quotes in a foreign script, which most of the profiles have a few of, e.g.: the
+ * Cyrillic unigrams of the Estonian profile.
+ *
+ * <p>Instances are immutable once built, and can be shared across threads.
+ */
+final class ScriptLanguages {
+
+  static final float MIN_SCRIPT_SHARE = 0.01f;
+
+  private static final UnicodeScript[] SCRIPTS = UnicodeScript.values();
+  private static final int[] NO_LANGUAGES = new int[0];
+
+  // The indexes of the languages which use each script, in ascending order, by script ordinal
+  private final int[][] languagesByScript;
+
+  private ScriptLanguages(final int[][] languagesByScript) {
+    this.languagesByScript = languagesByScript;
+  }
+
+  /**
+   * Builds the scripts of the given languages from their unigram probabilities.
+   *
+   * @param languageCorporaProbabilities n-grams mapped to their per-language probabilities
+   * @param numberOfLanguages the number of the languages, i.e.: the length of each probabilities
+   *     array
+   * @return the languages of each script
+   */
+  static ScriptLanguages of(
+      final Map<String, float[]> languageCorporaProbabilities, final int numberOfLanguages) {
+    final float[][] scriptShares = new float[SCRIPTS.length][numberOfLanguages];
+    for (final Map.Entry<String, float[]> entry : languageCorporaProbabilities.entrySet()) {
+      final String nGram = entry.getKey();
+      if (nGram.length() != NGram.UNIGRAM_SIZE) {
+        continue;
+      }
+      final UnicodeScript script = UnicodeCache.scriptOf(nGram.charAt(0));
+      final float[] probabilities = entry.getValue();
+      for (int languageIdx = 0; languageIdx < numberOfLanguages; languageIdx++) {
+        scriptShares[script.ordinal()][languageIdx] += probabilities[languageIdx];
+      }
+    }
+
+    final int[][] languagesByScript = new int[SCRIPTS.length][];
+    for (final UnicodeScript script : SCRIPTS) {
+      final List<Integer> languages = new ArrayList<>();
+      if (isLetterScript(script)) {
+        for (int languageIdx = 0; languageIdx < numberOfLanguages; languageIdx++) {
+          if (scriptShares[script.ordinal()][languageIdx] >= MIN_SCRIPT_SHARE) {
+            languages.add(languageIdx);
+          }
+        }
+      }
+
+      final int[] languageIndexes = languages.isEmpty() ? NO_LANGUAGES : new int[languages.size()];
+      for (int idx = 0; idx < languageIndexes.length; idx++) {
+        languageIndexes[idx] = languages.get(idx);
+      }
+      languagesByScript[script.ordinal()] = languageIndexes;
+    }
+    return new ScriptLanguages(languagesByScript);
+  }
+
+  /**
+   * @param script a Unicode script
+   * @return the indexes of the languages which use the given script, in ascending order. Callers
+   *     must not modify the returned array.
+   */
+  int[] languagesOf(final UnicodeScript script) {
+    return languagesByScript[script.ordinal()];
+  }
+
+  /**
+   * @param script a Unicode script
+   * @return false for the scripts of the chars which are shared by many scripts, e.g.: digits,
+   *     punctuation and combining marks, which tell nothing about the language
+   */
+  static boolean isLetterScript(final UnicodeScript script) {
+    return script != UnicodeScript.COMMON
+        && script != UnicodeScript.INHERITED
+        && script != UnicodeScript.UNKNOWN;
+  }
+}
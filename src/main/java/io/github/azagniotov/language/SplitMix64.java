@@ -0,0 +1,27 @@
+package io.github.azagniotov.language;
+
+/**
+ * The SplitMix64 generator (Steele, Lea and Flood), which drives both the n-gram reservoir of
+ * {@link ExtractedNGrams} and the counter-based {@link SamplingSchedule}.
+ *
+ * <p>The generator state advances by {@link #GAMMA}, the odd integer closest to 2^64 divided by
+ * the golden ratio, and each state is scrambled by the {@link #mix(long)} finalizer.
+ */
+final class SplitMix64 {
+
+  static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+  private SplitMix64() {}
+
+  /**
+   * @param value a generator state, or any other value to scramble
+   * @return the SplitMix64 finalizer of the given value, where each input bit affects each output
+   *     bit
+   */
+  static long mix(final long value) {
+    long z = value;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
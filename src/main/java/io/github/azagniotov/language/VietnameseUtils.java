@@ -1,12 +1,14 @@
 package io.github.azagniotov.language;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Extracted from the original implementation: <a
  * href="https://github.com/shuyo/language-detection/blob/c92ca72192b79ac421e809de46d5d0dafaef98ef/src/com/cybozu/labs/langdetect/util/NGram.java#L105-L135">See
  * here</a>
+ *
+ * <p>The original regex-based rewrite has been replaced with lookup tables: a (base char,
+ * combining mark) pair is resolved to its precomposed char with two array reads, and the text is
+ * rewritten in a single pass. Inputs without any of the five combining marks, i.e.: the vast
+ * majority of inputs, are returned as-is after a tight pre-check loop.
  */
 class VietnameseUtils {
 
@@ -18,28 +20,110 @@ class VietnameseUtils {
     "\u1EA0\u1EB8\u1ECA\u1ECC\u1EE4\u1EF4\u1EA1\u1EB9\u1ECB\u1ECD\u1EE5\u1EF5\u1EAC\u1EC6\u1ED8\u1EAD\u1EC7\u1ED9\u1EB6\u1EB7\u1EE2\u1EE3\u1EF0\u1EF1"
   };
   private static final String VI_CHARS =
-      "AEIOUYaeiouy\u00c2\u00ca\u00d4\u00e2\u00ea\u00f4\u0102\u0103\u01a0\u01a1\u01af\u01b0";
+      "AEIOUYaeiouy\u00C2\u00CA\u00D4\u00E2\u00EA\u00F4\u0102\u0103\u01A0\u01A1\u01AF\u01B0";
   private static final String VI_DIACRITICS = "\u0300\u0301\u0303\u0309\u0323";
-  private static final Pattern VI_CHARS_WITH_DIACRITIC_PATTERN =
-      Pattern.compile("([" + VI_CHARS + "])([" + VI_DIACRITICS + "])");
+
+  // The five combining marks all fall within U+0300..U+0323
+  private static final char FIRST_DIACRITIC = '\u0300';
+  private static final int DIACRITICS_RANGE = '\u0323' - FIRST_DIACRITIC + 1;
+
+  // The base chars all fall within U+0041..U+01B0
+  private static final int BASE_CHARS_RANGE = '\u01B0' + 1;
+
+  // Lookup tables hold (index + 1), so that zero means "not a Vietnamese base char / diacritic"
+  private static final byte[] BASE_CHAR_INDEX = new byte[BASE_CHARS_RANGE];
+  private static final byte[] DIACRITIC_INDEX = new byte[DIACRITICS_RANGE];
+
+  // Flattened [diacritic][base char] table of the precomposed chars
+  private static final char[] PRECOMPOSED_CHARS =
+      new char[VI_DIACRITICS.length() * VI_CHARS.length()];
+
+  static {
+    for (int idx = 0; idx < VI_CHARS.length(); idx++) {
+      BASE_CHAR_INDEX[VI_CHARS.charAt(idx)] = (byte) (idx + 1);
+    }
+    for (int idx = 0; idx < VI_DIACRITICS.length(); idx++) {
+      DIACRITIC_INDEX[VI_DIACRITICS.charAt(idx) - FIRST_DIACRITIC] = (byte) (idx + 1);
+      VI_NORMALIZED_CHARS[idx].getChars(
+          0, VI_CHARS.length(), PRECOMPOSED_CHARS, idx * VI_CHARS.length());
+    }
+  }
 
   private VietnameseUtils() {}
 
   /** Normalize Vietnamese letter + diacritical mark (U+03xx) to a single character (U+1Exx). */
-  static String normalizeVietnamese(String text) {
-    Matcher matcher = VI_CHARS_WITH_DIACRITIC_PATTERN.matcher(text);
-    final StringBuilder stringBuilder = new StringBuilder();
-    while (matcher.find()) {
-      int charIndex = VI_CHARS.indexOf(matcher.group(1));
-      matcher.appendReplacement(
-          stringBuilder,
-          VI_NORMALIZED_CHARS[VI_DIACRITICS.indexOf(matcher.group(2))].substring(
-              charIndex, charIndex + 1));
-    }
-    if (stringBuilder.length() == 0) {
+  static String normalizeVietnamese(final String text) {
+    final int firstDiacriticIdx = indexOfDiacritic(text);
+    if (firstDiacriticIdx == -1) {
       return text;
     }
-    matcher.appendTail(stringBuilder);
-    return stringBuilder.toString();
+
+    final char[] buffer = text.toCharArray();
+    final int length = normalizeVietnamese(buffer, firstDiacriticIdx, buffer.length);
+    if (length == buffer.length) {
+      return text;
+    }
+    return new String(buffer, 0, length);
+  }
+
+  /**
+   * Resolves a Vietnamese (base char, combining mark) pair to its precomposed char.
+   *
+   * @return the precomposed char, or zero if the given pair does not compose
+   */
+  static char compose(final char baseChar, final char diacritic) {
+    final int diacriticIdx = diacriticIndex(diacritic);
+    if (diacriticIdx == 0 || baseChar >= BASE_CHARS_RANGE) {
+      return 0;
+    }
+    final int baseCharIdx = BASE_CHAR_INDEX[baseChar];
+    if (baseCharIdx == 0) {
+      return 0;
+    }
+    return PRECOMPOSED_CHARS[(diacriticIdx - 1) * VI_CHARS.length() + (baseCharIdx - 1)];
+  }
+
+  static boolean isDiacritic(final char candidate) {
+    return diacriticIndex(candidate) != 0;
+  }
+
+  private static int normalizeVietnamese(final char[] buffer, final int from, final int length) {
+    if (length < 2) {
+      return length;
+    }
+    // A diacritic at index zero has no base char to compose with
+    int writeIdx = Math.max(from, 1);
+    for (int readIdx = writeIdx; readIdx < length; readIdx++) {
+      final char currentChar = buffer[readIdx];
+      // A precomposed char is never a base char itself, so a run of marks after a base char
+      // composes only once, exactly like the non-overlapping matches of the original regex.
+      final char precomposed = compose(buffer[writeIdx - 1], currentChar);
+      if (precomposed != 0) {
+        // Overwrite the base char, which sits in the last written position,
+        // and drop the combining mark.
+        buffer[writeIdx - 1] = precomposed;
+      } else {
+        buffer[writeIdx++] = currentChar;
+      }
+    }
+    return writeIdx;
+  }
+
+  private static int indexOfDiacritic(final String text) {
+    final int length = text.length();
+    for (int idx = 0; idx < length; idx++) {
+      if (isDiacritic(text.charAt(idx))) {
+        return idx;
+      }
+    }
+    return -1;
+  }
+
+  private static int diacriticIndex(final char candidate) {
+    final int offset = candidate - FIRST_DIACRITIC;
+    if (offset < 0 || offset >= DIACRITICS_RANGE) {
+      return 0;
+    }
+    return DIACRITIC_INDEX[offset];
   }
 }
@@ -0,0 +1,39 @@
+package io.github.azagniotov.language;
+
+/**
+ * Picks the {@link ProbabilityKernel} of the running Java version.
+ *
+ * <p>This is the version for Java 17 and above, which picks the {@code VectorProbabilityKernel}
+ * when the {@code jdk.incubator.vector} module has been resolved at startup, e.g.: with {@code
+ * --add-modules jdk.incubator.vector}, and the {@link ScalarProbabilityKernel} otherwise. The
+ * Vector API kernel is loaded reflectively, so that this class links without the module. The
+ * detectors use it only when {@link LanguageDetectionSettings.Builder#withVectorKernel()} is
+ * enabled, since its sums may differ from the scalar ones in the last bits.
+ */
+final class ProbabilityKernels {
+
+  static final String VECTOR_MODULE_NAME = "jdk.incubator.vector";
+  private static final String VECTOR_KERNEL_CLASS_NAME =
+      "io.github.azagniotov.language.VectorProbabilityKernel";
+
+  private static final ProbabilityKernel BEST = select();
+
+  private ProbabilityKernels() {}
+
+  /** @return the fastest kernel which is available at runtime */
+  static ProbabilityKernel best() {
+    return BEST;
+  }
+
+  private static ProbabilityKernel select() {
+    if (ModuleLayer.boot().findModule(VECTOR_MODULE_NAME).isEmpty()) {
+      return ScalarProbabilityKernel.INSTANCE;
+    }
+    try {
+      return (ProbabilityKernel)
+          Class.forName(VECTOR_KERNEL_CLASS_NAME).getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return ScalarProbabilityKernel.INSTANCE;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package io.github.azagniotov.language;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The {@link ProbabilityKernel} with the incubating Vector API, which processes as many languages
+ * at once as the preferred float vector of the CPU holds, e.g.: eight with AVX2. The languages
+ * which do not fill a whole vector are processed by scalar code.
+ *
+ * <p>The sum of the probabilities is accumulated lane-wise and reduced at the end, therefore it
+ * may differ from the sum of the {@link ScalarProbabilityKernel} in the last bits. The normalized
+ * probabilities and their maximum are exactly the same, given the same sum.
+ */
+final class VectorProbabilityKernel implements ProbabilityKernel {
+
+  private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+  VectorProbabilityKernel() {}
+
+  @Override
+  public float multiplyAndSum(
+      final float[] probabilities, final float[] wordProbabilities, final float weight) {
+    final int upperBound = SPECIES.loopBound(probabilities.length);
+    FloatVector sums = FloatVector.zero(SPECIES);
+    int probIdx = 0;
+    for (; probIdx < upperBound; probIdx += SPECIES.length()) {
+      final FloatVector updated =
+          FloatVector.fromArray(SPECIES, wordProbabilities, probIdx)
+              .add(weight)
+              .mul(FloatVector.fromArray(SPECIES, probabilities, probIdx));
+      updated.intoArray(probabilities, probIdx);
+      sums = sums.add(updated);
+    }
+
+    float probSum = sums.reduceLanes(VectorOperators.ADD);
+    for (; probIdx < probabilities.length; ++probIdx) {
+      probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+      probSum += probabilities[probIdx];
+    }
+    return probSum;
+  }
+
+  @Override
+  public void multiply(
+      final float[] probabilities, final float[] wordProbabilities, final float weight) {
+    final int upperBound = SPECIES.loopBound(probabilities.length);
+    int probIdx = 0;
+    for (; probIdx < upperBound; probIdx += SPECIES.length()) {
+      FloatVector.fromArray(SPECIES, wordProbabilities, probIdx)
+          .add(weight)
+          .mul(FloatVector.fromArray(SPECIES, probabilities, probIdx))
+          .intoArray(probabilities, probIdx);
+    }
+    for (; probIdx < probabilities.length; ++probIdx) {
+      probabilities[probIdx] *= weight + wordProbabilities[probIdx];
+    }
+  }
+
+  @Override
+  public float normalizeAndReturnMax(final float[] probabilities, final float sum) {
+    final int upperBound = SPECIES.loopBound(probabilities.length);
+    FloatVector maxes = FloatVector.zero(SPECIES);
+    int probIdx = 0;
+    for (; probIdx < upperBound; probIdx += SPECIES.length()) {
+      final FloatVector normalized =
+          FloatVector.fromArray(SPECIES, probabilities, probIdx).div(sum);
+      normalized.intoArray(probabilities, probIdx);
+      maxes = maxes.max(normalized);
+    }
+
+    float maxp = maxes.reduceLanes(VectorOperators.MAX);
+    for (; probIdx < probabilities.length; ++probIdx) {
+      probabilities[probIdx] = probabilities[probIdx] / sum;
+      maxp = Math.max(maxp, probabilities[probIdx]);
+    }
+    return maxp;
+  }
+}
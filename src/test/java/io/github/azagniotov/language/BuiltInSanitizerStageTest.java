@@ -0,0 +1,105 @@
+package io.github.azagniotov.language;
+
+import static io.github.azagniotov.language.BuiltInSanitizerStage.CODE_BLOCKS;
+import static io.github.azagniotov.language.BuiltInSanitizerStage.EMAILS;
+import static io.github.azagniotov.language.BuiltInSanitizerStage.HASHTAGS;
+import static io.github.azagniotov.language.BuiltInSanitizerStage.MENTIONS;
+import static io.github.azagniotov.language.BuiltInSanitizerStage.NUMBERS;
+import static io.github.azagniotov.language.BuiltInSanitizerStage.URLS;
+import static io.github.azagniotov.language.TestHelper.sanitizeUrls;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class BuiltInSanitizerStageTest {
+
+  @Test
+  public void shouldRemoveUrls() {
+    assertEquals(sanitize("http://www.google.com", URLS), "");
+    assertEquals(sanitize("https://www.google.com", URLS), "");
+    assertEquals(
+        sanitize("hello this is a https://www.google.com URL", URLS), "hello this is a URL");
+    assertEquals(
+        sanitize("hello this is www.google.com domain", URLS),
+        "hello this is www.google.com domain");
+  }
+
+  @Test
+  public void shouldRemoveUrlsAsRegexDoes() {
+    final String[] inputs = {
+      "hello this is a https://www.google.com URL",
+      "Hello!!! http://example.com/path?q=1&x=%20, and more",
+      "http:// is not a URL, nor is http://",
+      "hhttps://a.b hhttp://c.d"
+    };
+    for (final String input : inputs) {
+      assertEquals(input, sanitize(input, URLS), sanitizeUrls(input));
+    }
+  }
+
+  @Test
+  public void shouldRemoveEmails() {
+    assertEquals(sanitize("Write to john.doe+news@example.co.uk.", EMAILS), "Write to .");
+    assertEquals(sanitize("a@b.cd e@f g@h.i", EMAILS), " e@f g@h.i");
+    assertEquals(sanitize("user@localhost user@-.com", EMAILS), "user@localhost user@-.com");
+  }
+
+  @Test
+  public void shouldRemoveMentions() {
+    assertEquals(sanitize("Thanks @john_doe and @jane!", MENTIONS), "Thanks  and !");
+    assertEquals(sanitize("john@example.com @ alone", MENTIONS), "john@example.com @ alone");
+    assertEquals(sanitize("Mail john@example.com, cc @jane", EMAILS, MENTIONS), "Mail , cc ");
+  }
+
+  @Test
+  public void shouldRemoveHashtags() {
+    assertEquals(sanitize("#throwback to #東京 2019", HASHTAGS), " to  2019");
+    assertEquals(sanitize("C# and issue#1 and # alone", HASHTAGS), "C# and issue#1 and # alone");
+  }
+
+  @Test
+  public void shouldRemoveCodeBlocks() {
+    assertEquals(sanitize("Run `ls -la` now", CODE_BLOCKS), "Run  now");
+    assertEquals(sanitize("Run ``echo `x` `` now", CODE_BLOCKS), "Run  now");
+    assertEquals(sanitize("See:\n```java\nint x = 1;\n```\nDone", CODE_BLOCKS), "See:\n\nDone");
+    assertEquals(sanitize("See:\n~~~\ncode\n~~~~\nDone", CODE_BLOCKS), "See:\n\nDone");
+    assertEquals(sanitize("See:\n```\nunterminated", CODE_BLOCKS), "See:\n");
+    assertEquals(sanitize("a ` lone\nbacktick`", CODE_BLOCKS), "a ` lone\nbacktick`");
+  }
+
+  @Test
+  public void shouldRemoveNumbers() {
+    assertEquals(
+        sanitize("On 2024-01-31 at 12:30, 1,000,000 people paid 3.14.", NUMBERS),
+        "On  at ,  people paid .");
+    assertEquals(sanitize("the 3rd mp3 and 10km", NUMBERS), "the 3rd mp3 and 10km");
+    assertEquals(sanitize("١٢٣ items", NUMBERS), " items");
+  }
+
+  @Test
+  public void shouldNotLookBeyondEnd() {
+    final String input = "mail john@example.com";
+    assertEquals(EMAILS.removableLengthAt(input, 5, input.length()), 16);
+    assertEquals(EMAILS.removableLengthAt(input, 5, 17), 0);
+    assertEquals(CODE_BLOCKS.removableLengthAt("```a```", 0, 5), 5);
+    assertEquals(NUMBERS.removableLengthAt("12ab", 0, 2), 2);
+  }
+
+  /** Applies the given stages the way {@link InputNormalizer} does, but without normalization */
+  private static String sanitize(final String input, final SanitizerStage... stages) {
+    final StringBuilder result = new StringBuilder();
+    int idx = 0;
+    outer:
+    while (idx < input.length()) {
+      for (final SanitizerStage stage : stages) {
+        final int removableLength = stage.removableLengthAt(input, idx, input.length());
+        if (removableLength > 0) {
+          idx += removableLength;
+          continue outer;
+        }
+      }
+      result.append(input.charAt(idx++));
+    }
+    return result.toString();
+  }
+}
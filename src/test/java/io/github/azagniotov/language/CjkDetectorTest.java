@@ -206,6 +206,41 @@ public class CjkDetectorTest {
         DECISION_NONE);
   }
 
+  @Test
+  public void shouldNotDecideEarlyWhileRemainingCharsCanChangeTheOutcome() throws Exception {
+    final double threshold = 0.1;
+    // 100 / 5100 is below the threshold, even though the prefix is all Hiragana
+    assertEquals(
+        CjkDetector.decide("\u3042".repeat(100) + "a".repeat(5000), threshold), DECISION_NONE);
+    // 1000 / 6000 is above the threshold
+    assertEquals(
+        CjkDetector.decide("\u3042".repeat(1000) + "a".repeat(5000), threshold),
+        DECISION_JAPANESE);
+    // The Chinese Han chars at the very end make it above the threshold
+    assertEquals(
+        CjkDetector.decide("a".repeat(4500) + "\u4EEC".repeat(500), threshold), DECISION_CHINESE);
+    // A single Hiragana at the very end turns a Chinese decision into Japanese
+    assertEquals(
+        CjkDetector.decide("\u4EEC".repeat(6000) + "\u3042", threshold), DECISION_JAPANESE);
+  }
+
+  @Test
+  public void shouldDecideEarly() throws Exception {
+    final CharacterCounts characterCounts = CharacterCounts.create();
+    for (int idx = 0; idx < 64; idx++) {
+      characterCounts.mark(CharacterCounts.CharType.NON_A_CJK_UNICODE_CODEPOINT);
+    }
+    // Even if all the remaining 4 chars were CJK, the ratio would stay below 0.1
+    assertEquals(CjkDetector.decideEarly(characterCounts, 64, 4, 0.1), DECISION_NONE);
+    assertEquals(CjkDetector.decideEarly(characterCounts, 64, 10, 0.1), null);
+
+    for (int idx = 0; idx < 64; idx++) {
+      characterCounts.mark(CharacterCounts.CharType.KATAKANA);
+    }
+    // Even if all the remaining 100 chars were non-CJK, the ratio would stay above 0.1
+    assertEquals(CjkDetector.decideEarly(characterCounts, 128, 100, 0.1), DECISION_JAPANESE);
+  }
+
   private String sz(final String input) {
     if (input == null || input.trim().isEmpty()) {
       return EMPTY_STRING;
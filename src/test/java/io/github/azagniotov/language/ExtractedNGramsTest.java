@@ -0,0 +1,77 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import org.junit.Test;
+
+public class ExtractedNGramsTest {
+
+  @Test
+  public void shouldKeepAllRowIdsInOrderWhenUnbounded() {
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(100, 0);
+    for (int rowId = 0; rowId < 100; rowId++) {
+      extractedNGrams.offer(rowId);
+    }
+
+    assertEquals(extractedNGrams.size(), 100);
+    assertEquals(extractedNGrams.getOfferedCount(), 100);
+    for (int idx = 0; idx < 100; idx++) {
+      assertEquals(extractedNGrams.getRowIds()[idx], idx);
+    }
+  }
+
+  @Test
+  public void shouldKeepAllRowIdsInOrderWhenReservoirIsNotFull() {
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(100, 50);
+    for (int rowId = 0; rowId < 50; rowId++) {
+      extractedNGrams.offer(rowId);
+    }
+
+    assertEquals(extractedNGrams.size(), 50);
+    for (int idx = 0; idx < 50; idx++) {
+      assertEquals(extractedNGrams.getRowIds()[idx], idx);
+    }
+  }
+
+  @Test
+  public void shouldBoundReservoirDeterministically() {
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(60000, 1000);
+    for (int rowId = 0; rowId < 60000; rowId++) {
+      extractedNGrams.offer(rowId);
+    }
+    assertEquals(extractedNGrams.size(), 1000);
+    assertEquals(extractedNGrams.getOfferedCount(), 60000);
+    assertTrue(extractedNGrams.getRowIds().length <= 1000);
+    final int[] firstSample = Arrays.copyOf(extractedNGrams.getRowIds(), 1000);
+
+    extractedNGrams.reset(60000, 1000);
+    for (int rowId = 0; rowId < 60000; rowId++) {
+      extractedNGrams.offer(rowId);
+    }
+    assertArrayEquals(Arrays.copyOf(extractedNGrams.getRowIds(), 1000), firstSample);
+  }
+
+  @Test
+  public void shouldSampleUniformly() {
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(100000, 10000);
+    for (int rowId = 0; rowId < 100000; rowId++) {
+      extractedNGrams.offer(rowId);
+    }
+
+    // Each tenth of the offered row ids should make roughly a tenth of the sample
+    final int[] deciles = new int[10];
+    for (int idx = 0; idx < extractedNGrams.size(); idx++) {
+      deciles[extractedNGrams.getRowIds()[idx] / 10000]++;
+    }
+    for (final int decile : deciles) {
+      assertTrue(String.valueOf(decile), decile > 900 && decile < 1100);
+    }
+  }
+}
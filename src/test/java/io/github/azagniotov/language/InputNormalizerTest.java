@@ -0,0 +1,291 @@
+package io.github.azagniotov.language;
+
+import static io.github.azagniotov.language.InputSanitizer.filterOutNonWords;
+import static io.github.azagniotov.language.StringConstants.BLANK_SPACE;
+import static io.github.azagniotov.language.StringConstants.EMPTY_STRING;
+import static io.github.azagniotov.language.TestHelper.sanitizeUrls;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class InputNormalizerTest {
+
+  private static final String[] INPUTS = {
+    "I love coding, it's fun!",
+    "hello this is a https://www.google.com URL",
+    "Hello!!!   How are you... today? http://example.com/path?q=1&x=%20, and more",
+    "Sie sagte: 'Ich bin beschäftigt!'",
+    "私はプログラミングが好きです! 【MANGO】",
+    "Tiếng Việt có dấu",
+    "emoji 😀😀 and 𝑓 math letters",
+    "chat😂👍🏽🎉 ok 🎉https://example.com/a🎉😀 👨‍👩‍👧 𠀀𠀁😀 done🇯🇵",
+    "lone \uD83D surrogate \uDE00 halves\uD83D",
+    "ALL CAPS WORDS and MixedCase",
+    "   "
+  };
+
+  @Test
+  public void shouldProduceSameNGramsAsStringTransformationsChain() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    // Index the n-grams of the chain, as well as every n-gram that the normalized chars could
+    // produce, so that the row ids of both map back one-to-one to the n-grams
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    for (final String input : INPUTS) {
+      for (int end = 0; end <= input.length(); end++) {
+        inputNormalizer.normalize(input, end, true, true);
+        final String normalized =
+            BLANK_SPACE
+                + new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength())
+                    .replaceAll(" +", BLANK_SPACE);
+        for (int start = 0; start < normalized.length(); start++) {
+          for (int length = NGram.UNIGRAM_SIZE; length <= NGram.TRIGRAM_SIZE; length++) {
+            if (start + length <= normalized.length()) {
+              probabilities.put(normalized.substring(start, start + length), new float[] {1f});
+            }
+          }
+        }
+        for (final String nGram : extractNGramsThroughChain(input.substring(0, end))) {
+          probabilities.put(nGram, new float[] {1f});
+        }
+      }
+    }
+    final NGramIndex index = NGramIndex.of(probabilities);
+
+    final NGram nGram = new NGram(EMPTY_STRING, NGram.UNIGRAM_SIZE, NGram.TRIGRAM_SIZE);
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    for (final String input : INPUTS) {
+      for (int end = 0; end <= input.length(); end++) {
+        inputNormalizer.normalize(input, end, true, true);
+        extractedNGrams.reset(NGram.TRIGRAM_SIZE * inputNormalizer.getLength(), 0);
+        nGram.collectAllRowIds(
+            inputNormalizer.getNormalizedChars(),
+            inputNormalizer.getLength(),
+            index,
+            extractedNGrams);
+
+        final List<String> expected = extractNGramsThroughChain(input.substring(0, end));
+        assertEquals(input.substring(0, end), extractedNGrams.size(), expected.size());
+        for (int idx = 0; idx < expected.size(); idx++) {
+          assertEquals(
+              input.substring(0, end),
+              extractedNGrams.rowIdAt(idx),
+              index.rowIdOf(expected.get(idx)));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldCollapseBlanks() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    final String input = "  ...hello,   world!  ";
+    inputNormalizer.normalize(input, input.length(), true, false);
+
+    assertEquals(
+        new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength()),
+        "hello world ");
+  }
+
+  @Test
+  public void shouldReuseBufferAcrossCalls() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    final String longInput = "abc ".repeat(1000);
+    inputNormalizer.normalize(longInput, longInput.length(), false, false);
+    assertEquals(inputNormalizer.getLength(), longInput.length());
+
+    final char[] buffer = inputNormalizer.getNormalizedChars();
+    inputNormalizer.normalize("xyz", 3, false, false);
+    assertEquals(inputNormalizer.getLength(), 3);
+    assertEquals(inputNormalizer.getNormalizedChars(), buffer);
+  }
+
+  @Test
+  public void shouldCheckBlankWithinTruncatedAndSanitizedRange() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+
+    inputNormalizer.normalize("", 0, true, false);
+    assertTrue(inputNormalizer.isBlank());
+    inputNormalizer.normalize(" \t\n ", 4, true, false);
+    assertTrue(inputNormalizer.isBlank());
+    inputNormalizer.normalize("  https://www.google.com  ", 26, true, false);
+    assertTrue(inputNormalizer.isBlank());
+    inputNormalizer.normalize("  https://www.google.com  ", 26, false, false);
+    assertFalse(inputNormalizer.isBlank());
+    inputNormalizer.normalize("   hello", 3, true, false);
+    assertTrue(inputNormalizer.isBlank());
+    inputNormalizer.normalize("   hello", 4, true, false);
+    assertFalse(inputNormalizer.isBlank());
+    // Punctuation is not blank, even though it is filtered out as a non-word
+    inputNormalizer.normalize(" !? ", 4, true, false);
+    assertFalse(inputNormalizer.isBlank());
+  }
+
+  @Test
+  public void shouldMakeSameCjkDecisionAsCjkDetector() {
+    final String[] cjkInputs = {
+      "東京に行きました https://www.google.com/path 関西国際空港",
+      "爱云发见 ABCD 们们们们 http://example.com 😀",
+      "七月の報告 1234567890.pptx " + "カタカナ".repeat(40),
+      "report " + "们".repeat(100) + " english words ".repeat(20)
+    };
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    for (final String[] inputs : new String[][] {INPUTS, cjkInputs}) {
+      for (final String input : inputs) {
+        for (int end = 0; end <= input.length(); end++) {
+          for (final double threshold : new double[] {0.0, 0.1, 0.5, 1.0}) {
+            inputNormalizer.normalize(input, end, true, false, threshold);
+
+            assertEquals(
+                input.substring(0, end),
+                inputNormalizer.getCjkDecision(),
+                CjkDetector.decide(sanitizeUrls(input.substring(0, end)), threshold));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldMakeCjkDecisionOnTruncatedAndSanitizedRange() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    final String input = "https://www.google.com/foo \u6771\u4EAC and many more latin words";
+
+    inputNormalizer.normalize(input, 29, true, false, 0.5);
+    assertEquals(inputNormalizer.getCjkDecision(), CjkDecision.DECISION_JAPANESE);
+
+    inputNormalizer.normalize(input, 29, false, false, 0.5);
+    assertEquals(inputNormalizer.getCjkDecision(), CjkDecision.DECISION_NONE);
+
+    inputNormalizer.normalize(input, input.length(), true, false, 0.5);
+    assertEquals(inputNormalizer.getCjkDecision(), CjkDecision.DECISION_NONE);
+  }
+
+  @Test
+  public void shouldCollapseRunsOfNonWordSupplementaryCodePoints() {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    final String input = "ok😂👍🏽🎉 done🇯🇵 𠀀𝑓";
+    inputNormalizer.normalize(input, input.length(), true, false, 0.1);
+
+    assertEquals(
+        new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength()),
+        "ok done 𠀀𝑓");
+    // Three emoji, one skin tone modifier and two regional indicators, but not the letters
+    assertEquals(inputNormalizer.getSkippedSupplementaryChars(), 12);
+    assertEquals(inputNormalizer.getCjkDecision(), CjkDetector.decide(input, 0.1));
+  }
+
+  @Test
+  public void shouldFindDetectableChars() {
+    assertFalse(InputNormalizer.hasDetectableChars("", 0, true));
+    assertFalse(InputNormalizer.hasDetectableChars("2024-01-31 12:30 +1 (555) 010-9999", 34, true));
+    final String symbols = "!!! ??? ... © ® ° « » ‰ 😀👍🏽👨‍👩‍👧 🇯🇵";
+    assertFalse(InputNormalizer.hasDetectableChars(symbols, symbols.length(), true));
+    assertFalse(InputNormalizer.hasDetectableChars("【】「」", 4, false));
+    assertFalse(InputNormalizer.hasDetectableChars("123 abc", 4, true));
+
+    assertTrue(InputNormalizer.hasDetectableChars("123 abc", 5, true));
+    assertTrue(InputNormalizer.hasDetectableChars("【】「」", 4, true));
+    assertTrue(InputNormalizer.hasDetectableChars("😀𝑓", 4, false));
+    assertTrue(InputNormalizer.hasDetectableChars("привет", 6, false));
+    assertTrue(InputNormalizer.hasDetectableChars("١٢٣ ́", 5, false));
+  }
+
+  @Test
+  public void shouldNotFindDetectableCharsWhichNormalizationKeeps() {
+    final String[] symbolInputs = {
+      "2024-01-31 12:30 +1 (555) 010-9999 https://example.com/a 100%",
+      "!!! ??? ... © ® ° « » ‰ 😀👍🏽👨‍👩‍👧 🇯🇵 ¼ ½ № ™ ™",
+      "\uD83D https://example.com \uDE00 \uDE00 \uD83D",
+      "【】「」。、・ ０１２ ＿ ￥"
+    };
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    for (final String[] inputs : new String[][] {INPUTS, symbolInputs}) {
+      for (final String input : inputs) {
+        for (int end = 0; end <= input.length(); end++) {
+          for (final double threshold : new double[] {0.0, 0.1}) {
+            if (InputNormalizer.hasDetectableChars(input, end, threshold > 0.0)) {
+              continue;
+            }
+            inputNormalizer.normalize(input, end, true, true, threshold);
+            final String normalized =
+                new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength());
+
+            assertEquals(input.substring(0, end), normalized.trim(), "");
+            assertEquals(inputNormalizer.getCjkDecision(), CjkDecision.DECISION_NONE);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldFuseSanitizerStagesIntoSinglePass() {
+    final SanitizerStage[] stages = {
+      BuiltInSanitizerStage.CODE_BLOCKS,
+      BuiltInSanitizerStage.URLS,
+      BuiltInSanitizerStage.EMAILS,
+      BuiltInSanitizerStage.MENTIONS,
+      BuiltInSanitizerStage.HASHTAGS,
+      BuiltInSanitizerStage.NUMBERS
+    };
+    final String input =
+        "@jane see `x = 1` at https://example.com/a, mail me@example.com #TBT \uD83D"
+            + "https://example.com\uDE00 on 2024-01-31";
+    final String sanitized = " see  at mail   \uD83D\uDE00 on ";
+
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.setCollectSanitizerStageMetrics(true);
+    inputNormalizer.normalize(input, input.length(), stages, false, 0.0);
+    final String fused =
+        new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength());
+    assertArrayEquals(
+        inputNormalizer.getSanitizerStageRemovedChars(), new int[] {7, 42, 14, 5, 4, 10});
+
+    inputNormalizer.normalize(sanitized, sanitized.length(), false, false);
+    assertEquals(
+        fused, new String(inputNormalizer.getNormalizedChars(), 0, inputNormalizer.getLength()));
+  }
+
+  @Test
+  public void shouldTimeSanitizerStagesAtSampleOfPositions() {
+    final SanitizerStage[] stages = {BuiltInSanitizerStage.URLS, BuiltInSanitizerStage.NUMBERS};
+    final String input = String.join(BLANK_SPACE, Collections.nCopies(200, "text"));
+
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.normalize(input, input.length(), stages, false, 0.0);
+    assertArrayEquals(inputNormalizer.getSanitizerStageNanos(), new long[] {0L, 0L});
+    assertEquals(inputNormalizer.getSanitizerStageTimingOverheadNanos(), 0L);
+
+    inputNormalizer.setCollectSanitizerStageMetrics(true);
+    inputNormalizer.normalize(input, input.length(), stages, false, 0.0);
+    assertTrue(inputNormalizer.getSanitizerStageNanos()[0] > 0L);
+    assertTrue(inputNormalizer.getSanitizerStageNanos()[1] > 0L);
+    assertTrue(inputNormalizer.getSanitizerStageTimingOverheadNanos() > 0L);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRejectStatefulSanitizerStageWhenTimingIt() {
+    final int[] calls = new int[1];
+    final SanitizerStage statefulStage = (input, start, end) -> calls[0]++ % 2;
+
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.setCollectSanitizerStageMetrics(true);
+    inputNormalizer.normalize("text", 4, new SanitizerStage[] {statefulStage}, false, 0.0);
+  }
+
+  private static List<String> extractNGramsThroughChain(final String truncatedInput) {
+    final String normalized =
+        VietnameseUtils.normalizeVietnamese(filterOutNonWords(sanitizeUrls(truncatedInput)));
+    if (normalized.isEmpty()) {
+      return Collections.emptyList();
+    }
+    return new NGram(normalized, 1, 3).extractNGrams(Collections.emptySet());
+  }
+}
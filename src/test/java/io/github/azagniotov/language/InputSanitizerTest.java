@@ -1,9 +1,9 @@
 package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.InputSanitizer.filterOutNonWords;
-import static io.github.azagniotov.language.InputSanitizer.sanitize;
 import static org.junit.Assert.assertEquals;
 
+import java.util.regex.Pattern;
 import org.junit.Test;
 
 public class InputSanitizerTest {
@@ -49,11 +49,38 @@ public class InputSanitizerTest {
   }
 
   @Test
-  public void shouldSanitize() {
-    assertEquals(sanitize("http://www.google.com"), "");
-    assertEquals(sanitize("https://www.google.com"), "");
-    assertEquals(sanitize("hello this is a https://www.google.com URL"), "hello this is a URL");
-    assertEquals(
-        sanitize("hello this is www.google.com domain"), "hello this is www.google.com domain");
+  public void shouldCheckWordPropertyOfSupplementaryCodePointsAsRegexDoes() {
+    final Pattern wordPattern = Pattern.compile("\\p{IsWord}", Pattern.UNICODE_CHARACTER_CLASS);
+    for (int codePoint = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+        codePoint <= Character.MAX_CODE_POINT;
+        codePoint++) {
+      // Within the lookup table every code point is checked, beyond it only the tags and
+      // the variation selectors supplement, since the rest of the planes is mostly unassigned
+      if (codePoint >= 0x40000 && (codePoint < 0xE0000 || codePoint > 0xE01EF)) {
+        continue;
+      }
+      final String codePointString = new String(Character.toChars(codePoint));
+      assertEquals(
+          Integer.toHexString(codePoint),
+          InputSanitizer.isWord(codePoint),
+          wordPattern.matcher(codePointString).matches());
+    }
+  }
+
+  @Test
+  public void shouldMatchUrlLengthAsRegexRemoves() {
+    final String input = "see https://www.google.com/a/b?c=d, then http://x.y - and more";
+    final int start = input.indexOf("https");
+    final int urlLength = InputSanitizer.urlLengthAt(input, start, input.length());
+    assertEquals(input.substring(start, start + urlLength), "https://www.google.com/a/b?");
+
+    final int secondStart = input.indexOf("http://");
+    final int secondLength = InputSanitizer.urlLengthAt(input, secondStart, input.length());
+    assertEquals(input.substring(secondStart, secondStart + secondLength), "http://x.y - ");
+
+    assertEquals(InputSanitizer.urlLengthAt("http://", 0, 7), 0);
+    assertEquals(InputSanitizer.urlLengthAt("hello", 0, 5), 0);
+    // The match must not look beyond the truncation point
+    assertEquals(InputSanitizer.urlLengthAt("http://abc", 0, 8), 8);
   }
 }
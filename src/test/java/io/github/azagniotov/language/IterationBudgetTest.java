@@ -0,0 +1,40 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class IterationBudgetTest {
+
+  private static final Model MODEL = new Model(10000, 10000, 7, 0.5f, 0.05f, 0.99999f);
+
+  @Test
+  public void shouldDeriveTheIterationLimitFromTheDistinctNGrams() {
+    final IterationBudget iterationBudget = new IterationBudget(MODEL, 20, 0);
+
+    assertEquals(iterationBudget.iterationLimit(1), IterationBudget.MIN_ITERATION_LIMIT);
+    assertEquals(iterationBudget.iterationLimit(12), 240);
+    assertEquals(iterationBudget.iterationLimit(600), 10000);
+    assertEquals(iterationBudget.iterationLimit(Integer.MAX_VALUE), 10000);
+    assertEquals(iterationBudget.numberOfTrials(1), 7);
+  }
+
+  @Test
+  public void shouldDeriveTheNumberOfTrialsFromTheDistinctNGrams() {
+    final IterationBudget iterationBudget = new IterationBudget(MODEL, 0, 8);
+
+    assertEquals(iterationBudget.numberOfTrials(1), IterationBudget.MIN_NUMBER_OF_TRIALS);
+    assertEquals(iterationBudget.numberOfTrials(33), 5);
+    assertEquals(iterationBudget.numberOfTrials(1000), 7);
+    assertEquals(iterationBudget.iterationLimit(1), 10000);
+  }
+
+  @Test
+  public void shouldNotExceedTheNumberOfTrialsOfTheModel() {
+    final Model model = new Model(10000, 50, 2, 0.5f, 0.05f, 0.99999f);
+    final IterationBudget iterationBudget = new IterationBudget(model, 20, 8);
+
+    assertEquals(iterationBudget.numberOfTrials(1), 2);
+    assertEquals(iterationBudget.iterationLimit(1), 50);
+  }
+}
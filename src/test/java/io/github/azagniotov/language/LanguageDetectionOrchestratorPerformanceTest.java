@@ -2,9 +2,12 @@ package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.TestReflectionUtils.resetLanguageDetectorFactoryInstance;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
@@ -42,7 +45,35 @@ public class LanguageDetectionOrchestratorPerformanceTest {
     }
   }
 
+  // A markup-heavy page, where most of the chars are tags, attributes, scripts and styles
+  private static final String MARKUP_CONTENT;
+
+  static {
+    final StringBuilder markup =
+        new StringBuilder(
+            "<!DOCTYPE html><html><head><meta charset=\"utf-8\"><title>Declaration</title>"
+                + "<style>.row { margin: 0 auto; } .cell > a:hover { color: #336699; }</style>"
+                + "<script>window.dataLayer = window.dataLayer || []; function gtag() {"
+                + " dataLayer.push(arguments); } gtag('js', new Date());</script></head><body>");
+    for (int idx = 0; idx < 200; idx++) {
+      markup
+          .append("<div class=\"row\" data-index=\"")
+          .append(idx)
+          .append("\"><!-- paragraph --><span class=\"cell\" style=\"font-weight: bold\">")
+          .append("<a href=\"https://example.com/articles?id=")
+          .append(idx)
+          .append("&amp;lang=en\" title=\"Read more\">Whereas</a></span>")
+          .append(" recognition of the inherent dignity and of the equal and inalienable rights")
+          .append(" of all members of the human family is the foundation of freedom, justice")
+          .append(" and peace in the world&nbsp;&hellip;</div>");
+    }
+    MARKUP_CONTENT = markup.append("</body></html>").toString();
+  }
+
   private static final String ISO_CODES = "en, ja, es, fr, de, it, zh-cn, af, nl, ko";
+
+  // The steady state detection allocates only its result, i.e.: the list of up to ten languages
+  private static final long MAX_ALLOCATED_BYTES_PER_DETECTION = 256;
   private final String testName;
   private final int iterations;
   private final int maxTextChars;
@@ -101,4 +132,79 @@ public class LanguageDetectionOrchestratorPerformanceTest {
     final Language language = orchestrator.detect(FILE_CONTENT);
     assertEquals("ja", language.getIsoCode639_1());
   }
+
+  @Test
+  public void testLargeMarkupText() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES)
+            .withMaxTextChars(this.maxTextChars)
+            .build();
+    final LanguageDetectionSettings settingsWithMarkupStripping =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES)
+            .withMaxTextChars(this.maxTextChars)
+            .withMarkupStripping()
+            .build();
+
+    for (final LanguageDetectionSettings currentSettings :
+        Arrays.asList(settings, settingsWithMarkupStripping)) {
+      final LanguageDetectionOrchestrator orchestrator =
+          LanguageDetectionOrchestrator.fromSettings(currentSettings);
+      orchestrator.detect(MARKUP_CONTENT);
+
+      final Instant start = Instant.now();
+      for (int idx = 0; idx < iterations; idx++) {
+        orchestrator.detect(MARKUP_CONTENT);
+      }
+      final Instant stop = Instant.now();
+
+      final Duration duration = Duration.between(start, stop);
+      System.out.printf(
+          "\nDEBUG: [test=%s, markup-stripping=%s, iterations=%s] took %s seconds, %s millis\n",
+          this.testName,
+          currentSettings.isStripMarkup(),
+          this.iterations,
+          duration.toSecondsPart(),
+          duration.toMillisPart());
+    }
+
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settingsWithMarkupStripping);
+    assertEquals("en", orchestrator.detect(MARKUP_CONTENT).getIsoCode639_1());
+  }
+
+  @Test
+  public void testAllocatedBytesPerDetection() throws Exception {
+    final java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocationMXBean =
+        (com.sun.management.ThreadMXBean) threadMXBean;
+    assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+    allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES)
+            .withMaxTextChars(this.maxTextChars)
+            .withMarkupStripping()
+            .build();
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+    for (int idx = 0; idx < iterations; idx++) {
+      orchestrator.detect(MARKUP_CONTENT);
+    }
+
+    final long threadId = Thread.currentThread().getId();
+    final long allocatedBytesBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+    for (int idx = 0; idx < iterations; idx++) {
+      orchestrator.detect(MARKUP_CONTENT);
+    }
+    final long allocatedBytes =
+        allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+
+    final long allocatedBytesPerDetection = allocatedBytes / iterations;
+    System.out.printf(
+        "\nDEBUG: [test=%s, iterations=%s] allocated %s bytes per detection\n",
+        this.testName, this.iterations, allocatedBytesPerDetection);
+
+    assertTrue(allocatedBytesPerDetection < MAX_ALLOCATED_BYTES_PER_DETECTION);
+  }
 }
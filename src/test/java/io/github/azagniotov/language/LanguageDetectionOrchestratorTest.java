@@ -7,9 +7,15 @@ import static io.github.azagniotov.language.TestHelper.testLanguage;
 import static io.github.azagniotov.language.TestReflectionUtils.resetLanguageDetectorFactoryInstance;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.lang.Character.UnicodeScript;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -237,6 +243,271 @@ public class LanguageDetectionOrchestratorTest {
     assertEquals("0.28571808", String.valueOf(languages.get(1).getProbability()));
   }
 
+  @Test
+  public void detectsTopLanguages() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES).withMininumCertainty(0.0).build();
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+
+    final List<String> inputs =
+        Arrays.asList(
+            " deel te neem, om die kunste te geniet en in weten",
+            "Das ist ein Text über die Stadt",
+            "ABCDEF",
+            "c'est la vie");
+    for (final String input : inputs) {
+      final List<Language> allLanguages = orchestrator.detectAll(input, 100);
+      for (int maxLanguages = 1; maxLanguages <= allLanguages.size() + 1; maxLanguages++) {
+        final int expectedSize = Math.min(maxLanguages, allLanguages.size());
+        assertEquals(
+            orchestrator.detectAll(input, maxLanguages).toString(),
+            allLanguages.subList(0, expectedSize).toString());
+      }
+      assertEquals(orchestrator.detect(input).toString(), allLanguages.get(0).toString());
+      assertEquals(orchestrator.detectAll(input).toString(), allLanguages.toString());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveNumberOfTopLanguages() throws Exception {
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(SETTINGS);
+
+    orchestrator.detectAll("c'est la vie", 0);
+  }
+
+  @Test
+  public void detectsScript() throws Exception {
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(SETTINGS);
+
+    assertEquals(UnicodeScript.LATIN, orchestrator.detectScript("c'est la vie"));
+    assertEquals(UnicodeScript.CYRILLIC, orchestrator.detectScript("Привет, как дела? OK"));
+    assertEquals(UnicodeScript.ARABIC, orchestrator.detectScript("مرحبا بالعالم"));
+    assertEquals(UnicodeScript.HAN, orchestrator.detectScript("北京欢迎你"));
+    assertEquals(UnicodeScript.UNKNOWN, orchestrator.detectScript("12345 !?"));
+    assertEquals(UnicodeScript.UNKNOWN, orchestrator.detectScript(""));
+    assertEquals(UnicodeScript.UNKNOWN, orchestrator.detectScript(null));
+  }
+
+  @Test
+  public void detectsWithScriptPruning() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromAllIsoCodes639_1()
+            .withMininumCertainty(0.0)
+            .withScriptPruning()
+            .build();
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+
+    final List<String> cyrillicCodes =
+        Arrays.asList("bg", "kk", "ky", "mk", "mn", "ru", "sr", "tg", "uk");
+    for (final Language language :
+        orchestrator.detectAll("Москва является столицей России", 100)) {
+      assertTrue(language.toString(), cyrillicCodes.contains(language.getIsoCode639_1()));
+    }
+    assertEquals("ru", orchestrator.detect("Москва является столицей России").getIsoCode639_1());
+
+    final List<String> arabicCodes = Arrays.asList("ar", "fa", "ur");
+    for (final Language language : orchestrator.detectAll("مرحبا بكم في المدينة", 100)) {
+      assertTrue(language.toString(), arabicCodes.contains(language.getIsoCode639_1()));
+    }
+
+    // Latin-script inputs are scored against all the languages
+    assertEquals("fr", orchestrator.detect("c'est la vie et nous sommes ici").getIsoCode639_1());
+  }
+
+  @Test
+  public void detectsWithUniqueScriptShortcut() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromAllIsoCodes639_1()
+            .withMininumCertainty(0.0)
+            .withUniqueScriptShortcut()
+            .build();
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+
+    assertEquals("[EL=1.0]", orchestrator.detectAll("Καλημέρα σας, τι κάνετε;").toString());
+    assertEquals("[KA=1.0]", orchestrator.detectAll("გამარჯობა, როგორ ხარ?").toString());
+    assertEquals("[HY=1.0]", orchestrator.detectAll("Բարև, ինչպես ես").toString());
+    assertEquals("[TH=1.0]", orchestrator.detectAll("สวัสดีครับ").toString());
+    assertEquals("[KO=1.0]", orchestrator.detectAll("안녕하세요 반갑습니다").toString());
+
+    // The Hebrew script is shared by Hebrew and Yiddish, which are the only languages scored
+    final List<String> hebrewCodes = Arrays.asList("he", "yi");
+    for (final Language language : orchestrator.detectAll("שלום, מה שלומך היום?", 100)) {
+      assertTrue(language.toString(), hebrewCodes.contains(language.getIsoCode639_1()));
+    }
+
+    // A few foreign words keep the script from being clearly dominant
+    assertNotEquals(
+        "[EL=1.0]", orchestrator.detectAll("Καλημέρα from the beautiful island").toString());
+  }
+
+  @Test
+  public void detectsWithDifferentModelPresetsAtTheSameTime() throws Exception {
+    final LanguageDetectionOrchestrator fastOrchestrator =
+        LanguageDetectionOrchestrator.fromSettings(
+            LanguageDetectionSettings.fromAllIsoCodes639_1()
+                .withMininumCertainty(0.0)
+                .withModelPreset(ModelPreset.FAST)
+                .build());
+    final LanguageDetectionOrchestrator accurateOrchestrator =
+        LanguageDetectionOrchestrator.fromSettings(
+            LanguageDetectionSettings.fromAllIsoCodes639_1()
+                .withMininumCertainty(0.0)
+                .withModelPreset(ModelPreset.ACCURATE)
+                .build());
+
+    final String input = "This is a very simple English sentence";
+    final Language fastLanguage = fastOrchestrator.detect(input);
+    final Language accurateLanguage = accurateOrchestrator.detect(input);
+    assertEquals("en", fastLanguage.getIsoCode639_1());
+    assertEquals("en", accurateLanguage.getIsoCode639_1());
+
+    // The trials of the fast preset stop at a lower convergence threshold
+    assertTrue(fastLanguage.getProbability() < 0.9999f);
+    assertTrue(accurateLanguage.getProbability() > 0.9999f);
+  }
+
+  @Test
+  public void detectsAllConcurrentlyWithPerThreadContexts() throws Exception {
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(SETTINGS);
+    final String input = " deel te neem, om die kunste te geniet en in weten";
+    final String expected = orchestrator.detectAll(input).toString();
+
+    final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<String>> futures = new ArrayList<>();
+      for (int taskIdx = 0; taskIdx < 16; taskIdx++) {
+        futures.add(
+            executorService.submit(
+                () -> {
+                  String detected = null;
+                  for (int detectionIdx = 0; detectionIdx < 50; detectionIdx++) {
+                    detected = orchestrator.detectAll(input).toString();
+                  }
+                  return detected;
+                }));
+      }
+      for (final Future<String> future : futures) {
+        assertEquals(future.get(), expected);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void detectsLanguageWithSanitizerStagesAndCollectsMetrics() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES)
+            .withSanitizerStages(
+                BuiltInSanitizerStage.CODE_BLOCKS,
+                BuiltInSanitizerStage.URLS,
+                BuiltInSanitizerStage.EMAILS,
+                BuiltInSanitizerStage.MENTIONS,
+                BuiltInSanitizerStage.HASHTAGS,
+                BuiltInSanitizerStage.NUMBERS)
+            .withMetrics()
+            .build();
+
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+    final DetectionMetrics metrics = orchestrator.getMetrics();
+    assertEquals(metrics.getDetections(), 0);
+
+    final String input =
+        "@john_smith @jane_doe #MondayMotivation #coffee `npm install` https://example.com "
+            + "john.smith@example.com 2024-01-31 12:30 Das ist ein Text über die Stadt 😂👍🏽";
+    assertEquals("de", orchestrator.detect(input).getIsoCode639_1());
+    assertEquals(
+        "und", orchestrator.detect("@john_smith #coffee `npm install` 12:30").getIsoCode639_1());
+
+    assertEquals(metrics.getDetections(), 2);
+    assertEquals(metrics.getSanitizerStageRemovedChars(BuiltInSanitizerStage.MENTIONS), 31);
+    assertEquals(metrics.getSanitizerStageRemovedChars(BuiltInSanitizerStage.HASHTAGS), 31);
+    assertEquals(metrics.getSanitizerStageRemovedChars(BuiltInSanitizerStage.NUMBERS), 20);
+    assertEquals(metrics.getSkippedSupplementaryChars(), 6);
+
+    // The stages are timed at a sample of the positions, which carries on across the inputs
+    for (int detection = 0; detection < 10; detection++) {
+      orchestrator.detect(input);
+    }
+    assertTrue(metrics.getSanitizerStageNanos(BuiltInSanitizerStage.URLS) > 0);
+    assertTrue(metrics.getNormalizationNanos() > 0);
+    assertTrue(metrics.getStatisticalDetectionNanos() > 0);
+  }
+
+  @Test
+  public void countsSkippedSupplementaryCharsOfEachDetection() throws Exception {
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(
+            LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES).build());
+
+    final String input = "Das ist ein Text über die Stadt 😂👍🏽";
+    assertEquals("de", orchestrator.detect(input).getIsoCode639_1());
+    assertEquals(orchestrator.getLastSkippedSupplementaryChars(), 6);
+
+    // An input without any letters is rejected before the normalization
+    assertEquals("und", orchestrator.detect("😂👍🏽").getIsoCode639_1());
+    assertEquals(orchestrator.getLastSkippedSupplementaryChars(), 0);
+
+    assertEquals("de", orchestrator.detectAll(input).get(0).getIsoCode639_1());
+    assertEquals(orchestrator.getLastSkippedSupplementaryChars(), 6);
+    assertEquals("de", orchestrator.detect("Das ist ein Text über die Stadt").getIsoCode639_1());
+    assertEquals(orchestrator.getLastSkippedSupplementaryChars(), 0);
+    assertEquals(UnicodeScript.LATIN, orchestrator.detectScript(input));
+    assertEquals(orchestrator.getLastSkippedSupplementaryChars(), 6);
+
+    // The metrics, which are not enabled, stay at zero
+    assertEquals(orchestrator.getMetrics().getSkippedSupplementaryChars(), 0);
+  }
+
+  @Test
+  public void rejectsInputsWithoutLettersUpfront() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES).withMetrics().build();
+
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+    final DetectionMetrics metrics = orchestrator.getMetrics();
+
+    assertEquals("und", orchestrator.detect("2024-01-31 12:30:59,123").getIsoCode639_1());
+    assertEquals("und", orchestrator.detect("!!! 😀👍🏽 ??? 100% +1").getIsoCode639_1());
+    assertEquals("und", orchestrator.detect("   ").getIsoCode639_1());
+    assertEquals(metrics.getQuickRejections(), 3);
+
+    // CJK punctuation counts towards the CJK heuristic
+    assertEquals("ja", orchestrator.detect("【】「」").getIsoCode639_1());
+    assertEquals("es", orchestrator.detect("12:30 ¿Dónde está?").getIsoCode639_1());
+    assertEquals(metrics.getQuickRejections(), 3);
+    assertEquals(metrics.getDetections(), 5);
+  }
+
+  @Test
+  public void detectsLanguageOfMarkupWithMarkupStripping() throws Exception {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1(ISO_CODES)
+            .withMarkupStripping()
+            .withMaxTextChars(40)
+            .build();
+
+    final LanguageDetectionOrchestrator orchestrator =
+        LanguageDetectionOrchestrator.fromSettings(settings);
+
+    final String markup =
+        "<html><head><style>body { font-family: sans-serif; }</style>"
+            + "<script>window.dataLayer = window.dataLayer || [];</script></head>"
+            + "<body><div class=\"content\" data-role=\"main\">"
+            + "<p>Das ist ein Text &uuml;ber die Stadt</p></div></body></html>";
+    assertEquals("de", orchestrator.detect(markup).getIsoCode639_1());
+    assertEquals("und", orchestrator.detect("<div><br/></div>").getIsoCode639_1());
+    assertEquals("fr", orchestrator.detect("<p>&#201;t&#233; 2024</p>").getIsoCode639_1());
+  }
+
   @Test
   public void detectsLanguageWithMaxTextCharsLimit() throws Exception {
     final LanguageDetectionSettings settings =
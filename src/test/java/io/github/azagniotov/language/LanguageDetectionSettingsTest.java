@@ -5,6 +5,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 
 public class LanguageDetectionSettingsTest {
@@ -31,6 +32,20 @@ public class LanguageDetectionSettingsTest {
 
     assertFalse(settings.isClassifyChineseAsJapanese());
     assertTrue(settings.isSanitizeInput());
+    assertEquals(settings.getNGramReservoirCapacity(), 0);
+  }
+
+  @Test
+  public void testNGramReservoirCapacity() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withNGramReservoirCapacity(4096)
+            .build();
+    assertEquals(settings.getNGramReservoirCapacity(), 4096);
+
+    final LanguageDetectionSettings settingsWithNegativeCapacity =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withNGramReservoirCapacity(-1).build();
+    assertEquals(settingsWithNegativeCapacity.getNGramReservoirCapacity(), 0);
   }
 
   @Test
@@ -86,6 +101,292 @@ public class LanguageDetectionSettingsTest {
     assertFalse(settingsWithoutSanitize.isClassifyChineseAsJapanese());
   }
 
+  @Test
+  public void testSetMarkupStripping() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isStripMarkup());
+
+    final LanguageDetectionSettings settingsWithMarkupStripping =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withMarkupStripping().build();
+    assertTrue(settingsWithMarkupStripping.isStripMarkup());
+
+    // Unrelated, but sanity checking the defaults
+    assertTrue(settingsWithMarkupStripping.isSanitizeInput());
+    assertFalse(settingsWithMarkupStripping.isClassifyChineseAsJapanese());
+  }
+
+  @Test
+  public void testSetSanitizerStages() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getSanitizerStages(), List.of(BuiltInSanitizerStage.URLS));
+
+    final LanguageDetectionSettings settingsWithStages =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withoutInputSanitize()
+            .withSanitizerStages(
+                BuiltInSanitizerStage.EMAILS,
+                BuiltInSanitizerStage.URLS,
+                BuiltInSanitizerStage.EMAILS)
+            .build();
+    assertTrue(settingsWithStages.isSanitizeInput());
+    assertEquals(
+        settingsWithStages.getSanitizerStages(),
+        List.of(BuiltInSanitizerStage.EMAILS, BuiltInSanitizerStage.URLS));
+
+    final LanguageDetectionSettings settingsWithoutStages =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withSanitizerStages().build();
+    assertFalse(settingsWithoutStages.isSanitizeInput());
+    assertTrue(settingsWithoutStages.getSanitizerStages().isEmpty());
+
+    final LanguageDetectionSettings settingsWithoutSanitize =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withSanitizerStages(BuiltInSanitizerStage.NUMBERS)
+            .withoutInputSanitize()
+            .build();
+    assertFalse(settingsWithoutSanitize.isSanitizeInput());
+    assertTrue(settingsWithoutSanitize.getSanitizerStages().isEmpty());
+  }
+
+  @Test
+  public void testSetMetrics() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isCollectMetrics());
+
+    final LanguageDetectionSettings settingsWithMetrics =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withMetrics().build();
+    assertTrue(settingsWithMetrics.isCollectMetrics());
+  }
+
+  @Test
+  public void testSetExactNaiveBayes() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isExactNaiveBayes());
+
+    final LanguageDetectionSettings settingsWithExactNaiveBayes =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withExactNaiveBayes().build();
+    assertTrue(settingsWithExactNaiveBayes.isExactNaiveBayes());
+  }
+
+  @Test
+  public void testSetParallelTrials() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getParallelTrialsMinTextChars(), 0);
+
+    final LanguageDetectionSettings settingsWithParallelTrials =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withParallelTrials(1000).build();
+    assertEquals(settingsWithParallelTrials.getParallelTrialsMinTextChars(), 1000);
+
+    final LanguageDetectionSettings settingsWithNegativeLength =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withParallelTrials(-1).build();
+    assertEquals(settingsWithNegativeLength.getParallelTrialsMinTextChars(), 0);
+  }
+
+  @Test
+  public void testSetAdaptiveTrials() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isAdaptiveTrials());
+
+    final LanguageDetectionSettings settingsWithAdaptiveTrials =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withAdaptiveTrials().build();
+    assertTrue(settingsWithAdaptiveTrials.isAdaptiveTrials());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testRejectAdaptiveTrialsWithParallelTrials() {
+    LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+        .withAdaptiveTrials()
+        .withParallelTrials(5000)
+        .build();
+  }
+
+  @Test
+  public void testSetNGramAggregation() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isAggregateNGrams());
+
+    final LanguageDetectionSettings settingsWithAggregation =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withNGramAggregation().build();
+    assertTrue(settingsWithAggregation.isAggregateNGrams());
+  }
+
+  @Test
+  public void testSetFastSampling() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isFastSampling());
+
+    final LanguageDetectionSettings settingsWithFastSampling =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withFastSampling().build();
+    assertTrue(settingsWithFastSampling.isFastSampling());
+  }
+
+  @Test
+  public void testSetScriptPruning() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isScriptPruning());
+
+    final LanguageDetectionSettings settingsWithScriptPruning =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withScriptPruning().build();
+    assertTrue(settingsWithScriptPruning.isScriptPruning());
+  }
+
+  @Test
+  public void testSetUniqueScriptShortcut() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isUniqueScriptShortcut());
+
+    final LanguageDetectionSettings settingsWithShortcut =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withUniqueScriptShortcut().build();
+    assertTrue(settingsWithShortcut.isUniqueScriptShortcut());
+  }
+
+  @Test
+  public void testSetSparseScoring() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isSparseScoring());
+
+    final LanguageDetectionSettings settingsWithSparseScoring =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withSparseScoring().build();
+    assertTrue(settingsWithSparseScoring.isSparseScoring());
+  }
+
+  @Test
+  public void testSetVectorKernel() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertFalse(settings.isVectorKernel());
+
+    final LanguageDetectionSettings settingsWithVectorKernel =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withVectorKernel().build();
+    assertTrue(settingsWithVectorKernel.isVectorKernel());
+  }
+
+  @Test
+  public void testSetBlockScoring() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getScoringBlockSize(), 0);
+
+    final LanguageDetectionSettings settingsWithBlockScoring =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withBlockScoring(8).build();
+    assertEquals(settingsWithBlockScoring.getScoringBlockSize(), 8);
+
+    final LanguageDetectionSettings settingsWithNegativeBlockSize =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withBlockScoring(-1).build();
+    assertEquals(settingsWithNegativeBlockSize.getScoringBlockSize(), 0);
+  }
+
+  @Test
+  public void testSetCandidateShortlist() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getShortlistSize(), 0);
+    assertEquals(settings.getShortlistSampleSize(), 0);
+    assertEquals(settings.getShortlistMinCertainty(), 0.0, 0.0);
+
+    final LanguageDetectionSettings settingsWithShortlist =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withCandidateShortlist(5, 64, 0.99)
+            .build();
+    assertEquals(settingsWithShortlist.getShortlistSize(), 5);
+    assertEquals(settingsWithShortlist.getShortlistSampleSize(), 64);
+    assertEquals(settingsWithShortlist.getShortlistMinCertainty(), 0.99, 0.0);
+
+    final LanguageDetectionSettings settingsWithOutOfRangeShortlist =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withCandidateShortlist(-1, 0, 1.5)
+            .build();
+    assertEquals(settingsWithOutOfRangeShortlist.getShortlistSize(), 0);
+    assertEquals(settingsWithOutOfRangeShortlist.getShortlistSampleSize(), 1);
+    assertEquals(settingsWithOutOfRangeShortlist.getShortlistMinCertainty(), 1.0, 0.0);
+  }
+
+  @Test
+  public void testSetIterationBudget() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getIterationsPerNGram(), 0);
+    assertEquals(settings.getNGramsPerTrial(), 0);
+
+    final LanguageDetectionSettings settingsWithBudget =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withIterationBudget(20, 8).build();
+    assertEquals(settingsWithBudget.getIterationsPerNGram(), 20);
+    assertEquals(settingsWithBudget.getNGramsPerTrial(), 8);
+
+    final LanguageDetectionSettings settingsWithNegativeBudget =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withIterationBudget(-1, -1).build();
+    assertEquals(settingsWithNegativeBudget.getIterationsPerNGram(), 0);
+    assertEquals(settingsWithNegativeBudget.getNGramsPerTrial(), 0);
+  }
+
+  @Test
+  public void testSetModelPreset() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+    assertEquals(settings.getModelIterationLimit(), 0);
+    assertEquals(settings.getModelNumberOfTrials(), 0);
+    assertEquals(settings.getModelConvergenceThreshold(), 0.0, 0.0);
+
+    final LanguageDetectionSettings settingsWithPreset =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelPreset(ModelPreset.FAST)
+            .withModelNumberOfTrials(5)
+            .build();
+    assertEquals(settingsWithPreset.getModelIterationLimit(), 1000);
+    assertEquals(settingsWithPreset.getModelNumberOfTrials(), 5);
+    assertEquals(settingsWithPreset.getModelConvergenceThreshold(), 0.999, 0.0);
+
+    final LanguageDetectionSettings settingsWithBalancedPreset =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelPreset(ModelPreset.FAST)
+            .withModelPreset(ModelPreset.BALANCED)
+            .build();
+    assertEquals(settingsWithBalancedPreset.getModelIterationLimit(), 0);
+    assertEquals(settingsWithBalancedPreset.getModelNumberOfTrials(), 0);
+    assertEquals(settingsWithBalancedPreset.getModelConvergenceThreshold(), 0.0, 0.0);
+  }
+
+  @Test
+  public void testSetModelParameters() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelBaseFrequency(20000)
+            .withModelIterationLimit(500)
+            .withModelNumberOfTrials(3)
+            .withModelAlpha(0.25)
+            .withModelConvergenceThreshold(0.99)
+            .build();
+    assertEquals(settings.getModelBaseFrequency(), 20000);
+    assertEquals(settings.getModelIterationLimit(), 500);
+    assertEquals(settings.getModelNumberOfTrials(), 3);
+    assertEquals(settings.getModelAlpha(), 0.25, 0.0);
+    assertEquals(settings.getModelConvergenceThreshold(), 0.99, 0.0);
+
+    final LanguageDetectionSettings settingsWithOutOfRangeParameters =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelBaseFrequency(-1)
+            .withModelIterationLimit(-1)
+            .withModelNumberOfTrials(-1)
+            .withModelAlpha(-1.0)
+            .withModelConvergenceThreshold(1.5)
+            .build();
+    assertEquals(settingsWithOutOfRangeParameters.getModelBaseFrequency(), 0);
+    assertEquals(settingsWithOutOfRangeParameters.getModelIterationLimit(), 0);
+    assertEquals(settingsWithOutOfRangeParameters.getModelNumberOfTrials(), 0);
+    assertEquals(settingsWithOutOfRangeParameters.getModelAlpha(), 0.0, 0.0);
+    assertEquals(settingsWithOutOfRangeParameters.getModelConvergenceThreshold(), 1.0, 0.0);
+  }
+
   @Test
   public void testSetClassifyChineseAsJapanese() {
     final LanguageDetectionSettings settings =
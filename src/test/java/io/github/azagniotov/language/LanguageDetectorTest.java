@@ -9,9 +9,16 @@ import static io.github.azagniotov.language.TestDefaultConstants.MIN_NGRAM_LENGT
 import static io.github.azagniotov.language.TestHelper.testLanguage;
 import static io.github.azagniotov.language.TestReflectionUtils.resetLanguageDetectorFactoryInstance;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -25,6 +32,7 @@ public class LanguageDetectorTest {
 
   private static Model MODEL;
   private static LanguageDetector DEFAULT_DETECTOR;
+  private static NGramIndex DEFAULT_INDEX;
 
   @BeforeClass
   public static void beforeClass() throws Exception {
@@ -41,8 +49,10 @@ public class LanguageDetectorTest {
             factory.getLanguageCorporaProbabilities(),
             MIN_NGRAM_LENGTH,
             MAX_NGRAM_LENGTH);
+    DEFAULT_INDEX = factory.getNGramIndex();
   }
 
+  private LanguageDetectorFactory trainedFactory;
   private LanguageDetector languageDetector;
 
   @Before
@@ -74,6 +84,7 @@ public class LanguageDetectorTest {
       jaProfile.add(w, MIN_NGRAM_LENGTH, MAX_NGRAM_LENGTH);
     }
     factory.addProfile(jaProfile, 2, 3);
+    trainedFactory = factory;
 
     languageDetector =
         new LanguageDetector(
@@ -87,12 +98,12 @@ public class LanguageDetectorTest {
   @Test
   public void shouldExtractExpectedNGrams() throws Exception {
     assertEquals(
-        DEFAULT_DETECTOR.extractNGrams("alex"),
-        Arrays.asList("a", " a", "l", "al", " al", "e", "le", "ale", "x", "ex", "lex"));
+        extractRowIds("alex"),
+        rowIdsOf("a", " a", "l", "al", " al", "e", "le", "ale", "x", "ex", "lex"));
 
     assertEquals(
-        DEFAULT_DETECTOR.extractNGrams("A\u06cc\u1ea0\u3044\u30a4\u3106\uac01\u2010a"),
-        Arrays.asList("A", " A", "ي", "ể", "あ", "ア", "あア", "ㄅ", "가", "가 ", "a", " a"));
+        extractRowIds("A\u06cc\u1ea0\u3044\u30a4\u3106\uac01\u2010a"),
+        rowIdsOf("A", " A", "ي", "ể", "あ", "ア", "あア", "ㄅ", "가", "가 ", "a", " a"));
   }
 
   @Test
@@ -117,6 +128,304 @@ public class LanguageDetectorTest {
         "ja_test");
   }
 
+  @Test
+  public void shouldDetectDatasetsWithExactNaiveBayes() throws Exception {
+    final LanguageDetector exactDetector =
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withExactNaiveBayes()
+                .build());
+    assertDetectsDatasets(exactDetector);
+
+    final List<Language> languages = exactDetector.detectAll("b d");
+    assertEquals(probabilitiesSum(languages), 1.0f, 1e-6f);
+    // The exact computation is deterministic
+    assertEquals(exactDetector.detectAll("b d").toString(), languages.toString());
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithParallelTrials() throws Exception {
+    final LanguageDetector parallelDetector =
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withParallelTrials(1)
+                .build());
+    assertDetectsDatasets(parallelDetector);
+
+    // The trials are seeded by their index, regardless of their scheduling
+    final String languages = parallelDetector.detectAll("b d e").toString();
+    for (int attempt = 0; attempt < 10; attempt++) {
+      assertEquals(parallelDetector.detectAll("b d e").toString(), languages);
+    }
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithAdaptiveTrials() throws Exception {
+    final LanguageDetector adaptiveDetector =
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withAdaptiveTrials()
+                .build());
+    assertDetectsDatasets(adaptiveDetector);
+
+    // The average of the trials which were run is rescaled
+    final List<Language> languages = adaptiveDetector.detectAll("\u3042\u3042\u3042\u3042");
+    assertEquals(probabilitiesSum(languages), 1.0f, 1e-5f);
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithNGramAggregation() throws Exception {
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withNGramAggregation()
+                .build()));
+  }
+
+  @Test
+  public void shouldDetectWithNGramAggregationAndParallelTrials() throws Exception {
+    final LanguageDetectorFactory factory =
+        LanguageDetectorFactory.fromSettings(DEFAULT_SETTINGS_ALL_LANGUAGES);
+    final LanguageDetectionSettings aggregationParallelSettings =
+        LanguageDetectionSettings.fromAllIsoCodes639_1()
+            .withNGramAggregation()
+            .withParallelTrials(1)
+            .build();
+    final LanguageDetector aggregatingParallelDetector =
+        new LanguageDetector(
+            MODEL,
+            factory.getSupportedIsoCodes639_1(),
+            factory.getLanguageCorporaProbabilities(),
+            DEFAULT_INDEX,
+            MIN_NGRAM_LENGTH,
+            MAX_NGRAM_LENGTH,
+            aggregationParallelSettings);
+
+    // The inputs alternate, so that a trial sampling the histogram of the previous input would
+    // change the results
+    final List<String> inputs =
+        Arrays.asList(
+            "The quick brown fox jumps over the lazy dog. The quick brown fox jumps again.",
+            "Der schnelle braune Fuchs springt über den faulen Hund",
+            "Le renard brun rapide saute par-dessus le chien paresseux, encore et encore");
+    final List<String> expected = new ArrayList<>();
+    for (final String input : inputs) {
+      expected.add(aggregatingParallelDetector.detectAll(input).toString());
+    }
+    assertEquals(
+        aggregatingParallelDetector.detectAll(inputs.get(0)).get(0).getIsoCode639_1(), "en");
+    assertEquals(
+        aggregatingParallelDetector.detectAll(inputs.get(1)).get(0).getIsoCode639_1(), "de");
+    assertEquals(
+        aggregatingParallelDetector.detectAll(inputs.get(2)).get(0).getIsoCode639_1(), "fr");
+    for (int attempt = 0; attempt < 20; attempt++) {
+      for (int inputIdx = 0; inputIdx < inputs.size(); inputIdx++) {
+        assertEquals(
+            aggregatingParallelDetector.detectAll(inputs.get(inputIdx)).toString(),
+            expected.get(inputIdx));
+      }
+    }
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithFastSampling() throws Exception {
+    final LanguageDetector fastDetector =
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING).withFastSampling().build());
+    assertDetectsDatasets(fastDetector);
+
+    // The trials follow the same schedule, whether they run sequentially or in parallel
+    final LanguageDetector fastParallelDetector =
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withFastSampling()
+                .withParallelTrials(1)
+                .build());
+    assertEquals(
+        fastParallelDetector.detectAll("b d e").toString(),
+        fastDetector.detectAll("b d e").toString());
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithSparseScoring() throws Exception {
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withSparseScoring()
+                .build()));
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withSparseScoring()
+                .withExactNaiveBayes()
+                .build()));
+  }
+
+  @Test
+  public void shouldMatchDenseProbabilitiesWithSparseScoring() throws Exception {
+    final LanguageDetector denseDetector =
+        fullModelDetectorWith(LanguageDetectionSettings.fromAllIsoCodes639_1().build());
+    final LanguageDetector sparseDetector =
+        fullModelDetectorWith(
+            LanguageDetectionSettings.fromAllIsoCodes639_1().withSparseScoring().build());
+
+    final int languagesCount = DEFAULT_SETTINGS_ALL_LANGUAGES.getIsoCodes639_1().size();
+    for (final String input :
+        Arrays.asList(
+            "The quick brown fox jumps over the lazy dog",
+            "Le renard brun rapide saute par-dessus le chien paresseux",
+            "Der schnelle braune Fuchs springt über den faulen Hund",
+            "東京に行きます",
+            "hello")) {
+      final Map<String, Float> expected =
+          probabilitiesOf(denseDetector.detectAll(normalize(input), languagesCount));
+      final Map<String, Float> actual =
+          probabilitiesOf(sparseDetector.detectAll(normalize(input), languagesCount));
+
+      // The same trials over the same n-grams, where only the float rounding may differ
+      final Set<String> languages = new HashSet<>(expected.keySet());
+      languages.addAll(actual.keySet());
+      for (final String language : languages) {
+        assertEquals(
+            input + ": " + language,
+            expected.getOrDefault(language, 0f),
+            actual.getOrDefault(language, 0f),
+            1e-5);
+      }
+    }
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithBlockScoring() throws Exception {
+    for (final int scoringBlockSize : new int[] {1, 8, 1000}) {
+      assertDetectsDatasets(
+          detectorWith(
+              LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                  .withBlockScoring(scoringBlockSize)
+                  .build()));
+    }
+  }
+
+  @Test
+  public void shouldCheckConvergenceLikeNormalizationWithBlockScoring() throws Exception {
+    final LanguageDetector blockDetector =
+        fullModelDetectorWith(
+            LanguageDetectionSettings.fromAllIsoCodes639_1().withBlockScoring(1).build());
+
+    // The block size is rounded up to five, so the trials stop after the same n-grams
+    for (final String input :
+        Arrays.asList(
+            "The quick brown fox jumps over the lazy dog",
+            "Le renard brun rapide saute par-dessus le chien paresseux",
+            "Der schnelle braune Fuchs springt über den faulen Hund",
+            "hello")) {
+      final Language expected = DEFAULT_DETECTOR.detectAll(input).get(0);
+      final Language actual = blockDetector.detectAll(input).get(0);
+      assertEquals(expected.getIsoCode639_1(), actual.getIsoCode639_1());
+      assertEquals(expected.getProbability(), actual.getProbability(), 1e-5);
+    }
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithVectorKernel() throws Exception {
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING).withVectorKernel().build()));
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithCandidateShortlist() throws Exception {
+    for (final double shortlistMinCertainty : new double[] {0.0, 1.0}) {
+      assertDetectsDatasets(
+          detectorWith(
+              LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                  .withCandidateShortlist(1, 8, shortlistMinCertainty)
+                  .build()));
+    }
+  }
+
+  @Test
+  public void shouldScoreOnlyShortlistedLanguagesWithCandidateShortlist() throws Exception {
+    final LanguageDetector detector =
+        fullModelDetectorWith(LanguageDetectionSettings.fromAllIsoCodes639_1().build());
+    // A first stage which is never certain enough, and one which is always certain enough
+    final LanguageDetector uncertainShortlistDetector =
+        fullModelDetectorWith(
+            LanguageDetectionSettings.fromAllIsoCodes639_1()
+                .withCandidateShortlist(5, 64, 1.0)
+                .build());
+    final LanguageDetector shortlistDetector =
+        fullModelDetectorWith(
+            LanguageDetectionSettings.fromAllIsoCodes639_1()
+                .withCandidateShortlist(5, 64, 0.0)
+                .build());
+
+    final int languagesCount = DEFAULT_SETTINGS_ALL_LANGUAGES.getIsoCodes639_1().size();
+    for (final String input :
+        Arrays.asList(
+            "The quick brown fox jumps over the lazy dog",
+            "Le renard brun rapide saute par-dessus le chien paresseux",
+            "Der schnelle braune Fuchs springt über den faulen Hund",
+            "hello")) {
+      final List<Language> expected = detector.detectAll(normalize(input), languagesCount);
+
+      // An uncertain first stage scores every language, exactly as without the shortlist
+      assertEquals(
+          expected.toString(),
+          uncertainShortlistDetector.detectAll(normalize(input), languagesCount).toString());
+
+      // The languages which are left off the shortlist keep a zero probability
+      final List<Language> shortlisted =
+          shortlistDetector.detectAll(normalize(input), languagesCount);
+      assertTrue(shortlisted.toString(), shortlisted.size() <= 5);
+      assertEquals(expected.get(0).getIsoCode639_1(), shortlisted.get(0).getIsoCode639_1());
+    }
+  }
+
+  @Test
+  public void shouldKeepProbabilitiesValidWithSmallModelAlpha() throws Exception {
+    final int languagesCount = DEFAULT_SETTINGS_ALL_LANGUAGES.getIsoCodes639_1().size();
+    final String input = "The quick brown fox jumps over the lazy dog";
+    // An alpha below the alpha width of the model, which the trials must not vary below zero, and
+    // one which makes 32 likelihood factors of the shortlist overflow a double
+    for (final double alpha : new double[] {0.001, 1e-20}) {
+      final LanguageDetector detector =
+          fullModelDetectorWith(
+              LanguageDetectionSettings.fromAllIsoCodes639_1().withModelAlpha(alpha).build());
+      final LanguageDetector shortlistDetector =
+          fullModelDetectorWith(
+              LanguageDetectionSettings.fromAllIsoCodes639_1()
+                  .withModelAlpha(alpha)
+                  .withCandidateShortlist(5, 64, 0.99)
+                  .build());
+
+      for (final LanguageDetector languageDetector : Arrays.asList(detector, shortlistDetector)) {
+        final List<Language> languages =
+            languageDetector.detectAll(normalize(input), languagesCount);
+        assertEquals(languages.toString(), "en", languages.get(0).getIsoCode639_1());
+        for (final Language language : languages) {
+          assertTrue(languages.toString(), language.getProbability() >= 0f);
+          assertTrue(languages.toString(), language.getProbability() <= 1f);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldDetectDatasetsWithIterationBudget() throws Exception {
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withIterationBudget(20, 8)
+                .build()));
+    assertDetectsDatasets(
+        detectorWith(
+            LanguageDetectionSettings.fromIsoCodes639_1(EMPTY_STRING)
+                .withIterationBudget(20, 8)
+                .withNGramAggregation()
+                .build()));
+  }
+
   @Test
   public void languageDetectorShortStrings() throws Exception {
     final LanguageDetectionSettings supportedLanguages =
@@ -435,4 +744,87 @@ public class LanguageDetectorTest {
     assertEquals("fr", detector.detectAll("apple").get(0).getIsoCode639_1());
     assertEquals("es", detector.detectAll("report").get(0).getIsoCode639_1());
   }
+
+  private LanguageDetector detectorWith(final LanguageDetectionSettings settings) {
+    return new LanguageDetector(
+        MODEL,
+        trainedFactory.getSupportedIsoCodes639_1(),
+        trainedFactory.getLanguageCorporaProbabilities(),
+        NGramIndex.of(trainedFactory.getLanguageCorporaProbabilities()),
+        MIN_NGRAM_LENGTH,
+        MAX_NGRAM_LENGTH,
+        settings);
+  }
+
+  private static LanguageDetector fullModelDetectorWith(final LanguageDetectionSettings settings)
+      throws Exception {
+    final LanguageDetectorFactory factory =
+        LanguageDetectorFactory.fromSettings(DEFAULT_SETTINGS_ALL_LANGUAGES);
+    return new LanguageDetector(
+        MODEL.withOverrides(settings),
+        factory.getSupportedIsoCodes639_1(),
+        factory.getLanguageCorporaProbabilities(),
+        factory.getNGramIndex(),
+        MIN_NGRAM_LENGTH,
+        MAX_NGRAM_LENGTH,
+        settings);
+  }
+
+  private static InputNormalizer normalize(final String input) {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.normalize(input, input.length(), false, true);
+    return inputNormalizer;
+  }
+
+  private static void assertDetectsDatasets(final LanguageDetector detector) {
+    assertEquals(detector.detectAll("a").get(0).getIsoCode639_1(), "en_test");
+    assertEquals(detector.detectAll("b d").get(0).getIsoCode639_1(), "fr_test");
+    assertEquals(detector.detectAll("d e").get(0).getIsoCode639_1(), "en_test");
+    assertEquals(
+        detector.detectAll("\u3042\u3042\u3042\u3042a").get(0).getIsoCode639_1(), "ja_test");
+  }
+
+  private static Map<String, Float> probabilitiesOf(final List<Language> languages) {
+    final Map<String, Float> probabilities = new HashMap<>();
+    for (final Language language : languages) {
+      probabilities.put(language.getIsoCode639_1(), language.getProbability());
+    }
+    return probabilities;
+  }
+
+  private static float probabilitiesSum(final List<Language> languages) {
+    float probabilitiesSum = 0f;
+    for (final Language language : languages) {
+      probabilitiesSum += language.getProbability();
+    }
+    return probabilitiesSum;
+  }
+
+  private static List<Integer> extractRowIds(final String input) {
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.normalize(input, input.length(), true, false);
+
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(NGram.TRIGRAM_SIZE * inputNormalizer.getLength(), 0);
+    new NGram(EMPTY_STRING, MIN_NGRAM_LENGTH, MAX_NGRAM_LENGTH)
+        .collectAllRowIds(
+            inputNormalizer.getNormalizedChars(),
+            inputNormalizer.getLength(),
+            DEFAULT_INDEX,
+            extractedNGrams);
+
+    final List<Integer> rowIds = new ArrayList<>();
+    for (int idx = 0; idx < extractedNGrams.size(); idx++) {
+      rowIds.add(extractedNGrams.rowIdAt(idx));
+    }
+    return rowIds;
+  }
+
+  private static List<Integer> rowIdsOf(final String... nGrams) {
+    final List<Integer> rowIds = new ArrayList<>();
+    for (final String nGram : nGrams) {
+      rowIds.add(DEFAULT_INDEX.rowIdOf(nGram));
+    }
+    return rowIds;
+  }
 }
@@ -0,0 +1,83 @@
+package io.github.azagniotov.language;
+
+import static io.github.azagniotov.language.MarkupStripper.stripMarkup;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MarkupStripperTest {
+
+  @Test
+  public void shouldStripTags() {
+    assertEquals(stripMarkup("<p>Hello</p><p>world</p>"), "Hello world ");
+    assertEquals(stripMarkup("<div class=\"a > b\" id='c'>text</div>"), "text ");
+    assertEquals(stripMarkup("line<br/>break"), "line break");
+    assertEquals(stripMarkup("a <b>bold</b> word"), "a bold  word");
+    assertEquals(stripMarkup("<A HREF=\"http://example.com\">link</A>"), "link ");
+  }
+
+  @Test
+  public void shouldStripCommentsDeclarationsAndProcessingInstructions() {
+    assertEquals(stripMarkup("<!DOCTYPE html><!-- <p>hidden</p> -->text"), "text");
+    assertEquals(stripMarkup("<?xml version=\"1.0\"?>text"), "text");
+    assertEquals(stripMarkup("text<!-- unterminated comment"), "text ");
+  }
+
+  @Test
+  public void shouldDropScriptAndStyleContent() {
+    assertEquals(
+        stripMarkup("a<script type=\"text/javascript\">if (x < 1) { y(\"</p>\"); }</script>b"),
+        "a b");
+    assertEquals(stripMarkup("a<STYLE>p { color: red; }</Style >b"), "a b");
+    assertEquals(stripMarkup("a<script src=\"x.js\"/>b"), "a b");
+    assertEquals(stripMarkup("a<scripts>b</scripts>c"), "a b c");
+    assertEquals(stripMarkup("a<script>unterminated"), "a ");
+    assertEquals(stripMarkup("a<script>if (x < 1) {}</script"), "a ");
+  }
+
+  @Test
+  public void shouldDecodeCharacterReferences() {
+    assertEquals(stripMarkup("caf&eacute; &amp; cr&egrave;me"), "café & crème");
+    assertEquals(stripMarkup("caf&#233; caf&#xE9; caf&#XE9;"), "café café café");
+    assertEquals(stripMarkup("&lt;p&gt; is not a tag"), "<p> is not a tag");
+    assertEquals(stripMarkup("&#x1F600;"), "😀");
+    assertEquals(stripMarkup("&nbsp;&hellip;&euro;"), " …€");
+  }
+
+  @Test
+  public void shouldKeepInvalidMarkupAsText() {
+    assertEquals(stripMarkup("a < b and c <= d"), "a < b and c <= d");
+    final String invalidReferences =
+        "AT&T &unknown; &amp &#; &#0; &#xD800; &#x110000; &#xFFFFFFFF;";
+    assertEquals(stripMarkup(invalidReferences), invalidReferences);
+    assertEquals(stripMarkup("</ 3"), "</ 3");
+    assertEquals(stripMarkup("<"), "<");
+    assertEquals(stripMarkup("&"), "&");
+  }
+
+  @Test
+  public void shouldKeepUnclosedTagsAsText() {
+    assertEquals(stripMarkup("if x<y then z"), "if x<y then z");
+    assertEquals(stripMarkup("<b>x</b> if x<y"), "x  if x<y");
+    assertEquals(stripMarkup("a<b title=\"unterminated>c"), "a<b title=\"unterminated>c");
+    assertEquals(stripMarkup("a</b"), "a</b");
+    assertEquals(stripMarkup("a<!DOCTYPE"), "a<!DOCTYPE");
+    // A '>' further on still closes the tag, as HTML parsers do
+    assertEquals(stripMarkup("x<y then y>z"), "x z");
+    assertEquals(stripMarkup("<p>" + "a<b ".repeat(10_000)), "a<b ".repeat(10_000));
+  }
+
+  @Test
+  public void shouldStopAtMaxChars() {
+    final MarkupStripper markupStripper = new MarkupStripper();
+    final String input = "<div><script>var x = 1;</script>abcdef</div>";
+    markupStripper.strip(input, input.length(), 4);
+    assertEquals(markupStripper.toString(), "abcd");
+
+    // The buffer is re-used
+    markupStripper.strip("<b>xy</b>", 9, 100);
+    assertEquals(markupStripper.toString(), "xy ");
+    assertEquals(markupStripper.length(), 3);
+    assertEquals(markupStripper.charAt(1), 'y');
+  }
+}
@@ -0,0 +1,74 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class ModelTest {
+
+  private static final Model MODEL = new Model(10000, 10000, 7, 0.5f, 0.05f, 0.99999f);
+
+  @Test
+  public void shouldKeepTheModelWithoutOverrides() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").build();
+
+    assertSame(MODEL.withOverrides(settings), MODEL);
+  }
+
+  @Test
+  public void shouldOverrideTheParametersOfThePreset() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelPreset(ModelPreset.ACCURATE)
+            .build();
+
+    final Model model = MODEL.withOverrides(settings);
+    assertEquals(model.getIterationLimit(), 10000);
+    assertEquals(model.getNumberOfTrials(), 15);
+    assertEquals(model.getConvergenceThreshold(), 0.999999f, 0f);
+    assertEquals(model.getBaseFrequency(), 10000);
+    assertEquals(model.getAlpha(), 0.5f, 0f);
+    assertEquals(model.getAlphaWidth(), 0.05f, 0f);
+  }
+
+  @Test
+  public void shouldOverrideTheSmoothingParameters() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelBaseFrequency(20000)
+            .withModelAlpha(0.25)
+            .build();
+
+    final Model model = MODEL.withOverrides(settings);
+    assertEquals(model.getBaseFrequency(), 20000);
+    assertEquals(model.getAlpha(), 0.25f, 0f);
+    assertEquals(model.getIterationLimit(), 10000);
+    assertEquals(model.getNumberOfTrials(), 7);
+    assertEquals(model.getConvergenceThreshold(), 0.99999f, 0f);
+  }
+
+  @Test
+  public void shouldKeepTheModelWithTheBalancedPreset() {
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en")
+            .withModelNumberOfTrials(3)
+            .withModelPreset(ModelPreset.BALANCED)
+            .build();
+
+    assertSame(MODEL.withOverrides(settings), MODEL);
+  }
+
+  @Test
+  public void shouldKeepTheTrialAlphaPositive() {
+    assertEquals(MODEL.trialAlpha(1.0), 0.55f, 1e-6f);
+    assertEquals(MODEL.trialAlpha(-1.0), 0.45f, 1e-6f);
+
+    final LanguageDetectionSettings settings =
+        LanguageDetectionSettings.fromIsoCodes639_1("ja,en").withModelAlpha(0.001).build();
+    final Model model = MODEL.withOverrides(settings);
+    assertEquals(model.trialAlpha(1.0), 0.051f, 1e-6f);
+    assertEquals(model.trialAlpha(-1.0), 0.0001f, 1e-9f);
+  }
+}
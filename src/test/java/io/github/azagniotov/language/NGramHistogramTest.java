@@ -0,0 +1,72 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class NGramHistogramTest {
+
+  @Test
+  public void shouldCountDistinctRowIdsInOrderOfFirstOccurrence() {
+    final NGramHistogram nGramHistogram = new NGramHistogram();
+    nGramHistogram.reset();
+    for (final int rowId : new int[] {7, 3, 7, 7, 0, 3}) {
+      nGramHistogram.offer(rowId);
+    }
+
+    assertEquals(nGramHistogram.size(), 6);
+    assertEquals(nGramHistogram.distinctSize(), 3);
+    assertEquals(nGramHistogram.getRowIds()[0], 7);
+    assertEquals(nGramHistogram.getRowIds()[1], 3);
+    assertEquals(nGramHistogram.getRowIds()[2], 0);
+    assertEquals(nGramHistogram.getCounts()[0], 3);
+    assertEquals(nGramHistogram.getCounts()[1], 2);
+    assertEquals(nGramHistogram.getCounts()[2], 1);
+  }
+
+  @Test
+  public void shouldMapPositionsToRowIdsProportionallyToCounts() {
+    final NGramHistogram nGramHistogram = new NGramHistogram();
+    nGramHistogram.reset();
+    for (final int rowId : new int[] {7, 3, 7, 7, 0, 3}) {
+      nGramHistogram.offer(rowId);
+    }
+    nGramHistogram.prepareSampling();
+
+    final int[] expectedRowIds = {7, 7, 7, 3, 3, 0};
+    for (int position = 0; position < expectedRowIds.length; position++) {
+      assertEquals(nGramHistogram.rowIdAt(position), expectedRowIds[position]);
+    }
+
+    // Offering after sampling, and preparing again, keeps the positions consistent with the counts
+    nGramHistogram.offer(0);
+    nGramHistogram.prepareSampling();
+    assertEquals(nGramHistogram.rowIdAt(5), 0);
+    assertEquals(nGramHistogram.rowIdAt(6), 0);
+  }
+
+  @Test
+  public void shouldGrowAndClearBetweenInputs() {
+    final NGramHistogram nGramHistogram = new NGramHistogram();
+    nGramHistogram.reset();
+    for (int repetition = 0; repetition < 3; repetition++) {
+      for (int rowId = 0; rowId < 10000; rowId++) {
+        nGramHistogram.offer(rowId * 31);
+      }
+    }
+    assertEquals(nGramHistogram.size(), 30000);
+    assertEquals(nGramHistogram.distinctSize(), 10000);
+    for (int distinctIdx = 0; distinctIdx < 10000; distinctIdx++) {
+      assertEquals(nGramHistogram.getRowIds()[distinctIdx], distinctIdx * 31);
+      assertEquals(nGramHistogram.getCounts()[distinctIdx], 3);
+    }
+
+    nGramHistogram.reset();
+    nGramHistogram.offer(31);
+    nGramHistogram.offer(42);
+    assertEquals(nGramHistogram.size(), 2);
+    assertEquals(nGramHistogram.distinctSize(), 2);
+    assertEquals(nGramHistogram.getCounts()[0], 1);
+    assertEquals(nGramHistogram.getCounts()[1], 1);
+  }
+}
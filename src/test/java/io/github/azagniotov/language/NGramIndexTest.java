@@ -0,0 +1,92 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class NGramIndexTest {
+
+  @Test
+  public void shouldResolveIndexedNGramsToRowsInMapOrder() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    probabilities.put("a", new float[] {0.1f, 0.2f});
+    probabilities.put(" a", new float[] {0.3f, 0.4f});
+    probabilities.put("abc", new float[] {0.5f, 0.6f});
+    probabilities.put("𝑓", new float[] {0.7f, 0.8f});
+    probabilities.put("abcd", new float[] {0.9f, 1.0f});
+
+    final NGramIndex index = NGramIndex.of(probabilities);
+    assertEquals(index.size(), 4);
+
+    assertEquals(index.rowIdOf("a"), 0);
+    assertEquals(index.rowIdOf(" a"), 1);
+    assertEquals(index.rowIdOf("abc"), 2);
+    assertEquals(index.rowIdOf("𝑓"), 3);
+    assertEquals(index.rowIdOf(NGramIndex.pack('a', 'b', 'c')), 2);
+    assertSame(index.getRows()[2], probabilities.get("abc"));
+  }
+
+  @Test
+  public void shouldKeepNonZeroProbabilitiesOfRows() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    probabilities.put("a", new float[] {0.1f, 0f, 0.3f});
+    probabilities.put("b", new float[] {0f, 0f, 0f});
+
+    final NGramIndex index = NGramIndex.of(probabilities);
+    assertArrayEquals(index.getNonZeroLanguages()[0], new int[] {0, 2});
+    assertArrayEquals(index.getNonZeroProbabilities()[0], new float[] {0.1f, 0.3f}, 0f);
+    assertEquals(index.getNonZeroLanguages()[1].length, 0);
+    assertEquals(index.getNonZeroProbabilities()[1].length, 0);
+  }
+
+  @Test
+  public void shouldKeepNGramLengthsOfRows() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    probabilities.put("a", new float[] {0.1f});
+    probabilities.put("ab", new float[] {0.2f});
+    probabilities.put("abc", new float[] {0.3f});
+
+    final NGramIndex index = NGramIndex.of(probabilities);
+    assertEquals(index.nGramLengthOf(index.rowIdOf("a")), 1);
+    assertEquals(index.nGramLengthOf(index.rowIdOf("ab")), 2);
+    assertEquals(index.nGramLengthOf(index.rowIdOf("abc")), 3);
+  }
+
+  @Test
+  public void shouldNotResolveUnknownNGrams() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    probabilities.put("ab", new float[] {0.1f});
+    probabilities.put("abcd", new float[] {0.2f});
+
+    final NGramIndex index = NGramIndex.of(probabilities);
+    assertEquals(index.rowIdOf("abcd"), NGramIndex.ABSENT);
+    assertEquals(index.rowIdOf("a"), NGramIndex.ABSENT);
+    assertEquals(index.rowIdOf("ab "), NGramIndex.ABSENT);
+    assertEquals(index.rowIdOf(""), NGramIndex.ABSENT);
+    // Same chars, but of a different length
+    assertEquals(index.rowIdOf(NGramIndex.pack('a', 'b', '\u0000')), NGramIndex.ABSENT);
+  }
+
+  @Test
+  public void shouldResolveAllNGramsOfLargeIndex() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    for (char first = 'a'; first <= 'z'; first++) {
+      for (char second = '぀'; second < 'ヿ'; second++) {
+        probabilities.put(new String(new char[] {first, second}), new float[0]);
+        probabilities.put(new String(new char[] {' ', first, second}), new float[0]);
+      }
+    }
+
+    final NGramIndex index = NGramIndex.of(probabilities);
+    assertEquals(index.size(), probabilities.size());
+
+    int expectedRowId = 0;
+    for (final String nGram : probabilities.keySet()) {
+      assertEquals(nGram, index.rowIdOf(nGram), expectedRowId++);
+    }
+  }
+}
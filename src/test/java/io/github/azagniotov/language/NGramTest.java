@@ -9,7 +9,9 @@ import static org.junit.Assert.assertEquals;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -219,6 +221,36 @@ public class NGramTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public final void testExtractRowIds() {
+    final Map<String, float[]> probabilities = new LinkedHashMap<>();
+    for (final String nGram :
+        Arrays.asList("A", " A", "ي", "ể", "あ", "ア", "あア", "ㄅ", "가", "가 ", "a", " a", "abcd")) {
+      probabilities.put(nGram, new float[] {0.5f});
+    }
+    final NGramIndex index = NGramIndex.of(probabilities);
+
+    final String input = "A\u06cc\u1ea0\u3044\u30a4\u3106\uac01\u2010a ABC abc";
+    final InputNormalizer inputNormalizer = new InputNormalizer();
+    inputNormalizer.normalize(input, input.length(), false, false);
+
+    final ExtractedNGrams extractedNGrams = new ExtractedNGrams();
+    extractedNGrams.reset(3 * inputNormalizer.getLength(), 0);
+    new NGram(EMPTY_STRING, MIN_NGRAM_LENGTH, MAX_NGRAM_LENGTH)
+        .collectAllRowIds(
+            inputNormalizer.getNormalizedChars(),
+            inputNormalizer.getLength(),
+            index,
+            extractedNGrams);
+
+    final List<String> expected =
+        new NGram(input, MIN_NGRAM_LENGTH, MAX_NGRAM_LENGTH).extractNGrams(probabilities.keySet());
+    assertEquals(extractedNGrams.size(), expected.size());
+    for (int idx = 0; idx < extractedNGrams.size(); idx++) {
+      assertEquals(extractedNGrams.getRowIds()[idx], index.rowIdOf(expected.get(idx)));
+    }
+  }
+
   /** Test method for {@link NGram#normalize(char)} with Romanian characters. */
   @Test
   public final void testNormalizeForRomanian() {
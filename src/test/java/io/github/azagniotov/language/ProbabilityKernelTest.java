@@ -0,0 +1,60 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class ProbabilityKernelTest {
+
+  private static final float WEIGHT = 0.00005f;
+
+  @Test
+  public void scalarKernelShouldMultiplyAndNormalize() {
+    final float[] probabilities = new float[] {0.25f, 0.25f, 0.5f};
+    final float[] wordProbabilities = new float[] {0.0f, 0.5f, 0.25f};
+
+    final ProbabilityKernel kernel = ScalarProbabilityKernel.INSTANCE;
+    final float sum = kernel.multiplyAndSum(probabilities, wordProbabilities, WEIGHT);
+    assertEquals(0.25f * WEIGHT + 0.25f * (0.5f + WEIGHT) + 0.5f * (0.25f + WEIGHT), sum, 1e-7f);
+
+    final float max = kernel.normalizeAndReturnMax(probabilities, sum);
+    assertEquals(probabilities[1] + probabilities[2] + probabilities[0], 1.0f, 1e-6f);
+    assertEquals(probabilities[2], max, 0f);
+  }
+
+  @Test
+  public void bestKernelShouldMatchScalarKernel() {
+    final Random random = new Random(0L);
+    final ProbabilityKernel scalarKernel = ScalarProbabilityKernel.INSTANCE;
+    final ProbabilityKernel bestKernel = ProbabilityKernels.best();
+
+    // Lengths below, at and above the common vector lengths, with a scalar tail
+    for (final int length : new int[] {1, 3, 4, 8, 16, 17, 79}) {
+      final float[] expected = new float[length];
+      final float[] actual = new float[length];
+      final float[] wordProbabilities = new float[length];
+      for (int idx = 0; idx < length; idx++) {
+        expected[idx] = actual[idx] = 1.0f / length;
+        wordProbabilities[idx] = random.nextBoolean() ? random.nextFloat() / 100 : 0.0f;
+      }
+
+      final float expectedSum = scalarKernel.multiplyAndSum(expected, wordProbabilities, WEIGHT);
+      final float actualSum = bestKernel.multiplyAndSum(actual, wordProbabilities, WEIGHT);
+      assertArrayEquals(expected, actual, 0f);
+      assertEquals(expectedSum, actualSum, expectedSum * 1e-5f);
+
+      final float[] multiplied = expected.clone();
+      final float[] expectedMultiplied = expected.clone();
+      bestKernel.multiply(multiplied, wordProbabilities, WEIGHT);
+      scalarKernel.multiply(expectedMultiplied, wordProbabilities, WEIGHT);
+      assertArrayEquals(expectedMultiplied, multiplied, 0f);
+
+      final float expectedMax = scalarKernel.normalizeAndReturnMax(expected, expectedSum);
+      final float actualMax = bestKernel.normalizeAndReturnMax(actual, expectedSum);
+      assertArrayEquals(expected, actual, 0f);
+      assertEquals(expectedMax, actualMax, 0f);
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package io.github.azagniotov.language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import org.junit.Test;
+
+public class SamplingScheduleTest {
+
+  @Test
+  public void shouldPrecomputeTheTrialWeightsOfZeroSeededRandom() {
+    final Model model = new Model(10000, 10000, 7, 0.5f, 0.05f, 0.99999f);
+    final SamplingSchedule samplingSchedule = new SamplingSchedule(model);
+
+    final Random random = new Random(0L);
+    for (int trial = 0; trial < model.getNumberOfTrials(); trial++) {
+      final float alphaSmoothing = (float) (0.5f + random.nextGaussian() * 0.05f);
+      assertEquals(samplingSchedule.trialWeight(trial), alphaSmoothing / 10000, 0f);
+    }
+  }
+
+  @Test
+  public void shouldSampleIndexesUniformlyWithinTheBound() {
+    final int bound = 10;
+    final int samples = 100000;
+    final int[] histogram = new int[bound];
+    for (int trial = 0; trial < 5; trial++) {
+      final long trialSeed = SamplingSchedule.trialSeed(trial);
+      for (int iteration = 0; iteration < samples / 5; iteration++) {
+        final int index = SamplingSchedule.sampleIndex(trialSeed, iteration, bound);
+        assertTrue(index >= 0 && index < bound);
+        histogram[index]++;
+      }
+    }
+
+    for (final int count : histogram) {
+      assertEquals(count, samples / bound, samples / bound / 20);
+    }
+  }
+
+  @Test
+  public void shouldSampleDeterministicallyPerTrial() {
+    final long trialSeed = SamplingSchedule.trialSeed(3);
+    assertEquals(trialSeed, SamplingSchedule.trialSeed(3));
+    assertNotEquals(trialSeed, SamplingSchedule.trialSeed(4));
+
+    for (int iteration = 0; iteration < 100; iteration++) {
+      assertEquals(
+          SamplingSchedule.sampleIndex(trialSeed, iteration, 1000),
+          SamplingSchedule.sampleIndex(trialSeed, iteration, 1000));
+    }
+    assertEquals(SamplingSchedule.sampleIndex(trialSeed, 42, 1), 0);
+  }
+}
@@ -5,11 +5,23 @@ import static org.junit.Assert.assertEquals;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.regex.Pattern;
 
 final class TestHelper {
 
+  private static final Pattern URLS_PATTERN =
+      Pattern.compile("(https?://[\\w.-]+(?:/[\\w\\d&%_./=-]*)?)([\\p{P}\\s]+)?");
+
   private TestHelper() {}
 
+  /**
+   * Removes URLs through the regex which the streaming {@link InputSanitizer#urlLengthAt} replaced,
+   * to serve as the reference implementation in tests.
+   */
+  static String sanitizeUrls(final String input) {
+    return URLS_PATTERN.matcher(input).replaceAll(StringConstants.EMPTY_STRING);
+  }
+
   /**
    * Test that the contents of the file at the provided path are correctly detected as being in
    * language languageCode.
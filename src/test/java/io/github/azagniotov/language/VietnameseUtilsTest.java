@@ -2,6 +2,7 @@ package io.github.azagniotov.language;
 
 import static io.github.azagniotov.language.StringConstants.EMPTY_STRING;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -139,4 +140,37 @@ public class VietnameseUtilsTest {
     assertEquals(VietnameseUtils.normalizeVietnamese("\u01AF\u0323"), "\u1EF0");
     assertEquals(VietnameseUtils.normalizeVietnamese("\u01B0\u0323"), "\u1EF1");
   }
+
+  @Test
+  public final void testNormalizeVietnameseReturnsSameInstanceWithoutDiacritics() {
+    final String input = "Ti\u1EBFng Vi\u1EC7t and English without combining marks";
+    assertSame(VietnameseUtils.normalizeVietnamese(input), input);
+
+    // A combining mark which has no Vietnamese base char before it
+    final String orphanDiacritic = "\u0300b\u0301";
+    assertSame(VietnameseUtils.normalizeVietnamese(orphanDiacritic), orphanDiacritic);
+  }
+
+  @Test
+  public final void testNormalizeVietnameseComposesOnlyOnceForRunOfDiacritics() {
+    assertEquals(VietnameseUtils.normalizeVietnamese("\u0041\u0300\u0300"), "\u00C0\u0300");
+    assertEquals(
+        VietnameseUtils.normalizeVietnamese("Vi\u00EA\u0323t Nam"), "Vi\u1EC7t Nam");
+  }
+
+  @Test
+  public final void testNormalizeVietnameseCompactsText() {
+    assertEquals(
+        VietnameseUtils.normalizeVietnamese("xa\u0301 \u01B0\u0323a\u0303"),
+        "x\u00E1 \u1EF1\u00E3");
+  }
+
+  @Test
+  public final void testCompose() {
+    assertEquals(VietnameseUtils.compose('\u0061', '\u0301'), '\u00E1');
+    assertEquals(VietnameseUtils.compose('\u01B0', '\u0323'), '\u1EF1');
+    assertEquals(VietnameseUtils.compose('b', '\u0301'), 0);
+    assertEquals(VietnameseUtils.compose('\u00E1', '\u0301'), 0);
+    assertEquals(VietnameseUtils.compose('\u0061', 'b'), 0);
+  }
 }